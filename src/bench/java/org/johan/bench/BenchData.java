@@ -0,0 +1,77 @@
+package org.johan.bench;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.johan.models.Item;
+import org.johan.models.Money;
+import org.johan.models.Offer;
+import org.johan.models.User;
+
+/**
+ * Deterministic data sets shared by the benchmarks: items spread over
+ * {@value #CATEGORIES} categories and a 0–999 price range, users and offers.
+ */
+final class BenchData {
+
+    static final int CATEGORIES = 20;
+
+    private BenchData() {
+    }
+
+    /** Item ids do not clash with the sample items loaded by {@code ItemService}. */
+    static String id(int i) {
+        return "bench" + i;
+    }
+
+    static Item item(int i) {
+        Item item = new Item(id(i), "Item " + i, Money.ofMinor((i % 1000) * 100L), "Cat" + (i % CATEGORIES), null);
+        item.setAvailable(i % 4 != 0);
+        return item;
+    }
+
+    static List<Item> items(int size) {
+        List<Item> items = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            items.add(item(i));
+        }
+        return items;
+    }
+
+    static List<User> users(int size) {
+        List<User> users = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            users.add(new User("user" + i, "User " + i, "user" + i + "@collectors.test"));
+        }
+        return users;
+    }
+
+    /**
+     * Offers on the given items, each one higher than the previous offer
+     * on the same item so the bid engine accepts all of them.
+     */
+    static List<Offer> offers(int size, int items) {
+        List<Offer> offers = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            offers.add(new Offer(id(i % items), Money.ofMinor((1000L + i) * 100), "bidder" + (i % 97)));
+        }
+        return offers;
+    }
+
+    /**
+     * Run a setup step with {@code System.out} discarded (services log every
+     * created element).
+     */
+    static <T> T quietly(Supplier<T> setup) {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            return setup.get();
+        } finally {
+            System.setOut(out);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package org.johan.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.johan.auction.Bid;
+import org.johan.auction.BidEngine;
+import org.johan.auction.BidRateLimiter;
+import org.johan.auction.OrderBook;
+import org.johan.exceptions.ConflictException;
+import org.johan.models.Money;
+import org.johan.services.ItemService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Contended bidding on a single hot item: every thread keeps trying to
+ * outbid the current best bid. Compares the lock-free {@link OrderBook}
+ * with a {@code synchronized} equivalent, and measures the full
+ * {@link BidEngine} path (catalog price update and broadcast included),
+ * with and without the {@link BidRateLimiter} check in front of it.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class BidEngineBenchmark {
+
+    private static final String HOT_ITEM = "item1";
+
+    /** Same rule as {@link OrderBook} guarded by a monitor. */
+    static final class SynchronizedBook {
+        private Bid best = new Bid(HOT_ITEM, null, Money.ofMinor(100), 0, System.currentTimeMillis());
+
+        synchronized Bid tryBid(String bidder, Money amount) {
+            if (amount.compareTo(best.amount()) <= 0) {
+                return null;
+            }
+            best = new Bid(HOT_ITEM, bidder, amount, best.sequence() + 1, System.currentTimeMillis());
+            return best;
+        }
+
+        synchronized Bid best() {
+            return best;
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Books {
+        OrderBook orderBook;
+        SynchronizedBook synchronizedBook;
+        BidEngine engine;
+        // Tasa muy alta: se mide el coste de la comprobación, no el rechazo
+        BidRateLimiter limiter;
+
+        @Setup
+        public void setup() {
+            orderBook = new OrderBook(HOT_ITEM, Money.ofMinor(100));
+            synchronizedBook = new SynchronizedBook();
+            engine = new BidEngine(new ItemService());
+            limiter = new BidRateLimiter(1e9, 1_000_000, 1_000);
+        }
+    }
+
+    /** Un postor por hilo, como en el servidor. */
+    @State(Scope.Thread)
+    public static class Bidder {
+        final String name = "bench-" + Thread.currentThread().getId();
+    }
+
+    @Benchmark
+    public Object baselineSynchronized(Books books) {
+        return books.synchronizedBook.tryBid("bench", nextBid(books.synchronizedBook.best()));
+    }
+
+    @Benchmark
+    public Object orderBookCas(Books books) {
+        return books.orderBook.tryBid("bench", nextBid(books.orderBook.best()));
+    }
+
+    @Benchmark
+    public Object bidEngineHotItem(Books books) {
+        OrderBook book = books.engine.getOrderBook(HOT_ITEM);
+        Money amount = book != null ? nextBid(book.best()) : Money.ofMinor(100_000_000);
+        try {
+            return books.engine.placeBid(HOT_ITEM, "bench", amount);
+        } catch (ConflictException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Object rateLimiterCheck(Books books, Bidder bidder) {
+        return books.limiter.tryAcquire(bidder.name, HOT_ITEM);
+    }
+
+    @Benchmark
+    public Object bidEngineHotItemRateLimited(Books books, Bidder bidder) {
+        if (books.limiter.tryAcquire(bidder.name, HOT_ITEM) > 0) {
+            return null;
+        }
+        return bidEngineHotItem(books);
+    }
+
+    /** Un dólar por encima de la mejor puja. */
+    private static Money nextBid(Bid best) {
+        return Money.ofMinor(best.amount().minor() + 100);
+    }
+}
@@ -0,0 +1,149 @@
+package org.johan.bench;
+
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import org.johan.websocket.BroadcastEngine;
+import org.johan.websocket.OutboundChannel;
+import org.johan.websocket.PriceBatcher;
+import org.johan.websocket.SlowConsumerPolicy;
+import org.johan.websocket.TopicRegistry;
+
+/**
+ * Load test of {@link BroadcastEngine} with thousands of simulated clients.
+ * <p>
+ * Fast clients complete every write immediately; slow clients take
+ * {@code SLOW_WRITE_MICROS} per frame. The test publishes price updates for
+ * a small set of items as fast as possible and reports how long each
+ * publish call blocked the caller, plus what the slow clients received.
+ * With a batch window the updates go through a {@link PriceBatcher}, so the
+ * frame counts of both modes can be compared. With {@code itemsPerSession}
+ * every client subscribes to that many random items instead of receiving
+ * everything.
+ * </p>
+ * Arguments: {@code sessions slowPercent updates items [policy [batchWindowMs [itemsPerSession]]]}.
+ */
+public class BroadcastLoadTest {
+
+    private static final long SLOW_WRITE_MICROS = 2_000;
+
+    /** Simulated client counting the frames it received. */
+    private static final class SimulatedChannel implements OutboundChannel {
+        private final ScheduledExecutorService slowWriter;
+        private final AtomicBoolean open = new AtomicBoolean(true);
+        final LongAdder received = new LongAdder();
+
+        SimulatedChannel(ScheduledExecutorService slowWriter) {
+            this.slowWriter = slowWriter;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open.get();
+        }
+
+        @Override
+        public void send(String message, Consumer<Throwable> onComplete) {
+            received.increment();
+            if (slowWriter == null) {
+                onComplete.accept(null);
+            } else {
+                slowWriter.schedule(() -> onComplete.accept(null), SLOW_WRITE_MICROS, TimeUnit.MICROSECONDS);
+            }
+        }
+
+        @Override
+        public void close(int statusCode, String reason) {
+            open.set(false);
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int slowPercent = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int updates = args.length > 2 ? Integer.parseInt(args[2]) : 5000;
+        int items = args.length > 3 ? Integer.parseInt(args[3]) : 200;
+        SlowConsumerPolicy policy = args.length > 4 ? SlowConsumerPolicy.valueOf(args[4]) : SlowConsumerPolicy.DROP_OLDEST;
+        long batchWindowMs = args.length > 5 ? Long.parseLong(args[5]) : 0;
+        int itemsPerSession = args.length > 6 ? Integer.parseInt(args[6]) : 0;
+
+        ScheduledExecutorService slowWriter = Executors.newScheduledThreadPool(2);
+        BroadcastEngine engine = new BroadcastEngine(256, policy, Runtime.getRuntime().availableProcessors());
+        PriceBatcher batcher = batchWindowMs > 0 ? new PriceBatcher(engine, batchWindowMs) : null;
+
+        SimulatedChannel[] channels = new SimulatedChannel[sessions];
+        int slowCount = sessions * slowPercent / 100;
+        for (int i = 0; i < sessions; i++) {
+            channels[i] = new SimulatedChannel(i < slowCount ? slowWriter : null);
+            engine.register(channels[i]);
+            for (int t = 0; t < itemsPerSession; t++) {
+                int item = ThreadLocalRandom.current().nextInt(items);
+                engine.subscribe(channels[i], TopicRegistry.itemTopic("item-" + item));
+            }
+        }
+
+        long[] publishNanos = new long[updates];
+        long start = System.nanoTime();
+        for (int i = 0; i < updates; i++) {
+            String itemId = "item-" + (i % items);
+            double price = 100 + ThreadLocalRandom.current().nextInt(10_000) / 100.0;
+            long t0 = System.nanoTime();
+            if (batcher != null) {
+                batcher.publish(itemId, null, itemId + ":" + price);
+            } else {
+                engine.publishPrice(itemId, null, itemId + ":" + price);
+            }
+            publishNanos[i] = System.nanoTime() - t0;
+        }
+        long publishElapsed = System.nanoTime() - start;
+        if (batcher != null) {
+            batcher.shutdown();
+        }
+
+        // Espera a que se vacíen las colas (o a que se agote el tiempo)
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (engine.pendingFrames() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        long drainElapsed = System.nanoTime() - start;
+
+        Arrays.sort(publishNanos);
+        long fastReceived = 0;
+        long slowReceived = 0;
+        for (int i = 0; i < sessions; i++) {
+            if (i < slowCount) {
+                slowReceived += channels[i].received.sum();
+            } else {
+                fastReceived += channels[i].received.sum();
+            }
+        }
+
+        BroadcastEngine.Stats stats = engine.stats();
+        System.out.printf("sessions=%d (slow=%d) updates=%d items=%d policy=%s batchWindowMs=%d itemsPerSession=%d%n",
+                sessions, slowCount, updates, items, policy, batchWindowMs, itemsPerSession);
+        System.out.printf("publish: %.0f updates/s, p50=%.1fus p99=%.1fus p999=%.1fus max=%.1fus%n",
+                updates / (publishElapsed / 1e9),
+                publishNanos[updates / 2] / 1e3, publishNanos[(int) (updates * 0.99)] / 1e3,
+                publishNanos[(int) (updates * 0.999)] / 1e3, publishNanos[updates - 1] / 1e3);
+        System.out.printf("drained in %.2fs, pending=%d%n", drainElapsed / 1e9, engine.pendingFrames());
+        System.out.printf("delivered=%d coalesced=%d dropped=%d disconnected=%d failed=%d%n",
+                stats.getDelivered(), stats.getCoalesced(), stats.getDropped(),
+                stats.getDisconnected(), stats.getFailed());
+        System.out.printf("frames per fast client=%.1f, per slow client=%.1f%n",
+                fastReceived / (double) Math.max(1, sessions - slowCount),
+                slowReceived / (double) Math.max(1, slowCount));
+        if (batcher != null) {
+            System.out.printf("batches=%d pairs=%d (%.1f pairs per frame)%n",
+                    batcher.getFrames(), batcher.getPairs(), batcher.getPairs() / (double) Math.max(1, batcher.getFrames()));
+        }
+
+        engine.shutdown();
+        slowWriter.shutdownNow();
+    }
+}
@@ -0,0 +1,102 @@
+package org.johan.bench;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.johan.models.Item;
+import org.johan.models.Money;
+import org.johan.storage.ItemCatalog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of id lookups and price updates: the original synchronized
+ * {@code ArrayList} scan versus {@link ItemCatalog}, at 10k/100k/1M items.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class CatalogBenchmark {
+
+    private static final Money PRICE = Money.ofMinor(12_345);
+
+    @State(Scope.Benchmark)
+    public static class Catalogs {
+        @Param({"10000", "100000", "1000000"})
+        int size;
+
+        String[] ids;
+        List<Item> baseline;
+        ItemCatalog catalog;
+
+        @Setup
+        public void setup() {
+            ids = new String[size];
+            baseline = Collections.synchronizedList(new ArrayList<>(size));
+            catalog = new ItemCatalog();
+            for (int i = 0; i < size; i++) {
+                ids[i] = "item" + i;
+                baseline.add(new Item(ids[i], "Item " + i, Money.ofMinor((i % 1000) * 100L), "Cat" + (i % 20), null));
+                catalog.add(new Item(ids[i], "Item " + i, Money.ofMinor((i % 1000) * 100L), "Cat" + (i % 20), null));
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private final SplittableRandom random = new SplittableRandom(42);
+
+        String next(Catalogs c) {
+            return c.ids[random.nextInt(c.ids.length)];
+        }
+    }
+
+    @Benchmark
+    public Item baselineLookup(Catalogs c, Cursor cursor) {
+        String id = cursor.next(c);
+        synchronized (c.baseline) {
+            return c.baseline.stream().filter(i -> i.getId().equals(id)).findFirst().orElse(null);
+        }
+    }
+
+    @Benchmark
+    public Item catalogLookup(Catalogs c, Cursor cursor) {
+        return c.catalog.get(cursor.next(c));
+    }
+
+    @Benchmark
+    public Item baselineUpdatePrice(Catalogs c, Cursor cursor) {
+        String id = cursor.next(c);
+        synchronized (c.baseline) {
+            Item item = c.baseline.stream().filter(i -> i.getId().equals(id)).findFirst().orElseThrow();
+            item.setPrice(PRICE);
+            return item;
+        }
+    }
+
+    @Benchmark
+    public Item catalogUpdatePrice(Catalogs c, Cursor cursor) {
+        return c.catalog.updatePrice(cursor.next(c), PRICE);
+    }
+
+    @Benchmark
+    public int catalogSnapshot(Catalogs c) {
+        return c.catalog.snapshot().size();
+    }
+}
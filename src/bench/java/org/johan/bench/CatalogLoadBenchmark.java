@@ -0,0 +1,105 @@
+package org.johan.bench;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.johan.models.Item;
+import org.johan.services.ItemService;
+import org.johan.storage.CatalogSnapshot;
+import org.johan.storage.ItemCatalog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Catalog startup: reading a catalog in the {@code data/items.json} format
+ * (whole file as a String, Gson, regex price parsing) versus mapping the
+ * binary {@link CatalogSnapshot}, each with and without building the
+ * indexed {@link ItemCatalog}. Single-shot: every iteration is one cold load.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class CatalogLoadBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class CatalogFiles {
+        @Param({"100000", "1000000"})
+        int size;
+
+        Path json;
+        Path snapshot;
+
+        @Setup
+        public void setup() throws IOException {
+            List<Item> items = BenchData.items(size);
+            json = Files.createTempFile("catalog", ".json");
+            try (Writer out = Files.newBufferedWriter(json, StandardCharsets.UTF_8);
+                 JsonWriter writer = new JsonWriter(out)) {
+                writer.beginArray();
+                for (Item item : items) {
+                    writer.beginObject();
+                    writer.name("id").value(item.getId());
+                    writer.name("name").value(item.getName());
+                    writer.name("description").value("Descripción de " + item.getName());
+                    writer.name("price").value("$" + item.getPrice() + " USD");
+                    writer.name("category").value(item.getCategory());
+                    writer.name("imageUrl").value(item.getId() + ".png");
+                    writer.name("available").value(item.isAvailable());
+                    writer.endObject();
+                }
+                writer.endArray();
+            }
+            snapshot = Files.createTempFile("catalog", ".bin");
+            CatalogSnapshot.write(snapshot, items);
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            Files.deleteIfExists(json);
+            Files.deleteIfExists(snapshot);
+        }
+    }
+
+    @Benchmark
+    public List<Item> jsonParse(CatalogFiles f) throws IOException {
+        return ItemService.parseItemsJson(Files.readString(f.json));
+    }
+
+    @Benchmark
+    public List<Item> snapshotMap(CatalogFiles f) throws IOException {
+        return CatalogSnapshot.read(f.snapshot);
+    }
+
+    @Benchmark
+    public ItemCatalog jsonCatalog(CatalogFiles f) throws IOException {
+        ItemCatalog catalog = new ItemCatalog();
+        catalog.addAll(ItemService.parseItemsJson(Files.readString(f.json)));
+        return catalog;
+    }
+
+    @Benchmark
+    public ItemCatalog snapshotCatalog(CatalogFiles f) throws IOException {
+        ItemCatalog catalog = new ItemCatalog();
+        catalog.addAll(CatalogSnapshot.read(f.snapshot));
+        return catalog;
+    }
+}
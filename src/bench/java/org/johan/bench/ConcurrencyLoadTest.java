@@ -0,0 +1,157 @@
+package org.johan.bench;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.johan.Main;
+import org.johan.bench.HttpLoadTest.Latencies;
+import org.johan.bench.HttpLoadTest.Route;
+
+import spark.Spark;
+
+/**
+ * Concurrency ramp: starts the application on a random port inside this JVM
+ * and, for each level, keeps that many requests in flight (one connection
+ * each, closed loop, no client thread per connection) for a fixed time.
+ * Reports throughput, p50/p99 latency and errors per level, and the highest
+ * level whose p99 stays under the target with less than 1% errors.
+ * <p>
+ * Arguments: {@code levels seconds [mix [p99TargetMs]]}, e.g.
+ * {@code 50,100,200,400,800 10 price=1 250}. Run it once with the default
+ * Jetty pool and once with {@code -Dcollectors.http.virtualThreads=true} on
+ * Java 21; with {@code -Dcollectors.data.dir} set, price updates block on
+ * the write-ahead log fsync as they do in production.
+ * </p>
+ */
+public class ConcurrencyLoadTest {
+
+    private static final double MAX_ERROR_RATE = 0.01;
+
+    public static void main(String[] args) throws Exception {
+        int[] levels = Arrays.stream((args.length > 0 ? args[0] : "50,100,200,400,800").split(","))
+                .mapToInt(level -> Integer.parseInt(level.trim())).toArray();
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        Map<Route, Integer> mix = HttpLoadTest.parseMix(args.length > 2 ? args[2] : "items=4,tienda=1,price=1");
+        double targetMs = args.length > 3 ? Double.parseDouble(args[3]) : 250;
+
+        int port = BenchData.quietly(() -> Main.start(0));
+        String base = "http://localhost:" + port;
+        HttpClient http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        String[] itemIds = HttpLoadTest.itemIds(http, base);
+        String[] categories = {"", "memorabilia", "ropa", "instrumentos"};
+        Route[] wheel = HttpLoadTest.wheel(mix);
+
+        System.out.printf("mode=%s maxConcurrent=%s mix=%s duration=%ds p99 target=%.0f ms%n",
+                Boolean.getBoolean("collectors.http.virtualThreads") ? "virtual" : "pool(maxThreads="
+                        + System.getProperty("collectors.http.maxThreads", "200") + ")",
+                System.getProperty("collectors.http.maxConcurrent", "default"), mix, seconds, targetMs);
+        System.out.printf("%10s %9s %9s %9s %9s %9s %7s %s%n",
+                "in flight", "requests", "req/s", "p50 ms", "p99 ms", "max ms", "errors", "");
+        // Calentamiento con el primer nivel (JIT, conexiones, cachés de páginas)
+        run(http, base, wheel, itemIds, categories, levels[0], Math.min(seconds, 5));
+        int sustainable = 0;
+        for (int level : levels) {
+            Latencies result = run(http, base, wheel, itemIds, categories, level, seconds);
+            long[] sorted = Arrays.copyOf(result.values, result.size);
+            Arrays.sort(sorted);
+            double p99 = sorted.length > 0 ? HttpLoadTest.percentile(sorted, 0.99) : Double.NaN;
+            boolean ok = sorted.length > 0 && p99 <= targetMs
+                    && result.errors <= sorted.length * MAX_ERROR_RATE;
+            if (ok) {
+                sustainable = level;
+            }
+            System.out.printf("%10d %9d %9.0f %9.2f %9.2f %9.2f %7d %s%n", level, sorted.length,
+                    sorted.length / (double) seconds,
+                    sorted.length > 0 ? HttpLoadTest.percentile(sorted, 0.50) : Double.NaN, p99,
+                    sorted.length > 0 ? sorted[sorted.length - 1] / 1e6 : Double.NaN, result.errors,
+                    ok ? "ok" : "over target");
+        }
+        System.out.println("max sustainable in flight: " + sustainable);
+        Spark.stop();
+        Spark.awaitStop();
+        System.exit(0);
+    }
+
+    /** Mantiene {@code inFlight} cadenas de peticiones asíncronas durante {@code seconds}. */
+    private static Latencies run(HttpClient http, String base, Route[] wheel, String[] itemIds,
+                                 String[] categories, int inFlight, int seconds) throws InterruptedException {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        CountDownLatch done = new CountDownLatch(inFlight);
+        List<Latencies> results = new ArrayList<>(inFlight);
+        for (int c = 0; c < inFlight; c++) {
+            Latencies mine = new Latencies();
+            results.add(mine);
+            new Chain(http, base, wheel, itemIds, categories, new SplittableRandom(c), mine, end, done).next();
+        }
+        if (!done.await(seconds + 60L, TimeUnit.SECONDS)) {
+            System.out.println("warning: requests still pending after the level ended");
+        }
+        Latencies merged = new Latencies();
+        for (Latencies part : results) {
+            synchronized (part) {
+                for (int i = 0; i < part.size; i++) {
+                    merged.add(part.values[i]);
+                }
+                merged.errors += part.errors;
+            }
+        }
+        return merged;
+    }
+
+    /** Un cliente en bucle cerrado: envía la siguiente petición al recibir la respuesta. */
+    private static final class Chain {
+        private final HttpClient http;
+        private final String base;
+        private final Route[] wheel;
+        private final String[] itemIds;
+        private final String[] categories;
+        private final SplittableRandom random;
+        private final Latencies latencies;
+        private final long end;
+        private final CountDownLatch done;
+
+        Chain(HttpClient http, String base, Route[] wheel, String[] itemIds, String[] categories,
+              SplittableRandom random, Latencies latencies, long end, CountDownLatch done) {
+            this.http = http;
+            this.base = base;
+            this.wheel = wheel;
+            this.itemIds = itemIds;
+            this.categories = categories;
+            this.random = random;
+            this.latencies = latencies;
+            this.end = end;
+            this.done = done;
+        }
+
+        void next() {
+            if (System.nanoTime() >= end) {
+                done.countDown();
+                return;
+            }
+            HttpRequest request = HttpLoadTest.request(wheel[random.nextInt(wheel.length)], base, random,
+                    itemIds, categories);
+            long start = System.nanoTime();
+            http.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+                synchronized (latencies) {
+                    latencies.add(System.nanoTime() - start);
+                    if (error != null || response.statusCode() >= 400) {
+                        latencies.errors++;
+                    }
+                }
+                next();
+            });
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package org.johan.bench;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.johan.Main;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+
+import spark.Spark;
+
+/**
+ * End-to-end load driver: starts the application on a random port inside
+ * this JVM and replays a weighted mix of requests from many concurrent
+ * clients, then reports throughput and latency percentiles per route.
+ * <p>
+ * Arguments: {@code clients seconds [mix [warmupSeconds]]}, where
+ * {@code mix} is a comma-separated list of {@code route=weight} with the
+ * routes {@code users}, {@code items}, {@code offers}, {@code tienda} and
+ * {@code price}, e.g. {@code users=2,items=4,offers=2,tienda=1,price=1}.
+ * Server settings such as {@code -Dcollectors.http.maxThreads} apply.
+ * </p>
+ */
+public class HttpLoadTest {
+
+    private static final String DEFAULT_MIX = "users=2,items=4,offers=2,tienda=1,price=1";
+
+    enum Route {
+        USERS("GET /api/users"),
+        ITEMS("GET /items?limit=24"),
+        OFFERS("GET /offers"),
+        TIENDA("GET /tienda"),
+        PRICE("POST /api/items/:id/price");
+
+        final String label;
+
+        Route(String label) {
+            this.label = label;
+        }
+    }
+
+    /** Growable list of latencies in nanoseconds, one per worker and route. */
+    static final class Latencies {
+        long[] values = new long[1024];
+        int size;
+        long errors;
+
+        void add(long nanos) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = nanos;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        Map<Route, Integer> mix = parseMix(args.length > 2 ? args[2] : DEFAULT_MIX);
+        int warmupSeconds = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+
+        int port = BenchData.quietly(() -> Main.start(0));
+        String base = "http://localhost:" + port;
+        HttpClient http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        String[] itemIds = itemIds(http, base);
+        String[] categories = {"", "memorabilia", "ropa", "instrumentos"};
+
+        Route[] wheel = wheel(mix);
+        long warmupEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long end = warmupEnd + TimeUnit.SECONDS.toNanos(seconds);
+
+        ExecutorService workers = Executors.newFixedThreadPool(clients);
+        List<Map<Route, Latencies>> results = new ArrayList<>();
+        for (int w = 0; w < clients; w++) {
+            Map<Route, Latencies> mine = new EnumMap<>(Route.class);
+            for (Route route : Route.values()) {
+                mine.put(route, new Latencies());
+            }
+            results.add(mine);
+            long seed = w;
+            workers.execute(() -> {
+                SplittableRandom random = new SplittableRandom(seed);
+                while (true) {
+                    long now = System.nanoTime();
+                    if (now >= end) {
+                        return;
+                    }
+                    Route route = wheel[random.nextInt(wheel.length)];
+                    HttpRequest request = request(route, base, random, itemIds, categories);
+                    long start = System.nanoTime();
+                    boolean ok;
+                    try {
+                        HttpResponse<Void> response = http.send(request, HttpResponse.BodyHandlers.discarding());
+                        ok = response.statusCode() < 400;
+                    } catch (IOException e) {
+                        ok = false;
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    long elapsed = System.nanoTime() - start;
+                    if (start >= warmupEnd) {
+                        Latencies latencies = mine.get(route);
+                        latencies.add(elapsed);
+                        if (!ok) {
+                            latencies.errors++;
+                        }
+                    }
+                }
+            });
+        }
+        workers.shutdown();
+        workers.awaitTermination(warmupSeconds + seconds + 60L, TimeUnit.SECONDS);
+
+        report(clients, seconds, mix, results);
+        Spark.stop();
+        Spark.awaitStop();
+        System.exit(0);
+    }
+
+    static HttpRequest request(Route route, String base, SplittableRandom random,
+                                       String[] itemIds, String[] categories) {
+        HttpRequest.Builder builder;
+        switch (route) {
+            case USERS:
+                builder = HttpRequest.newBuilder(URI.create(base + "/api/users"));
+                break;
+            case ITEMS:
+                builder = HttpRequest.newBuilder(URI.create(base + "/items?limit=24&sort=price"));
+                break;
+            case OFFERS:
+                builder = HttpRequest.newBuilder(URI.create(base + "/offers"));
+                break;
+            case TIENDA:
+                String categoria = categories[random.nextInt(categories.length)];
+                builder = HttpRequest.newBuilder(URI.create(base + "/tienda?categoria=" + categoria));
+                break;
+            default:
+                String id = itemIds[random.nextInt(itemIds.length)];
+                String price = String.format(Locale.ROOT, "%.2f", 1 + random.nextInt(100_000) / 100.0);
+                builder = HttpRequest.newBuilder(URI.create(base + "/api/items/" + id + "/price"))
+                        .POST(HttpRequest.BodyPublishers.ofString(price));
+                break;
+        }
+        return builder.timeout(Duration.ofSeconds(30)).build();
+    }
+
+    static String[] itemIds(HttpClient http, String base) throws IOException, InterruptedException {
+        HttpResponse<String> response = http.send(HttpRequest.newBuilder(URI.create(base + "/items")).build(),
+                HttpResponse.BodyHandlers.ofString());
+        List<String> ids = new ArrayList<>();
+        for (JsonElement item : new Gson().fromJson(response.body(), JsonElement.class).getAsJsonArray()) {
+            ids.add(item.getAsJsonObject().get("id").getAsString());
+        }
+        return ids.toArray(new String[0]);
+    }
+
+    static Map<Route, Integer> parseMix(String spec) {
+        Map<Route, Integer> mix = new EnumMap<>(Route.class);
+        for (String part : spec.split(",")) {
+            String[] kv = part.trim().split("=");
+            mix.put(Route.valueOf(kv[0].trim().toUpperCase(Locale.ROOT)), Integer.parseInt(kv[1].trim()));
+        }
+        return mix;
+    }
+
+    /** Route table where each route appears as many times as its weight. */
+    static Route[] wheel(Map<Route, Integer> mix) {
+        List<Route> wheel = new ArrayList<>();
+        mix.forEach((route, weight) -> {
+            for (int i = 0; i < weight; i++) {
+                wheel.add(route);
+            }
+        });
+        return wheel.toArray(new Route[0]);
+    }
+
+    private static void report(int clients, int seconds, Map<Route, Integer> mix, List<Map<Route, Latencies>> results) {
+        System.out.printf("clients=%d duration=%ds mix=%s maxThreads=%s%n", clients, seconds, mix,
+                System.getProperty("collectors.http.maxThreads", "200"));
+        System.out.printf("%-28s %9s %9s %9s %9s %9s %9s %7s%n",
+                "route", "requests", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms", "errors");
+        Latencies total = new Latencies();
+        for (Route route : Route.values()) {
+            Latencies merged = new Latencies();
+            for (Map<Route, Latencies> worker : results) {
+                Latencies part = worker.get(route);
+                for (int i = 0; i < part.size; i++) {
+                    merged.add(part.values[i]);
+                    total.add(part.values[i]);
+                }
+                merged.errors += part.errors;
+                total.errors += part.errors;
+            }
+            if (merged.size > 0) {
+                print(route.label, merged, seconds);
+            }
+        }
+        print("TOTAL", total, seconds);
+    }
+
+    private static void print(String label, Latencies latencies, int seconds) {
+        long[] sorted = Arrays.copyOf(latencies.values, latencies.size);
+        Arrays.sort(sorted);
+        System.out.printf("%-28s %9d %9.0f %9.2f %9.2f %9.2f %9.2f %7d%n",
+                label, sorted.length, sorted.length / (double) seconds,
+                percentile(sorted, 0.50), percentile(sorted, 0.99), percentile(sorted, 0.999),
+                sorted[sorted.length - 1] / 1e6, latencies.errors);
+    }
+
+    static double percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+    }
+}
@@ -0,0 +1,58 @@
+package org.johan.bench;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.johan.models.Money;
+import org.johan.websocket.PriceWebSocket;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Price parsing and formatting: the original {@code replaceAll} +
+ * {@code Double.parseDouble} and {@code String.format("%s:%.2f")} versus
+ * {@link Money#parseLenient} and {@link PriceWebSocket#priceMessage}.
+ * Run with {@code -prof gc} to compare allocations per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoneyBenchmark {
+
+    @State(Scope.Thread)
+    public static class Prices {
+        String catalogPrice = "$621.34 USD";
+        String itemId = "item42";
+        double doublePrice = 621.34;
+        Money money = Money.ofMinor(62_134);
+    }
+
+    @Benchmark
+    public double baselineParse(Prices p) {
+        return Double.parseDouble(p.catalogPrice.replaceAll("[^\\d.]", ""));
+    }
+
+    @Benchmark
+    public long moneyParse(Prices p) {
+        return Money.parseLenient(p.catalogPrice).minor();
+    }
+
+    @Benchmark
+    public String baselineFormat(Prices p) {
+        return String.format(Locale.ROOT, "%s:%.2f", p.itemId, p.doublePrice);
+    }
+
+    @Benchmark
+    public String moneyFormat(Prices p) {
+        return PriceWebSocket.priceMessage(p.itemId, p.money);
+    }
+}
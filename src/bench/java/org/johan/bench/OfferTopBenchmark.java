@@ -0,0 +1,92 @@
+package org.johan.bench;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.johan.auction.BidEngine;
+import org.johan.models.Offer;
+import org.johan.services.ItemService;
+import org.johan.services.OfferService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Best bids of one item ({@code GET /offers?itemId=X&top=10}) with a bid
+ * history of 100k to 2M offers spread over {@value #ITEMS} items: filtering
+ * and sorting every offer ever placed versus the per-item top set of
+ * {@link OfferService#getTopOffers}. {@code updateTopOffer} edits the best
+ * bid of an item, which takes it out of the top set and refills the set
+ * from that item's offers.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class OfferTopBenchmark {
+
+    static final int ITEMS = 1000;
+    static final int TOP = 10;
+
+    @State(Scope.Benchmark)
+    public static class Offers {
+        @Param({"100000", "2000000"})
+        int history;
+
+        OfferService offerService;
+
+        @Setup
+        public void setup() {
+            offerService = BenchData.quietly(() -> {
+                ItemService itemService = new ItemService();
+                BenchData.items(ITEMS).forEach(itemService::createItem);
+                OfferService service = new OfferService(new BidEngine(itemService));
+                BenchData.offers(history, ITEMS).forEach(service::addOffer);
+                return service;
+            });
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private final SplittableRandom random = new SplittableRandom(42);
+
+        String nextItem() {
+            return BenchData.id(random.nextInt(ITEMS));
+        }
+    }
+
+    @Benchmark
+    public List<Offer> baselineScanAndSort(Offers o, Cursor c) {
+        String itemId = c.nextItem();
+        return o.offerService.getAllOffers().stream()
+                .filter(offer -> itemId.equals(offer.getItemId()))
+                .sorted(Comparator.comparingLong((Offer offer) -> offer.getCurrentBid().minor()).reversed())
+                .limit(TOP)
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<Offer> topOffers(Offers o, Cursor c) {
+        return o.offerService.getTopOffers(c.nextItem(), TOP);
+    }
+
+    @Benchmark
+    public Offer updateTopOffer(Offers o, Cursor c) {
+        Offer best = o.offerService.getTopOffers(c.nextItem(), 1).get(0);
+        Offer same = new Offer(best.getItemId(), best.getCurrentBid(), best.getBidder());
+        return o.offerService.updateOffer(best.getId(), same);
+    }
+}
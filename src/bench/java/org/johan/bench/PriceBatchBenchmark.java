@@ -0,0 +1,153 @@
+package org.johan.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import org.johan.models.Item;
+import org.johan.models.Money;
+import org.johan.services.ItemService;
+import org.johan.services.PriceUpdateService;
+import org.johan.storage.Journal;
+import org.johan.storage.WriteAheadLog;
+import org.johan.websocket.BroadcastEngine;
+import org.johan.websocket.OutboundChannel;
+import org.johan.websocket.PriceWebSocket;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Repricing a whole category ({@value #CATALOG} items, {@value BenchData#CATEGORIES}
+ * categories): one {@link PriceUpdateService#updatePrice} call per item, as
+ * the {@code /api/items/:id/price} route does, versus the bulk
+ * {@link PriceUpdateService#updatePrices} and
+ * {@link PriceUpdateService#applyCategoryFactor} paths. Each operation
+ * reprices every item of the category, with and without the write-ahead log
+ * and with WebSocket clients that accept every frame immediately.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PriceBatchBenchmark {
+
+    static final int CATALOG = 10_000;
+    static final String CATEGORY = "Cat3";
+    static final Money BASE_PRICE = Money.ofMinor(10_000);
+
+    /** Cliente simulado que completa cada envío al instante. */
+    private static final class InstantChannel implements OutboundChannel {
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void send(String message, Consumer<Throwable> onComplete) {
+            onComplete.accept(null);
+        }
+
+        @Override
+        public void close(int statusCode, String reason) {
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Prices {
+        @Param({"OFF", "GROUP"})
+        String journalMode;
+
+        @Param({"0", "1000"})
+        int sessions;
+
+        Path dir;
+        Journal journal;
+        PriceUpdateService priceUpdateService;
+        List<String> categoryIds;
+        List<OutboundChannel> channels = new ArrayList<>();
+        int round;
+
+        @Setup
+        public void setup() throws IOException {
+            if ("OFF".equals(journalMode)) {
+                journal = Journal.disabled();
+            } else {
+                dir = Files.createTempDirectory("collectors-prices");
+                journal = Journal.open(dir, WriteAheadLog.SyncMode.valueOf(journalMode), 5, 0);
+            }
+            ItemService itemService = BenchData.quietly(() -> new ItemService(journal));
+            journal.recover();
+            itemService.upsertItems(BenchData.items(CATALOG));
+            priceUpdateService = new PriceUpdateService(itemService);
+            categoryIds = new ArrayList<>();
+            for (Item item : itemService.findItems(CATEGORY, null, null, null)) {
+                categoryIds.add(item.getId());
+            }
+            BroadcastEngine engine = PriceWebSocket.engine();
+            for (int i = 0; i < sessions; i++) {
+                OutboundChannel channel = new InstantChannel();
+                engine.register(channel);
+                channels.add(channel);
+            }
+        }
+
+        /** Alterna subidas y bajadas para que los precios no se desborden. */
+        double nextFactor() {
+            return (round++ & 1) == 0 ? 1.01 : 0.99;
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            channels.forEach(PriceWebSocket.engine()::unregister);
+            journal.close();
+            if (dir != null) {
+                try (Stream<Path> files = Files.walk(dir)) {
+                    files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public int perItem(Prices p) {
+        Money price = BASE_PRICE.times(p.nextFactor());
+        for (String id : p.categoryIds) {
+            p.priceUpdateService.updatePrice(id, price);
+        }
+        return p.categoryIds.size();
+    }
+
+    @Benchmark
+    public List<Item> bulkPairs(Prices p) {
+        Money price = BASE_PRICE.times(p.nextFactor());
+        Map<String, Money> prices = new LinkedHashMap<>();
+        for (String id : p.categoryIds) {
+            prices.put(id, price);
+        }
+        return p.priceUpdateService.updatePrices(prices);
+    }
+
+    @Benchmark
+    public List<Item> bulkCategoryFactor(Prices p) {
+        return p.priceUpdateService.applyCategoryFactor(CATEGORY, p.nextFactor());
+    }
+}
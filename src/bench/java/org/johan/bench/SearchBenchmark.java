@@ -0,0 +1,162 @@
+package org.johan.bench;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.johan.models.Item;
+import org.johan.models.ItemPage;
+import org.johan.models.Money;
+import org.johan.services.FilterService;
+import org.johan.storage.ItemCatalog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Full-text item search ({@code GET /items/search}) over a catalog whose
+ * names and descriptions combine a few hundred common words with one unique
+ * lot number per item, next to the scan of every name and description it
+ * replaces ({@code baselineScan}). {@code replaceItem} is the cost of
+ * keeping the word index up to date on an update.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx3g")
+public class SearchBenchmark {
+
+    private static final int LIMIT = 20;
+
+    private static final String[] OBJECTS = {
+        "Gorra", "Casco", "Chamarra", "Guitarra", "Jersey", "Prenda", "Disco", "Vinilo",
+        "Póster", "Batería", "Micrófono", "Boleto", "Camiseta", "Sudadera", "Bajo", "Piano"
+    };
+    private static final String[] DETAILS = {
+        "autografiada", "firmada", "usada en concierto", "edición limitada", "original", "de colección"
+    };
+    private static final String[] ARTISTS = {
+        "Rosalía", "Peso Pluma", "Bad Bunny", "Fernando Delgadillo", "Snoop Dogg", "Cardi B", "Coldplay",
+        "Shakira", "Maná", "Café Tacvba", "Julieta Venegas", "Natalia Lafourcade", "Juanes", "Karol G",
+        "Gustavo Cerati", "Soda Stereo", "Zoé", "Molotov", "Caifanes", "Luis Miguel", "Selena",
+        "Juan Gabriel", "Vicente Fernández", "Ángela Aguilar", "Christian Nodal", "Carín León",
+        "Grupo Frontera", "Feid", "Rauw Alejandro", "Daddy Yankee", "Ozuna", "Myke Towers",
+        "Sebastián Yatra", "Camilo", "Morat", "Reik", "Belinda", "Danna Paola", "Kenia Os", "Nicki Nicole"
+    };
+    private static final String[] CITIES = {
+        "Monterrey", "Guadalajara", "Ciudad de México", "Bogotá", "Madrid", "Buenos Aires", "Lima", "Santiago"
+    };
+
+    @State(Scope.Benchmark)
+    public static class Catalog {
+        @Param({"100000", "1000000"})
+        int size;
+
+        ItemCatalog catalog;
+        FilterService filterService;
+        List<Item> baselineItems;
+        String lastLot;
+        int next;
+
+        @Setup
+        public void setup() {
+            catalog = new ItemCatalog();
+            baselineItems = new ArrayList<>(size);
+            List<Item> items = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                items.add(item(i));
+            }
+            catalog.addAll(items);
+            baselineItems.addAll(items);
+            filterService = new FilterService();
+            lastLot = "lote " + (size - 1) + ".";
+            System.out.printf("%n%d items, %d distinct words%n", size, catalog.read(index -> index.wordCount()));
+        }
+    }
+
+    static Item item(int i) {
+        return item(i, 0);
+    }
+
+    /** {@code detailShift} changes one word of the name, as an edit would. */
+    static Item item(int i, int detailShift) {
+        String object = OBJECTS[i % OBJECTS.length];
+        String artist = ARTISTS[(i / OBJECTS.length) % ARTISTS.length];
+        String name = object + " " + DETAILS[(i + detailShift) % DETAILS.length] + " por " + artist;
+        String description = object + " de " + artist + " de la gira por " + CITIES[i % CITIES.length]
+                + " en " + (1990 + i % 35) + ", lote " + i + ".";
+        Item item = new Item(BenchData.id(i), name, description, Money.ofMinor((i % 1000) * 100L),
+                "Cat" + (i % BenchData.CATEGORIES), null);
+        item.setAvailable(i % 4 != 0);
+        return item;
+    }
+
+    /** One word shared by 1 item in 640 ({@code Rosalía} typed without accent). */
+    @Benchmark
+    public ItemPage searchWord(Catalog c) {
+        return c.filterService.searchPage(c.catalog, "rosalia", null, null, null, null, null, LIMIT);
+    }
+
+    /** Typeahead: a prefix shared by many words (all the lot numbers starting with 12). */
+    @Benchmark
+    public ItemPage searchPrefix(Catalog c) {
+        return c.filterService.searchPage(c.catalog, "12", null, null, null, null, null, LIMIT);
+    }
+
+    /** Two words and a prefix: the rarest word drives, the others are probed. */
+    @Benchmark
+    public ItemPage searchTwoWordsAndPrefix(Catalog c) {
+        return c.filterService.searchPage(c.catalog, "guitarra cerati bogo", null, null, null, null, null, LIMIT);
+    }
+
+    /** A common word with a category and a narrow price range that leave few of its items. */
+    @Benchmark
+    public ItemPage searchFiltered(Catalog c) {
+        return c.filterService.searchPage(c.catalog, "firmada", "Cat3", Money.ofMinor(10_000),
+                Money.ofMinor(12_000), true, null, LIMIT);
+    }
+
+    /** One item among all: its lot number, the last in the catalog. */
+    @Benchmark
+    public ItemPage searchUnique(Catalog c) {
+        return c.filterService.searchPage(c.catalog, c.lastLot, null, null, null, null, null, LIMIT);
+    }
+
+    /** {@link #searchUnique} by scanning and folding every name and description. */
+    @Benchmark
+    public List<Item> baselineScan(Catalog c) {
+        List<Item> result = new ArrayList<>(LIMIT);
+        for (Item item : c.baselineItems) {
+            if (fold(item.getName()).contains(c.lastLot) || fold(item.getDescription()).contains(c.lastLot)) {
+                result.add(item);
+                if (result.size() == LIMIT) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Edit of one item that changes a word of its name: that word is unindexed and the new one indexed. */
+    @Benchmark
+    public Item replaceItem(Catalog c) {
+        int n = c.next++;
+        int i = n % c.size;
+        return c.catalog.replace(BenchData.id(i), item(i, (n / c.size) % 2 == 0 ? 1 : 0));
+    }
+
+    private static String fold(String text) {
+        return Normalizer.normalize(text, Normalizer.Form.NFD).replaceAll("\\p{M}", "").toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,98 @@
+package org.johan.bench;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.johan.models.Item;
+import org.johan.models.Offer;
+import org.johan.models.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Gson serialization of the list responses: building the whole document as
+ * a {@code String} ({@code gson.toJson(list)}, the original controllers)
+ * versus writing element by element to a stream (what the list routes do
+ * now). Reported as average time per list.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Lists {
+        @Param({"100", "10000"})
+        int size;
+
+        final Gson gson = new Gson();
+        List<Item> items;
+        List<User> users;
+        List<Offer> offers;
+
+        @Setup
+        public void setup() {
+            items = BenchData.items(size);
+            users = BenchData.users(size);
+            offers = BenchData.offers(size, Math.min(size, 1000));
+        }
+    }
+
+    @Benchmark
+    public String itemsToString(Lists l) {
+        return l.gson.toJson(l.items);
+    }
+
+    @Benchmark
+    public Writer itemsStreamed(Lists l) throws IOException {
+        return stream(l.gson, l.items, Item.class);
+    }
+
+    @Benchmark
+    public String usersToString(Lists l) {
+        return l.gson.toJson(l.users);
+    }
+
+    @Benchmark
+    public Writer usersStreamed(Lists l) throws IOException {
+        return stream(l.gson, l.users, User.class);
+    }
+
+    @Benchmark
+    public String offersToString(Lists l) {
+        return l.gson.toJson(l.offers);
+    }
+
+    @Benchmark
+    public Writer offersStreamed(Lists l) throws IOException {
+        return stream(l.gson, l.offers, Offer.class);
+    }
+
+    private static <T> Writer stream(Gson gson, List<T> elements, Class<T> type) throws IOException {
+        Writer out = Writer.nullWriter();
+        JsonWriter json = gson.newJsonWriter(out);
+        json.beginArray();
+        for (T element : elements) {
+            gson.toJson(element, type, json);
+        }
+        json.endArray();
+        json.flush();
+        return out;
+    }
+}
@@ -0,0 +1,219 @@
+package org.johan.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.johan.auction.BidEngine;
+import org.johan.models.Item;
+import org.johan.models.Money;
+import org.johan.models.Offer;
+import org.johan.models.User;
+import org.johan.services.FilterService;
+import org.johan.services.ItemService;
+import org.johan.services.OfferService;
+import org.johan.services.UserService;
+import org.johan.storage.ItemCatalog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Hot paths of the services at realistic catalog sizes, each next to the
+ * plain {@code ArrayList} implementation the services started from
+ * ({@code baseline*} methods). New storage or index implementations should
+ * beat the baseline and must not regress against the previous run.
+ * {@code listFilter*} is the current single-loop scan of a plain list.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServicesBenchmark {
+
+    private static final Money MIN_PRICE = Money.ofMinor(10_000);
+    private static final Money MAX_PRICE = Money.ofMinor(20_000);
+    private static final Money BROAD_MAX_PRICE = Money.ofMinor(90_000);
+    private static final Money NEW_PRICE = Money.ofMinor(12_345);
+
+    @State(Scope.Benchmark)
+    public static class Services {
+        @Param({"1000", "100000"})
+        int size;
+
+        List<Item> baselineItems;
+        ItemCatalog catalog;
+        ItemService itemService;
+        FilterService filterService;
+
+        List<User> baselineUsers;
+        UserService userService;
+
+        List<Offer> baselineOffers;
+        OfferService offerService;
+        String[] offerIds;
+
+        @Setup
+        public void setup() {
+            baselineItems = BenchData.items(size);
+            catalog = new ItemCatalog();
+            BenchData.items(size).forEach(catalog::add);
+            itemService = BenchData.quietly(() -> {
+                ItemService service = new ItemService();
+                BenchData.items(size).forEach(service::createItem);
+                return service;
+            });
+            filterService = new FilterService();
+
+            baselineUsers = BenchData.users(size);
+            userService = new UserService();
+            BenchData.users(size).forEach(userService::createUser);
+
+            baselineOffers = BenchData.offers(size, Math.min(size, 1000));
+            offerService = BenchData.quietly(() -> {
+                OfferService service = new OfferService(new BidEngine(itemService));
+                BenchData.offers(size, Math.min(size, 1000)).forEach(service::addOffer);
+                return service;
+            });
+            List<String> ids = new ArrayList<>();
+            offerService.getAllOffers().forEach(o -> ids.add(o.getId()));
+            offerIds = ids.toArray(new String[0]);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private final SplittableRandom random = new SplittableRandom(42);
+
+        int next(int bound) {
+            return random.nextInt(bound);
+        }
+    }
+
+    // --- FilterService.applyFilters ---
+
+    @Benchmark
+    public List<Item> baselineFilterSelective(Services s) {
+        return baselineFilters(s.baselineItems, "Cat3", MIN_PRICE, MAX_PRICE, true);
+    }
+
+    @Benchmark
+    public List<Item> listFilterSelective(Services s) {
+        return s.filterService.applyFilters(s.baselineItems, "Cat3", MIN_PRICE, MAX_PRICE, true);
+    }
+
+    @Benchmark
+    public List<Item> catalogFilterSelective(Services s) {
+        return s.filterService.applyFilters(s.catalog, "Cat3", MIN_PRICE, MAX_PRICE, true);
+    }
+
+    @Benchmark
+    public List<Item> baselineFilterBroad(Services s) {
+        return baselineFilters(s.baselineItems, null, Money.ZERO, BROAD_MAX_PRICE, null);
+    }
+
+    @Benchmark
+    public List<Item> listFilterBroad(Services s) {
+        return s.filterService.applyFilters(s.baselineItems, null, Money.ZERO, BROAD_MAX_PRICE, null);
+    }
+
+    @Benchmark
+    public List<Item> catalogFilterBroad(Services s) {
+        return s.filterService.applyFilters(s.catalog, null, Money.ZERO, BROAD_MAX_PRICE, null);
+    }
+
+    /**
+     * The original {@code FilterService.applyFilters(List, ...)}: one stream
+     * with a filter stage per criterion (prices compared as {@link Money}).
+     */
+    private static List<Item> baselineFilters(List<Item> items, String category, Money minPrice, Money maxPrice,
+                                              Boolean available) {
+        return items.stream()
+                .filter(i -> (category == null || i.getCategory().equalsIgnoreCase(category)))
+                .filter(i -> (minPrice == null || i.getPrice().compareTo(minPrice) >= 0))
+                .filter(i -> (maxPrice == null || i.getPrice().compareTo(maxPrice) <= 0))
+                .filter(i -> (available == null || i.isAvailable() == available))
+                .collect(Collectors.toList());
+    }
+
+    // --- ItemService.getAllItems (query string parsing + filtering) ---
+
+    @Benchmark
+    public List<Item> getAllItemsWithQueryStrings(Services s) {
+        return s.itemService.getAllItems("cat3", "100", "200.50", "true");
+    }
+
+    // --- ItemService.updateItemPrice ---
+
+    @Benchmark
+    public Item baselineUpdatePrice(Services s, Cursor c) {
+        String id = BenchData.id(c.next(s.size));
+        for (Item item : s.baselineItems) {
+            if (item.getId().equals(id)) {
+                item.setPrice(NEW_PRICE);
+                return item;
+            }
+        }
+        return null;
+    }
+
+    @Benchmark
+    public Item updateItemPrice(Services s, Cursor c) {
+        return s.itemService.updateItemPrice(BenchData.id(c.next(s.size)), NEW_PRICE);
+    }
+
+    // --- OfferService.getOfferById ---
+
+    @Benchmark
+    public Offer baselineOfferLookup(Services s, Cursor c) {
+        String id = s.baselineOffers.get(c.next(s.size)).getId();
+        return s.baselineOffers.stream().filter(o -> o.getId().equals(id)).findFirst().orElse(null);
+    }
+
+    @Benchmark
+    public Offer getOfferById(Services s, Cursor c) {
+        return s.offerService.getOfferById(s.offerIds[c.next(s.offerIds.length)]);
+    }
+
+    // --- UserService.getUserById ---
+
+    @Benchmark
+    public User baselineUserLookup(Services s, Cursor c) {
+        String id = "user" + c.next(s.size);
+        return s.baselineUsers.stream().filter(u -> u.getId().equals(id)).findFirst().orElse(null);
+    }
+
+    @Benchmark
+    public User getUserById(Services s, Cursor c) {
+        return s.userService.getUserById("user" + c.next(s.size));
+    }
+
+    // --- UserService.userExists (OPTIONS /api/users/:id) and email lookup ---
+
+    @Benchmark
+    public boolean baselineUserExists(Services s, Cursor c) {
+        String id = "user" + c.next(s.size);
+        return s.baselineUsers.stream().anyMatch(u -> u.getId().equals(id));
+    }
+
+    @Benchmark
+    public boolean userExists(Services s, Cursor c) {
+        return s.userService.userExists("user" + c.next(s.size));
+    }
+
+    @Benchmark
+    public User getUserByEmail(Services s, Cursor c) {
+        return s.userService.getUserByEmail("user" + c.next(s.size) + "@collectors.test");
+    }
+}
@@ -0,0 +1,119 @@
+package org.johan.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.johan.auction.TimerWheel;
+import org.johan.metrics.LatencyHistogram;
+import org.johan.services.AuctionService;
+
+/**
+ * Auction end-time driver: schedules millions of deadlines spread over a
+ * time window from several threads, then waits for all of them and reports
+ * the scheduling rate, the heap retained per pending deadline and how late
+ * the tasks ran (p50/p99/p99.9/max).
+ * <p>
+ * Arguments: {@code timers seconds [WHEEL|SCHEDULED [tickMs]]}, e.g.
+ * {@code 2000000 20 WHEEL}. {@code WHEEL} is the {@link TimerWheel} of
+ * {@link AuctionService}; {@code SCHEDULED} is one {@code ScheduledFuture}
+ * per deadline on a {@link ScheduledThreadPoolExecutor}, for comparison.
+ * Lateness is measured when the task runs on the closing thread, after the
+ * hand-off from the timer thread.
+ * </p>
+ */
+public class TimerLoadTest {
+
+    private static final int SCHEDULING_THREADS = 4;
+    /** Los plazos empiezan tras este margen, cuando ya está todo programado. */
+    private static final long START_OFFSET_MS = 5_000;
+
+    public static void main(String[] args) throws Exception {
+        int timers = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        String mode = args.length > 2 ? args[2].toUpperCase(Locale.ROOT) : "WHEEL";
+        long tickMs = args.length > 3 ? Long.parseLong(args[3]) : AuctionService.DEFAULT_TICK_MS;
+
+        LatencyHistogram lateness = new LatencyHistogram();
+        CountDownLatch done = new CountDownLatch(timers);
+        Scheduler scheduler;
+        ScheduledThreadPoolExecutor futures = null;
+        TimerWheel wheel = null;
+        if (mode.equals("SCHEDULED")) {
+            futures = new ScheduledThreadPoolExecutor(1);
+            ScheduledThreadPoolExecutor pool = futures;
+            scheduler = (task, delayNanos) -> pool.schedule(task, delayNanos, TimeUnit.NANOSECONDS);
+        } else {
+            wheel = AuctionService.newWheel(tickMs, AuctionService.DEFAULT_WHEEL_SIZE, 1);
+            TimerWheel target = wheel;
+            scheduler = (task, delayNanos) -> target.schedule(task, delayNanos, TimeUnit.NANOSECONDS);
+        }
+
+        long heapBefore = usedHeap();
+        long base = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(START_OFFSET_MS);
+        long window = TimeUnit.SECONDS.toNanos(seconds);
+        long scheduleStart = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(SCHEDULING_THREADS);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < SCHEDULING_THREADS; t++) {
+            int seed = t;
+            workers.add(pool.submit(() -> {
+                SplittableRandom random = new SplittableRandom(seed);
+                for (int i = seed; i < timers; i += SCHEDULING_THREADS) {
+                    long deadline = base + random.nextLong(window);
+                    scheduler.schedule(() -> {
+                        lateness.record(System.nanoTime() - deadline);
+                        done.countDown();
+                    }, deadline - System.nanoTime());
+                }
+            }));
+        }
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        pool.shutdown();
+        long scheduleNanos = System.nanoTime() - scheduleStart;
+        long heapAfter = usedHeap();
+
+        System.out.printf("mode=%s timers=%d window=%ds%s%n", mode, timers, seconds,
+                wheel != null ? " tick=" + wheel.tickMillis() + "ms buckets=" + wheel.size() : "");
+        System.out.printf("scheduling: %.0f ms (%.0f ns/timer, %d threads), retained heap %.1f MB (%.0f B/timer)%n",
+                scheduleNanos / 1e6, scheduleNanos / (double) timers, SCHEDULING_THREADS,
+                (heapAfter - heapBefore) / 1e6, (heapAfter - heapBefore) / (double) timers);
+        if (base - System.nanoTime() < 0) {
+            System.out.println("warning: scheduling took longer than the start offset");
+        }
+        if (!done.await(START_OFFSET_MS + TimeUnit.SECONDS.toMillis(seconds) + 60_000, TimeUnit.MILLISECONDS)) {
+            System.out.println("warning: " + done.getCount() + " timers did not fire");
+        }
+        long[] p = lateness.percentiles(0.50, 0.99, 0.999, 1.0);
+        System.out.printf("fired=%d lateness p50=%.2f ms p99=%.2f ms p99.9=%.2f ms max=%.2f ms%n",
+                lateness.count(), p[0] / 1e6, p[1] / 1e6, p[2] / 1e6, p[3] / 1e6);
+        if (futures != null) {
+            futures.shutdownNow();
+        } else {
+            wheel.stop();
+        }
+        System.exit(0);
+    }
+
+    /** Programa una tarea con cualquiera de las dos implementaciones. */
+    private interface Scheduler {
+        void schedule(Runnable task, long delayNanos);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
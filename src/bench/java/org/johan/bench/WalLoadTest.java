@@ -0,0 +1,119 @@
+package org.johan.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.johan.metrics.LatencyHistogram;
+import org.johan.models.Money;
+import org.johan.services.ItemService;
+import org.johan.storage.Journal;
+import org.johan.storage.WriteAheadLog;
+
+/**
+ * Write-ahead log driver: many threads update item prices through an
+ * {@link ItemService} backed by a {@link Journal}, then the journal is
+ * reopened to measure recovery.
+ * <p>
+ * Arguments: {@code threads seconds [GROUP|ASYNC [items [snapshotEvery [dir]]]]}.
+ * Reports write latency percentiles (change applied and durable), the
+ * average group commit size and the time to recover the written data.
+ * Without {@code dir} a temporary directory is used and deleted afterwards.
+ * </p>
+ */
+public class WalLoadTest {
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        WriteAheadLog.SyncMode mode = args.length > 2
+                ? WriteAheadLog.SyncMode.valueOf(args[2].toUpperCase(Locale.ROOT))
+                : WriteAheadLog.SyncMode.GROUP;
+        int items = args.length > 3 ? Integer.parseInt(args[3]) : 10_000;
+        long snapshotEvery = args.length > 4 ? Long.parseLong(args[4]) : 100_000;
+        boolean temporary = args.length <= 5;
+        Path dir = temporary ? Files.createTempDirectory("collectors-wal") : Path.of(args[5]);
+
+        Journal journal = Journal.open(dir, mode, 5, snapshotEvery);
+        ItemService service = BenchData.quietly(() -> new ItemService(journal));
+        journal.recover();
+        for (int i = 0; i < items; i++) {
+            service.createItem(BenchData.item(i));
+        }
+        long appendedBefore = journal.appended();
+        long batchesBefore = journal.batches();
+
+        LatencyHistogram latency = new LatencyHistogram();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            workers.add(pool.submit(() -> {
+                int i = seed;
+                while (System.nanoTime() < deadline) {
+                    String id = BenchData.id(i % items);
+                    long start = System.nanoTime();
+                    service.updateItemPrice(id, Money.ofMinor(100 + i % 100_000));
+                    latency.record(System.nanoTime() - start);
+                    i += threads;
+                }
+            }));
+        }
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        pool.shutdown();
+
+        long writes = latency.count();
+        long batches = journal.batches() - batchesBefore;
+        long[] p = latency.percentiles(0.50, 0.99, 0.999);
+        System.out.printf("mode=%s threads=%d duration=%ds items=%d snapshotEvery=%d%n",
+                mode, threads, seconds, items, snapshotEvery);
+        System.out.printf("writes=%d (%.0f/s) groupCommits=%d avgBatch=%.1f snapshots=%d%n",
+                writes, writes / (double) seconds, batches,
+                batches > 0 ? (journal.appended() - appendedBefore) / (double) batches : 0.0, journal.snapshots());
+        System.out.printf("latency ms: p50=%.3f p99=%.3f p999=%.3f%n", p[0] / 1e6, p[1] / 1e6, p[2] / 1e6);
+        journal.close();
+
+        long onDisk = size(dir);
+        long start = System.nanoTime();
+        Journal reopened = Journal.open(dir, mode, 5, snapshotEvery);
+        ItemService recovered = BenchData.quietly(() -> new ItemService(reopened));
+        reopened.recover();
+        double recoveryMs = (System.nanoTime() - start) / 1e6;
+        System.out.printf("recovery: %.1f ms for %d items (%.1f MB on disk before recovery)%n",
+                recoveryMs, recovered.getAllItems().size(), onDisk / 1e6);
+        reopened.close();
+
+        if (temporary) {
+            delete(dir);
+        }
+    }
+
+    private static long size(Path dir) throws IOException {
+        long total = 0;
+        try (var files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                total += Files.size(file);
+            }
+        }
+        return total;
+    }
+
+    private static void delete(Path dir) throws IOException {
+        try (var files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(dir);
+    }
+}
@@ -1,19 +1,57 @@
 package org.johan;
 
+import org.johan.auction.BidEngine;
+import org.johan.auction.BidRateLimiter;
+import org.johan.config.AppConfig;
+import org.johan.controllers.AuctionControllers;
 import org.johan.controllers.ItemController;
+import org.johan.controllers.ItemControllers;
 import org.johan.controllers.OffersControllers;
 import org.johan.controllers.UserController;
 import org.johan.exceptions.ConflictException;
 import org.johan.exceptions.NotFoundException;
+import org.johan.exceptions.TooManyRequestsException;
 import org.johan.exceptions.ValidationException;
+import org.johan.metrics.HttpMetrics;
+import org.johan.metrics.MetricsRegistry;
 import org.johan.models.ErrorResponse;
+import org.johan.models.ImportJob;
+import org.johan.models.Item;
+import org.johan.models.Money;
+import org.johan.models.PriceBatchRequest;
+import org.johan.server.ConcurrencyLimiter;
+import org.johan.server.VirtualThreadPool;
+import org.johan.services.AuctionService;
+import org.johan.services.CatalogImporter;
 import org.johan.services.ItemService;
+import org.johan.services.OfferService;
 import org.johan.services.PriceUpdateService;
 import org.johan.services.UserService;
+import org.johan.storage.Journal;
+import org.johan.templates.PageCache;
+import org.johan.templates.TemplateRenderer;
+import org.johan.websocket.BroadcastEngine;
 import org.johan.websocket.PriceWebSocket;
 
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import spark.embeddedserver.EmbeddedServers;
+import spark.embeddedserver.jetty.EmbeddedJettyFactory;
 
+import static spark.Spark.awaitInitialization;
 import static spark.Spark.delete;
 import static spark.Spark.exception;
 import static spark.Spark.get;
@@ -25,50 +63,125 @@ import static spark.Spark.post;
 import static spark.Spark.put;
 import static spark.Spark.redirect;
 import static spark.Spark.staticFiles;
+import static spark.Spark.threadPool;
 import static spark.Spark.webSocket;
 
 public class Main {
+    private static final Logger log = LoggerFactory.getLogger(Main.class);
+
     public static void main(String[] args) {
+        start(AppConfig.getInt("collectors.port", 4567));
+    }
+
+    /**
+     * Configura y arranca el servidor, esperando a que acepte conexiones.
+     *
+     * @param serverPort puerto HTTP (0 = puerto libre aleatorio, útil en pruebas de carga)
+     * @return el puerto en el que escucha el servidor
+     */
+    public static int start(int serverPort) {
         
         // --- 1. CONFIGURACIÓN DEL SERVIDOR ---
-        port(4567);
+        port(serverPort);
+        boolean virtualThreads = configureThreads();
         staticFiles.location("/public"); 
 
         // --- 2. REGISTRO DE WEBSOCKET (DEBE IR ANTES QUE TODO) ---
         // ¡Este es el cambio! Lo movimos aquí arriba.
         webSocket("/precios", PriceWebSocket.class);
 
+        // Métricas: los filtros de tiempos deben registrarse antes que las rutas
+        MetricsRegistry metrics = new MetricsRegistry();
+        HttpMetrics.install(metrics);
+        // Límite de peticiones simultáneas (imprescindible con hilos virtuales: el pool ya no limita)
+        int maxConcurrent = AppConfig.getInt("collectors.http.maxConcurrent", virtualThreads ? 1000 : 0);
+        ConcurrencyLimiter limiter = maxConcurrent > 0
+                ? ConcurrencyLimiter.install(maxConcurrent, AppConfig.getLong("collectors.http.queueTimeoutMs", 1000),
+                        "/metrics")
+                : null;
+
         // --- 3. INYECCIÓN DE DEPENDENCIAS ---
         Gson gson = new Gson();
-        UserService userService = new UserService();
-        ItemService itemService = new ItemService();
+        // Motor de plantillas único: compila todas las plantillas una sola vez al arrancar
+        TemplateRenderer templates = new TemplateRenderer();
+        log.info("Plantillas precompiladas: {}", templates.precompileAll());
+        // Write-ahead log de usuarios, items y ofertas (solo si hay collectors.data.dir)
+        Journal journal = Journal.fromConfig();
+        UserService userService = new UserService(journal);
+        ItemService itemService = new ItemService(journal);
         PriceUpdateService priceUpdateService = new PriceUpdateService(itemService);
-        UserController userController = new UserController(userService, gson);
-        ItemController itemController = new ItemController(itemService);
+        BidEngine bidEngine = new BidEngine(itemService);
+        OfferService offerService = new OfferService(bidEngine, journal,
+                AppConfig.getInt("collectors.offers.topPerItem", OfferService.DEFAULT_TOP_PER_ITEM));
+        // Cierre de subastas: una rueda de temporizadores para todos los lotes (sin un hilo por lote)
+        AuctionService auctionService = new AuctionService(itemService, bidEngine, offerService, journal,
+                AuctionService.newWheel(AppConfig.getLong("collectors.auction.tickMs", AuctionService.DEFAULT_TICK_MS),
+                        AppConfig.getInt("collectors.auction.wheelSize", AuctionService.DEFAULT_WHEEL_SIZE),
+                        AppConfig.getInt("collectors.auction.closeThreads", 2)),
+                AppConfig.getLong("collectors.auction.softCloseMs", AuctionService.DEFAULT_SOFT_CLOSE_MS));
+        journal.recover();
+        auctionService.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(journal::close, "wal-close"));
+        // Importación de catálogos grandes por streaming (endpoint de admin y opción de arranque)
+        CatalogImporter catalogImporter = new CatalogImporter(itemService,
+                AppConfig.getInt("collectors.catalog.importBatch", 1000));
+        String importFile = AppConfig.getString("collectors.catalog.import", null);
+        if (importFile != null && !importFile.isBlank()) {
+            Path path = Path.of(importFile);
+            if (Files.isRegularFile(path)) {
+                log.info("Importando catálogo {} en segundo plano", path);
+                catalogImporter.importFileAsync(path);
+            } else {
+                log.warn("collectors.catalog.import: no existe el fichero {}", path);
+            }
+        }
+        PriceWebSocket.setOfferService(offerService);
+        // Límite de pujas por postor e item, antes del motor de pujas (HTTP y WebSocket)
+        double bidRate = AppConfig.getDouble("collectors.bids.ratePerSecond", 5);
+        BidRateLimiter bidLimiter = bidRate > 0
+                ? new BidRateLimiter(bidRate, AppConfig.getInt("collectors.bids.burst", 10),
+                        AppConfig.getInt("collectors.bids.maxTracked", 100_000))
+                : null;
+        PriceWebSocket.setBidRateLimiter(bidLimiter);
+        UserController userController = new UserController(userService, gson, templates);
+        PageCache tiendaCache = new PageCache(256);
+        ItemController itemController = new ItemController(itemService, templates, tiendaCache);
         
         // --- 4. REGISTRO DE RUTAS (CONTROLADORES Y EXCEPCIONES) ---
         
         // "Encender" el controlador de ofertas
-        new OffersControllers(); 
+        new OffersControllers(offerService, templates, bidLimiter);
+        new AuctionControllers(auctionService);
 
         // Manejadores de Excepciones
         exception(NotFoundException.class, (e, req, res) -> {
+            metrics.recordException(e);
             res.status(404);
             res.type("application/json");
             res.body(gson.toJson(new ErrorResponse("NOT_FOUND", e.getMessage())));
         });
         exception(ValidationException.class, (e, req, res) -> {
+            metrics.recordException(e);
             res.status(400);
             res.type("application/json");
             res.body(gson.toJson(new ErrorResponse("BAD_REQUEST", e.getMessage())));
         });
         exception(ConflictException.class, (e, req, res) -> {
+            metrics.recordException(e);
             res.status(409);
             res.type("application/json");
             res.body(gson.toJson(new ErrorResponse("CONFLICT", e.getMessage())));
         });
+        exception(TooManyRequestsException.class, (e, req, res) -> {
+            metrics.recordException(e);
+            res.status(429);
+            res.type("application/json");
+            res.header("Retry-After", String.valueOf(Math.max(1, (e.getRetryAfterMillis() + 999) / 1000)));
+            res.body(gson.toJson(new ErrorResponse("TOO_MANY_REQUESTS", e.getMessage())));
+        });
         exception(Exception.class, (e, req, res) -> {
-            e.printStackTrace();
+            metrics.recordException(e);
+            log.error("Error no controlado en {} {}", req.requestMethod(), req.pathInfo(), e);
             res.status(500);
             res.type("application/json");
             res.body(gson.toJson(new ErrorResponse("SERVER_ERROR", "Ocurrió un error inesperado")));
@@ -87,11 +200,40 @@ public class Main {
             
             // Ruta para actualizar precios (Sprint 3)
             path("/items", () -> {
+                // Actualización masiva: {"prices": {...}} o {"category": "...", "factor": 0.9}
+                post("/prices", (req, res) -> {
+                    res.type("application/json");
+                    PriceBatchRequest batch;
+                    try {
+                        batch = gson.fromJson(req.body(), PriceBatchRequest.class);
+                    } catch (JsonParseException e) {
+                        throw new ValidationException("Cuerpo JSON inválido");
+                    }
+                    if (batch == null) {
+                        throw new ValidationException("El cuerpo es obligatorio");
+                    }
+                    try {
+                        List<Item> updated;
+                        if (batch.getPrices() != null) {
+                            updated = priceUpdateService.updatePrices(batch.getPrices());
+                        } else if (batch.getFactor() != null) {
+                            updated = priceUpdateService.applyCategoryFactor(batch.getCategory(), batch.getFactor());
+                        } else {
+                            throw new ValidationException("Se espera \"prices\" o \"category\" y \"factor\"");
+                        }
+                        Map<String, Object> result = new LinkedHashMap<>();
+                        result.put("updated", updated.size());
+                        result.put("items", updated);
+                        return gson.toJson(result);
+                    } catch (IllegalArgumentException e) {
+                        throw new ValidationException(e.getMessage());
+                    }
+                });
                 post("/:id/price", (req, res) -> {
                     res.type("application/json");
                     String itemId = req.params(":id");
                     try {
-                        double newPrice = Double.parseDouble(req.body());
+                        Money newPrice = Money.parse(req.body());
                         var updatedItem = priceUpdateService.updatePrice(itemId, newPrice);
                         return gson.toJson(updatedItem);
                     } catch (NumberFormatException e) {
@@ -114,10 +256,137 @@ public class Main {
         post("/items", itemController::createItem);
         get("/users-web", userController::renderUsers);
 
+        // API JSON de items (GET /items con filtros y paginación, /items/:id)
+        // Se registra después de POST /items (formulario de la tienda), que tiene prioridad
+        new ItemControllers(itemService, templates);
+
+        // Tiempos de renderizado por plantilla
+        get("/admin/templates", (req, res) -> {
+            res.type("application/json");
+            return gson.toJson(templates.renderSummary());
+        });
+        // Aciertos/fallos de la caché de páginas de /tienda
+        get("/admin/page-cache", (req, res) -> {
+            res.type("application/json");
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("hits", tiendaCache.getHits());
+            stats.put("misses", tiendaCache.getMisses());
+            stats.put("evictions", tiendaCache.getEvictions());
+            stats.put("size", tiendaCache.size());
+            return gson.toJson(stats);
+        });
+
+        // Importación de un array JSON de items leído del cuerpo (sin cargarlo entero en memoria)
+        post("/admin/import", (req, res) -> {
+            res.type("application/json");
+            ImportJob job;
+            try (Reader in = new InputStreamReader(req.raw().getInputStream(), StandardCharsets.UTF_8)) {
+                job = catalogImporter.importItems(in, "http");
+            }
+            if (job.getStatus() == ImportJob.Status.FAILED) {
+                res.status(400);
+            }
+            return gson.toJson(job);
+        });
+        // Progreso y resultado de las importaciones (también la de arranque)
+        get("/admin/imports", (req, res) -> {
+            res.type("application/json");
+            return gson.toJson(catalogImporter.getJobs());
+        });
+        get("/admin/imports/:id", (req, res) -> {
+            res.type("application/json");
+            ImportJob job = catalogImporter.getJob(req.params(":id"));
+            if (job == null) {
+                throw new NotFoundException("Importación no encontrada");
+            }
+            return gson.toJson(job);
+        });
+
+        // Métricas en formato de texto de Prometheus
+        registerGauges(metrics, itemService, tiendaCache, journal, auctionService);
+        if (bidLimiter != null) {
+            metrics.counter("collectors_bids_rate_limited_total", "Bids refused by the per-bidder rate limit",
+                    bidLimiter::getLimited);
+            metrics.gauge("collectors_bids_rate_buckets", "Bidder/item pairs tracked by the bid rate limit",
+                    bidLimiter::getTracked);
+        }
+        if (limiter != null) {
+            metrics.gauge("collectors_http_in_flight", "HTTP requests being handled", limiter::getInFlight);
+            metrics.counter("collectors_http_rejected_total", "HTTP requests rejected with 503 by the concurrency limit",
+                    limiter::getRejected);
+        }
+        get("/metrics", (req, res) -> {
+            res.type("text/plain; version=0.0.4");
+            return metrics.scrape();
+        });
+
         // --- 5. INICIAR SERVIDOR (DEBE IR AL FINAL) ---
         // init() siempre debe ir después de definir TODAS las rutas.
         init(); 
+        awaitInitialization();
+
+        log.info("Servidor Spark iniciado en http://localhost:{}", port());
+        return port();
+    }
+
+    /**
+     * Elige el pool de hilos de Jetty: hilos virtuales con
+     * {@code collectors.http.virtualThreads=true} (Java 21+) o el pool acotado de Jetty.
+     *
+     * @return true si las peticiones se atienden en hilos virtuales
+     */
+    private static boolean configureThreads() {
+        if (AppConfig.getBoolean("collectors.http.virtualThreads", false)) {
+            if (VirtualThreadPool.isSupported()) {
+                EmbeddedServers.add(EmbeddedServers.Identifiers.JETTY,
+                        new EmbeddedJettyFactory().withThreadPool(new VirtualThreadPool()));
+                log.info("Jetty atiende las peticiones en hilos virtuales");
+                return true;
+            }
+            log.warn("collectors.http.virtualThreads requiere Java 21 (JVM actual: {}); se usa el pool de Jetty",
+                    Runtime.version());
+        }
+        // Pool de hilos de Jetty (por defecto los valores de Jetty; se dimensiona con HttpLoadTest)
+        threadPool(AppConfig.getInt("collectors.http.maxThreads", 200),
+                AppConfig.getInt("collectors.http.minThreads", 8),
+                AppConfig.getInt("collectors.http.idleTimeoutMs", 60000));
+        return false;
+    }
 
-        System.out.println("Servidor Spark iniciado en http://localhost:4567");
+    // Contadores que ya mantienen otros componentes; se leen solo al consultar /metrics
+    private static void registerGauges(MetricsRegistry metrics, ItemService itemService, PageCache tiendaCache,
+                                       Journal journal, AuctionService auctionService) {
+        BroadcastEngine broadcast = PriceWebSocket.engine();
+        BroadcastEngine.Stats ws = broadcast.stats();
+        metrics.gauge("collectors_ws_sessions", "Open WebSocket sessions", broadcast::sessionCount);
+        metrics.gauge("collectors_ws_pending_frames", "Frames queued for WebSocket clients", broadcast::pendingFrames);
+        metrics.histogram("collectors_ws_fanout_seconds", "Time to queue a message for all its recipients",
+                broadcast.fanoutTime());
+        metrics.counter("collectors_ws_frames_delivered_total", "WebSocket frames written", ws::getDelivered);
+        metrics.counter("collectors_ws_send_failures_total", "WebSocket frames whose write failed", ws::getFailed);
+        metrics.counter("collectors_ws_coalesced_total", "Price updates merged into a pending update", ws::getCoalesced);
+        metrics.counter("collectors_ws_dropped_total", "Frames dropped because a client queue was full", ws::getDropped);
+        metrics.counter("collectors_ws_slow_consumers_disconnected_total", "Clients closed as slow consumers",
+                ws::getDisconnected);
+        metrics.gauge("collectors_catalog_items", "Items in the catalog", () -> itemService.getAllItems().size());
+        metrics.counter("collectors_page_cache_hits_total", "Store page cache hits", tiendaCache::getHits);
+        metrics.counter("collectors_page_cache_misses_total", "Store page cache misses", tiendaCache::getMisses);
+        metrics.gauge("collectors_auction_open_lots", "Auction lots waiting for their end time",
+                auctionService::getOpenLots);
+        metrics.counter("collectors_auction_closed_total", "Auction lots closed", auctionService::getClosedLots);
+        metrics.counter("collectors_auction_extensions_total", "Auction end times moved by a bid in the final stretch",
+                auctionService::getExtensions);
+        metrics.histogram("collectors_auction_close_lag_seconds", "Delay between the end time of a lot and its closing",
+                auctionService.closeLag());
+        metrics.histogram("collectors_auction_timer_lateness_seconds", "Delay between a timer deadline and its firing",
+                auctionService.wheel().lateness());
+        if (journal.isEnabled()) {
+            metrics.histogram("collectors_wal_commit_seconds", "Time until a change is durable in the write-ahead log",
+                    journal.commitTime());
+            metrics.counter("collectors_wal_records_total", "Records appended to the write-ahead log", journal::appended);
+            metrics.counter("collectors_wal_group_commits_total", "Write-ahead log batches (one fsync each)",
+                    journal::batches);
+            metrics.counter("collectors_wal_snapshots_total", "Snapshots written", journal::snapshots);
+        }
     }
 }
\ No newline at end of file
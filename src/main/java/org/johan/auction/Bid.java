@@ -0,0 +1,16 @@
+package org.johan.auction;
+
+import org.johan.models.Money;
+
+/**
+ * An accepted bid: the best offer for an item at a given point in its
+ * bidding history.
+ *
+ * @param itemId    item the bid is for
+ * @param bidder    who placed the bid ({@code null} for the opening price)
+ * @param amount    bid amount
+ * @param sequence  position in the item's bidding history (0 = opening price)
+ * @param timestamp acceptance time in epoch milliseconds
+ */
+public record Bid(String itemId, String bidder, Money amount, long sequence, long timestamp) {
+}
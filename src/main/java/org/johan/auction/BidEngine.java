@@ -0,0 +1,162 @@
+package org.johan.auction;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.johan.exceptions.ConflictException;
+import org.johan.exceptions.NotFoundException;
+import org.johan.exceptions.ValidationException;
+import org.johan.models.Item;
+import org.johan.models.Money;
+import org.johan.services.ItemService;
+import org.johan.websocket.PriceWebSocket;
+
+/**
+ * Entry point for every bid, whatever channel it arrives on (REST, web
+ * form or WebSocket).
+ * <p>
+ * Each item gets an {@link OrderBook} the first time it receives a bid,
+ * opened at the item's current price. A bid is accepted only when it is
+ * higher than the best bid of the item and than its current catalog price
+ * (which a reprice may have raised since the book was opened); the accepted
+ * bid becomes the item's price in the catalog and is broadcast to the
+ * subscribed clients.
+ * </p>
+ * <p>
+ * When the auction of an item ends its book is closed: the last best bid
+ * is final and later bids are rejected.
+ * </p>
+ */
+public class BidEngine {
+
+    /**
+     * Told about a bid that can beat the best bid of an item, just before it
+     * is tried. It may reject the bid by throwing, or act on the item's
+     * auction (for instance extend it) so the bid is never lost to a close
+     * racing with it.
+     */
+    @FunctionalInterface
+    public interface BidListener {
+        void beforeBid(String itemId);
+    }
+
+    private final ItemService itemService;
+    private final ConcurrentHashMap<String, OrderBook> books = new ConcurrentHashMap<>();
+    private volatile BidListener listener = itemId -> { };
+
+    public BidEngine(ItemService itemService) {
+        this.itemService = itemService;
+    }
+
+    /**
+     * Place a bid.
+     *
+     * @param itemId item to bid on
+     * @param bidder who places the bid
+     * @param amount bid amount
+     * @return the accepted bid, with its sequence number
+     * @throws ValidationException when the amount is not positive or not in the item's currency
+     * @throws NotFoundException   when the item does not exist
+     * @throws ConflictException   when the bid is not higher than the best bid or the auction has ended
+     */
+    public Bid placeBid(String itemId, String bidder, Money amount) {
+        if (amount == null || !amount.isPositive()) {
+            throw new ValidationException("La puja debe ser mayor que 0");
+        }
+        Item item = itemService.getItemById(itemId);
+        if (item == null) {
+            throw new NotFoundException("Item no encontrado: " + itemId);
+        }
+        if (!amount.currency().equals(item.getPrice().currency())) {
+            throw new ValidationException("La puja debe ser en " + item.getPrice().currency());
+        }
+        // El precio del catálogo pudo subir (PUT, actualización masiva, importación) después de
+        // abrir el libro: la puja tiene que superarlo también, o al publicarla lo bajaría
+        Money floor = item.getPrice();
+        OrderBook book = books.computeIfAbsent(itemId, id -> new OrderBook(id, floor));
+        // Solo las pujas que pueden ganar avisan (las demás no alargan la subasta)
+        if (amount.compareTo(book.best().amount()) > 0 && amount.compareTo(floor) > 0 && !book.isClosed()) {
+            listener.beforeBid(itemId);
+        }
+
+        Bid bid = book.tryBid(bidder, amount, floor);
+        if (bid == null && book.isClosed()) {
+            throw new ConflictException("La subasta de " + itemId + " ha terminado");
+        }
+        if (bid == null) {
+            Money best = book.best().amount();
+            throw new ConflictException("La puja debe superar " + (best.compareTo(floor) >= 0 ? best : floor));
+        }
+        publish(book, item.getCategory());
+        return bid;
+    }
+
+    /**
+     * @param listener called before every bid that may beat the best one
+     */
+    public void setBidListener(BidListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Copy the best bid to the catalog and to the clients. Concurrent winners
+     * may publish in any order, so after publishing each one checks that its
+     * bid is still the best and otherwise publishes the newer one: the last
+     * publication of an item is always its best bid.
+     */
+    private void publish(OrderBook book, String category) {
+        Bid published;
+        do {
+            published = book.best();
+            itemService.updateItemPrice(book.getItemId(), published.amount());
+            PriceWebSocket.broadcastPrice(book.getItemId(), category,
+                    PriceWebSocket.priceMessage(book.getItemId(), published.amount()));
+        } while (book.best() != published);
+    }
+
+    /**
+     * Reinstate an accepted bid recovered from disk, so new bids keep
+     * numbering after it and must beat it. Nothing is published.
+     *
+     * @param bid recovered bid
+     */
+    public void restoreBid(Bid bid) {
+        books.computeIfAbsent(bid.itemId(), id -> new OrderBook(id, Money.ZERO)).restore(bid);
+    }
+
+    /**
+     * End the bidding of an item. A book is created at the item's price when
+     * it never received a bid, so later bids are rejected too.
+     *
+     * @param itemId item id
+     * @return the winning bid; its sequence is 0 (opening price) when nobody bid
+     */
+    public Bid closeBook(String itemId) {
+        Item item = itemService.getItemById(itemId);
+        Money opening = item != null ? item.getPrice() : Money.ZERO;
+        return books.computeIfAbsent(itemId, id -> new OrderBook(id, opening)).close();
+    }
+
+    /**
+     * @param bid an accepted bid
+     * @return true when the bid won an auction that has already been closed
+     */
+    public boolean isFinal(Bid bid) {
+        OrderBook book = books.get(bid.itemId());
+        return book != null && book.isClosed() && book.best().sequence() == bid.sequence();
+    }
+
+    /**
+     * @param itemId item id
+     * @return the order book of the item, or {@code null} if it never received a bid
+     */
+    public OrderBook getOrderBook(String itemId) {
+        return books.get(itemId);
+    }
+
+    /**
+     * @return number of items that received at least one bid
+     */
+    public int getBookCount() {
+        return books.size();
+    }
+}
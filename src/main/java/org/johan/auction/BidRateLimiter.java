@@ -0,0 +1,152 @@
+package org.johan.auction;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Token bucket per client host and item, checked before a bid reaches the
+ * {@link BidEngine}. The key is the network address rather than the bidder
+ * name the request carries, so a script cannot get a fresh bucket by
+ * changing the name or reconnecting.
+ * <p>
+ * Each bucket holds up to {@code burst} bids and refills at
+ * {@code ratePerSecond}. It is stored as a single {@link AtomicLong}: the
+ * time at which the bucket will be full again (the GCRA form of a token
+ * bucket). Taking a token is one compare-and-set on that value, so the
+ * check takes no lock and allocates nothing once the bucket exists.
+ * </p>
+ * <p>
+ * A bucket whose refill time has passed is full, which is exactly the state
+ * of a client never seen before, so it can be dropped without changing any
+ * answer. Such idle buckets are swept at most once per second by the
+ * thread that adds a new bucket, and no more than {@code maxTracked}
+ * buckets are kept: while the map is full of active clients a new client is
+ * refused (fail closed), so rotating addresses cannot grow the memory.
+ * </p>
+ */
+public final class BidRateLimiter {
+
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /** Clave de un cubo: un cliente en un item. */
+    private record Key(String client, String itemId) {
+    }
+
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final int maxTracked;
+    private final ConcurrentHashMap<Key, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong nextSweep = new AtomicLong(System.nanoTime() + SWEEP_INTERVAL_NANOS);
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder limited = new LongAdder();
+
+    /**
+     * @param ratePerSecond sustained bids per second of one client on one item (must be positive)
+     * @param burst         bids accepted at once after a quiet period (at least 1)
+     * @param maxTracked    buckets kept at most (at least 1)
+     */
+    public BidRateLimiter(double ratePerSecond, int burst, int maxTracked) {
+        if (!(ratePerSecond > 0) || burst < 1 || maxTracked < 1) {
+            throw new IllegalArgumentException("Límite de pujas inválido: tasa y ráfaga deben ser positivas");
+        }
+        this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond));
+        this.burstNanos = intervalNanos * burst;
+        this.maxTracked = maxTracked;
+    }
+
+    /**
+     * Take a token for a bid.
+     *
+     * @param client who bids: the client host, see {@link #clientKey(String)}
+     * @param itemId item the bid is for
+     * @return 0 when the bid may go on, otherwise milliseconds until it would be allowed
+     */
+    public long tryAcquire(String client, String itemId) {
+        long now = System.nanoTime();
+        Key key = new Key(client, itemId);
+        AtomicLong bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = track(key, now);
+            if (bucket == null) {
+                limited.increment();
+                return TimeUnit.NANOSECONDS.toMillis(SWEEP_INTERVAL_NANOS);
+            }
+        }
+        while (true) {
+            long fullAt = bucket.get();
+            long next = Math.max(fullAt, now) + intervalNanos;
+            if (next - now > burstNanos) {
+                limited.increment();
+                return Math.max(1, TimeUnit.NANOSECONDS.toMillis(next - now - burstNanos));
+            }
+            if (bucket.compareAndSet(fullAt, next)) {
+                allowed.increment();
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Bucket key of a client host, shared by HTTP and WebSocket bids so a
+     * script cannot switch channels to get a fresh bucket.
+     *
+     * @param host client IP address, without the port
+     * @return the key to pass to {@link #tryAcquire(String, String)}
+     */
+    public static String clientKey(String host) {
+        return "ip:" + host;
+    }
+
+    // Alta de un cubo lleno; null si no cabe ni tras barrer los inactivos
+    private AtomicLong track(Key key, long now) {
+        if (buckets.size() >= maxTracked || now - nextSweep.get() >= 0) {
+            sweep(now);
+            if (buckets.size() >= maxTracked) {
+                return null;
+            }
+        }
+        AtomicLong created = new AtomicLong(now);
+        AtomicLong existing = buckets.putIfAbsent(key, created);
+        return existing != null ? existing : created;
+    }
+
+    // Un solo hilo barre por intervalo; los demás siguen sin esperar
+    private void sweep(long now) {
+        long due = nextSweep.get();
+        if (now - due < 0 || !nextSweep.compareAndSet(due, now + SWEEP_INTERVAL_NANOS)) {
+            return;
+        }
+        Iterator<AtomicLong> it = buckets.values().iterator();
+        while (it.hasNext()) {
+            // Lleno = igual que un postor nuevo; si una puja lo usa a la vez,
+            // como mucho deja pasar una puja de más
+            if (it.next().get() - now <= 0) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * @return bids let through
+     */
+    public long getAllowed() {
+        return allowed.sum();
+    }
+
+    /**
+     * @return bids refused because their bucket was empty (or no bucket could be kept)
+     */
+    public long getLimited() {
+        return limited.sum();
+    }
+
+    /**
+     * @return buckets currently kept
+     */
+    public int getTracked() {
+        return buckets.size();
+    }
+}
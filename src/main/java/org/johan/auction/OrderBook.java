@@ -0,0 +1,149 @@
+package org.johan.auction;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.johan.models.Money;
+
+/**
+ * Bidding state of a single item.
+ * <p>
+ * The best bid is an immutable {@link Bid} held in an
+ * {@link AtomicReference}. A new bid is accepted with a compare-and-set
+ * only when it is strictly higher than the best bid it was compared with;
+ * if another bid won the race in between, the check is repeated against the
+ * new best. No locks are taken, so many threads bidding on the same hot
+ * item never block each other, and each accepted bid gets the next sequence
+ * number of the item.
+ * </p>
+ * <p>
+ * Closing the book (end of the auction) freezes the best bid: no bid is
+ * accepted afterwards, and a bid racing with the close either lands before
+ * it, and is part of the final result, or is rejected.
+ * </p>
+ */
+public final class OrderBook {
+
+    private final String itemId;
+    private final AtomicReference<Bid> best;
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private volatile boolean closed;
+
+    /**
+     * @param itemId       item the book belongs to
+     * @param openingPrice price a first bid has to beat
+     */
+    public OrderBook(String itemId, Money openingPrice) {
+        this.itemId = itemId;
+        this.best = new AtomicReference<>(new Bid(itemId, null, openingPrice, 0, System.currentTimeMillis()));
+    }
+
+    /**
+     * Accept the bid if it beats the current best one.
+     *
+     * @param bidder who places the bid
+     * @param amount bid amount
+     * @return the accepted bid, or {@code null} when it was not higher than the best bid
+     */
+    public Bid tryBid(String bidder, Money amount) {
+        return tryBid(bidder, amount, null);
+    }
+
+    /**
+     * Accept the bid if it beats the current best one and {@code floor}.
+     *
+     * @param bidder who places the bid
+     * @param amount bid amount
+     * @param floor  price the bid must also beat, such as the item's current
+     *               catalog price after a reprice (nullable)
+     * @return the accepted bid, or {@code null} when it was not higher than both
+     */
+    public Bid tryBid(String bidder, Money amount, Money floor) {
+        if (floor != null && amount.compareTo(floor) <= 0) {
+            rejected.increment();
+            return null;
+        }
+        Bid current = best.get();
+        while (!closed && amount.compareTo(current.amount()) > 0) {
+            Bid next = new Bid(itemId, bidder, amount, current.sequence() + 1, System.currentTimeMillis());
+            Bid witness = best.compareAndExchange(current, next);
+            if (witness == current) {
+                accepted.increment();
+                return next;
+            }
+            current = witness;
+        }
+        rejected.increment();
+        return null;
+    }
+
+    /**
+     * Stop accepting bids and return the final best bid.
+     * <p>
+     * After raising the flag the best bid is swapped for an identical copy:
+     * a bid that read the old reference before the flag fails its
+     * compare-and-set, sees the flag on its retry and is rejected, so the
+     * returned bid can no longer be beaten.
+     * </p>
+     *
+     * @return the winning bid (the opening price when nobody bid)
+     */
+    public Bid close() {
+        closed = true;
+        Bid current = best.get();
+        while (true) {
+            Bid frozen = new Bid(current.itemId(), current.bidder(), current.amount(), current.sequence(),
+                    current.timestamp());
+            Bid witness = best.compareAndExchange(current, frozen);
+            if (witness == current) {
+                return frozen;
+            }
+            current = witness;
+        }
+    }
+
+    /**
+     * @return true once {@link #close()} has been called
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Reinstate a bid recovered from disk. It becomes the best bid only if it
+     * has a later sequence than the current one, so recovered bids can be
+     * applied in any order.
+     *
+     * @param bid recovered bid of this item
+     */
+    public void restore(Bid bid) {
+        Bid current = best.get();
+        while (bid.sequence() > current.sequence()) {
+            Bid witness = best.compareAndExchange(current, bid);
+            if (witness == current) {
+                return;
+            }
+            current = witness;
+        }
+    }
+
+    /**
+     * @return the best bid so far (the opening price before any bid)
+     */
+    public Bid best() {
+        return best.get();
+    }
+
+    public String getItemId() {
+        return itemId;
+    }
+
+    public long getAccepted() {
+        return accepted.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+}
@@ -0,0 +1,342 @@
+package org.johan.auction;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.johan.metrics.LatencyHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hashed timer wheel: one thread for any number of pending deadlines.
+ * <p>
+ * Time is split into ticks of a fixed length and the wheel into a
+ * power-of-two number of buckets. A timeout goes into the bucket of the tick
+ * it expires in, with the number of full turns of the wheel still to wait.
+ * Every tick the worker thread wakes up once, visits a single bucket and
+ * hands the timeouts that are due to the executor, so scheduling and
+ * cancelling are O(1) and millions of pending timeouts cost one small object
+ * each, without a thread or a {@code ScheduledFuture} per deadline.
+ * </p>
+ * <p>
+ * Timeouts fire at most about one tick late. New and cancelled timeouts
+ * are queued and applied by the worker at the next tick, so the buckets are
+ * only ever touched by that thread. Tasks run on the executor, never on the
+ * worker, so a slow task cannot delay the following ticks.
+ * </p>
+ */
+public final class TimerWheel {
+
+    private static final Logger log = LoggerFactory.getLogger(TimerWheel.class);
+
+    /** New timeouts moved into the buckets per tick, so a burst cannot stall the wheel. */
+    private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+    /**
+     * A pending task of the wheel.
+     */
+    public static final class Timeout {
+
+        private static final int PENDING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+        private final TimerWheel wheel;
+        private final Runnable task;
+        private final long deadline;
+        private volatile int state;
+
+        // Solo los usa el hilo de la rueda
+        private long remainingRounds;
+        private int bucket = -1;
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(TimerWheel wheel, Runnable task, long deadline) {
+            this.wheel = wheel;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Drop the task if it has not fired yet.
+         *
+         * @return true when this call cancelled it
+         */
+        public boolean cancel() {
+            if (!STATE.compareAndSet(this, PENDING, CANCELLED)) {
+                return false;
+            }
+            wheel.pending.decrement();
+            wheel.cancelled.add(this);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state == CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state == EXPIRED;
+        }
+
+        /**
+         * @return time left until the deadline (negative once it has passed)
+         */
+        public long remaining(TimeUnit unit) {
+            return unit.convert(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /** Doubly linked list of the timeouts of one tick slot. */
+    private static final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout, int index) {
+            timeout.bucket = index;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        Timeout remove(Timeout timeout) {
+            Timeout next = timeout.next;
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            } else {
+                head = next;
+            }
+            if (next != null) {
+                next.prev = timeout.prev;
+            } else {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = -1;
+            return next;
+        }
+    }
+
+    private final String name;
+    private final long tickNanos;
+    private final int mask;
+    private final Bucket[] buckets;
+    private final Executor executor;
+
+    private final ConcurrentLinkedQueue<Timeout> incoming = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final LongAdder pending = new LongAdder();
+    private final LongAdder fired = new LongAdder();
+    private final LatencyHistogram lateness = new LatencyHistogram();
+
+    private final Object startLock = new Object();
+    private volatile Thread worker;
+    private volatile long startTime;
+    private volatile boolean stopped;
+    private long tick;
+
+    /**
+     * @param name       name of the worker thread
+     * @param tickMs     length of a tick in milliseconds (the firing precision)
+     * @param wheelSize  number of buckets, rounded up to a power of two
+     * @param executor   runs the tasks that are due
+     */
+    public TimerWheel(String name, long tickMs, int wheelSize, Executor executor) {
+        if (tickMs <= 0) {
+            throw new IllegalArgumentException("La duración del tick debe ser positiva");
+        }
+        if (wheelSize <= 0 || wheelSize > 1 << 30) {
+            throw new IllegalArgumentException("El tamaño de la rueda debe estar entre 1 y 2^30");
+        }
+        int size = wheelSize == 1 ? 1 : Integer.highestOneBit(wheelSize - 1) << 1;
+        this.name = name;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMs);
+        this.mask = size - 1;
+        this.buckets = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            buckets[i] = new Bucket();
+        }
+        this.executor = executor;
+    }
+
+    /**
+     * Run a task once the delay has passed. The worker thread is started by
+     * the first call.
+     *
+     * @param task  task to run on the executor
+     * @param delay delay from now (zero or negative runs it at the next tick)
+     * @param unit  unit of {@code delay}
+     * @return handle to cancel the task
+     * @throws IllegalStateException when the wheel has been stopped
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        if (stopped) {
+            throw new IllegalStateException("La rueda de temporizadores está parada");
+        }
+        ensureStarted();
+        Timeout timeout = new Timeout(this, task, System.nanoTime() + Math.max(0, unit.toNanos(delay)));
+        pending.increment();
+        incoming.add(timeout);
+        return timeout;
+    }
+
+    private void ensureStarted() {
+        if (worker != null) {
+            return;
+        }
+        synchronized (startLock) {
+            if (worker == null) {
+                startTime = System.nanoTime();
+                Thread thread = new Thread(this::run, name);
+                thread.setDaemon(true);
+                thread.start();
+                worker = thread;
+            }
+        }
+    }
+
+    /**
+     * Stop the worker thread. Pending timeouts are dropped without running.
+     */
+    public void stop() {
+        stopped = true;
+        Thread thread = worker;
+        if (thread != null && thread != Thread.currentThread()) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void run() {
+        while (!stopped) {
+            waitForNextTick();
+            if (stopped) {
+                break;
+            }
+            processCancelled();
+            transferIncoming();
+            expire(buckets[(int) (tick & mask)]);
+            tick++;
+        }
+    }
+
+    // Duerme hasta el final del tick actual
+    private void waitForNextTick() {
+        long deadline = startTime + (tick + 1) * tickNanos;
+        long sleep;
+        while (!stopped && (sleep = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(this, sleep);
+        }
+    }
+
+    private void processCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.bucket >= 0) {
+                buckets[timeout.bucket].remove(timeout);
+            }
+        }
+    }
+
+    private void transferIncoming() {
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            Timeout timeout = incoming.poll();
+            if (timeout == null) {
+                return;
+            }
+            if (timeout.state != Timeout.PENDING) {
+                continue;
+            }
+            long expiresAtTick = Math.max(0, timeout.deadline - startTime) / tickNanos;
+            // Un plazo ya vencido va al bucket actual y sale en este mismo tick
+            long slot = Math.max(expiresAtTick, tick);
+            timeout.remainingRounds = (slot - tick) / buckets.length;
+            int index = (int) (slot & mask);
+            buckets[index].add(timeout, index);
+        }
+    }
+
+    private void expire(Bucket bucket) {
+        long now = System.nanoTime();
+        Timeout timeout = bucket.head;
+        while (timeout != null) {
+            if (timeout.remainingRounds > 0) {
+                timeout.remainingRounds--;
+                timeout = timeout.next;
+                continue;
+            }
+            // Todo lo que queda en el bucket sin vueltas pendientes vence en este tick
+            Timeout due = timeout;
+            timeout = bucket.remove(due);
+            if (Timeout.STATE.compareAndSet(due, Timeout.PENDING, Timeout.EXPIRED)) {
+                pending.decrement();
+                fired.increment();
+                lateness.record(now - due.deadline);
+                dispatch(due);
+            }
+        }
+    }
+
+    private void dispatch(Timeout timeout) {
+        try {
+            executor.execute(timeout.task);
+        } catch (RejectedExecutionException e) {
+            log.atWarn().addKeyValue("wheel", name).setCause(e).log("Tarea de la rueda rechazada por el ejecutor");
+        } catch (RuntimeException e) {
+            log.atError().addKeyValue("wheel", name).setCause(e).log("Error en una tarea de la rueda");
+        }
+    }
+
+    /**
+     * @return timeouts scheduled and neither fired nor cancelled
+     */
+    public long pending() {
+        return pending.sum();
+    }
+
+    /**
+     * @return timeouts handed to the executor so far
+     */
+    public long fired() {
+        return fired.sum();
+    }
+
+    /**
+     * @return delay between the deadline of each fired timeout and its dispatch
+     */
+    public LatencyHistogram lateness() {
+        return lateness;
+    }
+
+    /**
+     * @return length of a tick in milliseconds
+     */
+    public long tickMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(tickNanos);
+    }
+
+    /**
+     * @return number of buckets of the wheel
+     */
+    public int size() {
+        return buckets.length;
+    }
+}
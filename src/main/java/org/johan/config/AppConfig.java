@@ -0,0 +1,96 @@
+package org.johan.config;
+
+import java.util.Locale;
+
+/**
+ * Application settings read from JVM system properties, falling back to
+ * environment variables and then to a default.
+ * <p>
+ * A key such as {@code collectors.ws.queueCapacity} can be set with
+ * {@code -Dcollectors.ws.queueCapacity=2048} or with the environment
+ * variable {@code COLLECTORS_WS_QUEUECAPACITY} (handy in Docker).
+ * </p>
+ */
+public final class AppConfig {
+
+    private AppConfig() {
+    }
+
+    /**
+     * @param key          property name
+     * @param defaultValue value used when the setting is absent
+     * @return the configured value
+     */
+    public static String getString(String key, String defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null) {
+            value = System.getenv(key.toUpperCase(Locale.ROOT).replace('.', '_'));
+        }
+        return value != null && !value.isBlank() ? value.trim() : defaultValue;
+    }
+
+    /**
+     * @throws IllegalArgumentException when the value is not an integer
+     */
+    public static int getInt(String key, int defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Valor inválido para " + key + ": " + value);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException when the value is not an integer
+     */
+    public static long getLong(String key, long defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Valor inválido para " + key + ": " + value);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException when the value is not a number
+     */
+    public static double getDouble(String key, double defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Valor inválido para " + key + ": " + value);
+        }
+    }
+
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        String value = getString(key, null);
+        return value != null ? Boolean.parseBoolean(value) : defaultValue;
+    }
+
+    /**
+     * @throws IllegalArgumentException when the value is not a constant of the enum
+     */
+    public static <E extends Enum<E>> E getEnum(String key, Class<E> type, E defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Enum.valueOf(type, value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Valor inválido para " + key + ": " + value);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package org.johan.controllers;
+
+import static spark.Spark.get;
+import static spark.Spark.post;
+
+import java.util.Collection;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+import org.johan.exceptions.NotFoundException;
+import org.johan.exceptions.ValidationException;
+import org.johan.models.AuctionLot;
+import org.johan.models.AuctionLotRequest;
+import org.johan.services.AuctionService;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+/**
+ * AuctionControllers
+ * Routes to open the auction of an item with an end time and to follow it.
+ */
+public class AuctionControllers {
+
+    private final AuctionService auctionService;
+    private final Gson gson = new Gson();
+
+    public AuctionControllers(AuctionService auctionService) {
+        this.auctionService = auctionService;
+        defineRoutes();
+    }
+
+    private void defineRoutes() {
+
+        // GET /auctions -> todas las subastas; ?status=OPEN|CLOSED para filtrar
+        get("/auctions", (req, res) -> {
+            String status = req.queryParams("status");
+            Collection<AuctionLot> lots = auctionService.getLots();
+            if (status != null && !status.isBlank()) {
+                AuctionLot.Status wanted = parseStatus(status);
+                lots = lots.stream().filter(lot -> lot.getStatus() == wanted).collect(Collectors.toList());
+            }
+            return JsonStreaming.write(req, res, gson, lots, AuctionLot.class);
+        });
+
+        // GET /auctions/:itemId -> estado de la subasta del item (ganador y precio final al cerrar)
+        get("/auctions/:itemId", (req, res) -> {
+            res.type("application/json");
+            AuctionLot lot = auctionService.getLot(req.params(":itemId"));
+            if (lot == null) {
+                throw new NotFoundException("Subasta no encontrada");
+            }
+            return gson.toJson(lot);
+        });
+
+        // POST /auctions -> abre la subasta de un item (409 si ya tiene una o no está disponible)
+        post("/auctions", (req, res) -> {
+            res.type("application/json");
+            AuctionLotRequest request;
+            try {
+                request = gson.fromJson(req.body(), AuctionLotRequest.class);
+            } catch (JsonParseException e) {
+                throw new ValidationException("Cuerpo JSON inválido");
+            }
+            if (request == null || request.getItemId() == null || request.getItemId().isBlank()) {
+                throw new ValidationException("El ID de item es obligatorio");
+            }
+            long endsAt;
+            if (request.getEndsAt() != null) {
+                endsAt = request.getEndsAt();
+            } else if (request.getDurationSeconds() != null && request.getDurationSeconds() > 0) {
+                try {
+                    endsAt = Math.addExact(System.currentTimeMillis(),
+                            Math.multiplyExact(request.getDurationSeconds(), 1000L));
+                } catch (ArithmeticException e) {
+                    throw new ValidationException("'durationSeconds' demasiado grande");
+                }
+            } else {
+                throw new ValidationException("Se espera \"endsAt\" o \"durationSeconds\" positivo");
+            }
+            AuctionLot lot = auctionService.openLot(request.getItemId().trim(), endsAt);
+            res.status(201);
+            return gson.toJson(lot);
+        });
+    }
+
+    private static AuctionLot.Status parseStatus(String value) {
+        try {
+            return AuctionLot.Status.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("'status' debe ser OPEN o CLOSED");
+        }
+    }
+}
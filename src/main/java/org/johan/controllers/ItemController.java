@@ -1,55 +1,107 @@
 package org.johan.controllers;
 
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
+import java.util.Locale;
 import java.util.Map;
 
 import org.johan.models.Item;
+import org.johan.models.ItemPage;
+import org.johan.models.Money;
 import org.johan.services.ItemService;
+import org.johan.services.ItemSort;
+import org.johan.templates.PageCache;
 
 import spark.ModelAndView;
 import spark.Request;
 import spark.Response;
-import spark.template.mustache.MustacheTemplateEngine;
+import spark.TemplateEngine;
 
 public class ItemController {
 
+    /** Items por página en la tienda */
+    private static final int TIENDA_PAGE_SIZE = 24;
+
     private final ItemService itemService;
-    private final MustacheTemplateEngine mustacheEngine;
+    private final TemplateEngine mustacheEngine;
+    private final PageCache pageCache;
 
-    public ItemController(ItemService itemService) {
+    public ItemController(ItemService itemService, TemplateEngine mustacheEngine, PageCache pageCache) {
         this.itemService = itemService;
-        this.mustacheEngine = new MustacheTemplateEngine();
+        this.mustacheEngine = mustacheEngine;
+        this.pageCache = pageCache;
     }
 
     /**
      * Tarea 2: Renderiza la vista de la tienda con los items
      * Sprint 3: Filtros mejorados (categoría, precio mínimo, precio máximo, disponibilidad)
+     *
+     * La página renderizada se guarda en {@link PageCache} con la tupla de filtros
+     * normalizada como clave y se invalida sola cuando cambia la versión del catálogo.
+     * El ETag permite al navegador revalidar con If-None-Match y recibir un 304.
      */
     public String renderTienda(Request req, Response res) {
-        // 1. Leemos los parámetros de la URL (query params)
-        String categoria = req.queryParams("categoria");
-        String precioMin = req.queryParams("precioMin");
-        String precioMax = req.queryParams("precioMax");
-        String disponible = req.queryParams("disponible");
+        // 1. Leemos y normalizamos los parámetros de la URL (query params)
+        String categoria = normalizeCategoria(req.queryParams("categoria"));
+        String precioMin = normalizePrice(req.queryParams("precioMin"));
+        String precioMax = normalizePrice(req.queryParams("precioMax"));
+        String disponible = normalizeDisponible(req.queryParams("disponible"));
+        ItemSort sort = ItemSort.fromParam(req.queryParams("sort"));
+        String cursor = emptyToNull(req.queryParams("cursor"));
+        int limit = ItemService.parseLimit(req.queryParams("limit"), TIENDA_PAGE_SIZE);
+
+        // 2. Revalidación / caché: la página solo depende de estos valores y del catálogo
+        String key = String.join("|", String.valueOf(categoria), String.valueOf(precioMin),
+                String.valueOf(precioMax), String.valueOf(disponible), sort.param(),
+                String.valueOf(cursor), String.valueOf(limit));
+        long version = itemService.getCatalogVersion();
+        String etag = pageCache.etag(key, version);
+        res.header("ETag", etag);
+        res.header("Cache-Control", "no-cache");
+        if (PageCache.matches(req.headers("If-None-Match"), etag)) {
+            res.status(304);
+            return "";
+        }
+        String cached = pageCache.get(key, version);
+        if (cached != null) {
+            return cached;
+        }
 
-        // 2. Prepara los datos
+        // 3. Prepara los datos
         Map<String, Object> model = new HashMap<>();
         model.put("pageTitle", "Tienda");
         model.put("username", "Ramón");
         model.put("activeTienda", true);
         
-        // 3. Pasamos los filtros al servicio
-        var items = itemService.getAllItems(categoria, precioMin, precioMax, disponible);
+        // 4. Pasamos los filtros al servicio (solo se renderiza una página)
+        ItemPage page = itemService.getItemsPage(categoria, precioMin, precioMax, disponible, sort, cursor, limit);
+        var items = page.getItems();
         model.put("items", items);
         model.put("hasItems", items != null && !items.isEmpty());
+
+        // Paginación: enlaces a la primera y a la siguiente página con los mismos filtros
+        String baseQuery = query("categoria", categoria) + query("precioMin", precioMin)
+                + query("precioMax", precioMax) + query("disponible", disponible)
+                + (sort != ItemSort.ADDED ? query("sort", sort.param()) : "")
+                + (limit != TIENDA_PAGE_SIZE ? query("limit", String.valueOf(limit)) : "");
+        if (page.getNextCursor() != null) {
+            model.put("nextPageUrl", tiendaUrl(baseQuery + query("cursor", page.getNextCursor())));
+        }
+        if (cursor != null) {
+            model.put("firstPageUrl", tiendaUrl(baseQuery));
+        }
+        model.put("sortAdded", sort == ItemSort.ADDED);
+        model.put("sortPriceAsc", sort == ItemSort.PRICE_ASC);
+        model.put("sortPriceDesc", sort == ItemSort.PRICE_DESC);
         
-        // 4. Guardamos los valores de filtro para mostrarlos en el form
+        // 5. Guardamos los valores de filtro para mostrarlos en el form
         model.put("filtroCategoria", categoria != null ? categoria : "");
         model.put("filtroPrecioMin", precioMin != null ? precioMin : "");
         model.put("filtroPrecioMax", precioMax != null ? precioMax : "");
         
         // Manejo especial para el filtro disponible (para el template Mustache)
-        if (disponible != null && !disponible.isEmpty()) {
+        if (disponible != null) {
             Map<String, Object> disponibleMap = new HashMap<>();
             disponibleMap.put("value", disponible);
             disponibleMap.put("isTrue", "true".equals(disponible));
@@ -57,9 +109,54 @@ public class ItemController {
             model.put("filtroDisponible", disponibleMap);
         }
 
-        return mustacheEngine.render(
+        String html = mustacheEngine.render(
             new ModelAndView(model, "tienda.mustache")
         );
+        pageCache.put(key, version, html);
+        return html;
+    }
+
+    // --- Normalización de filtros (misma clave de caché para peticiones equivalentes) ---
+
+    private static String emptyToNull(String value) {
+        return value == null || value.trim().isEmpty() ? null : value.trim();
+    }
+
+    // La categoría se compara sin distinguir mayúsculas
+    private static String normalizeCategoria(String categoria) {
+        String value = emptyToNull(categoria);
+        return value != null ? value.toLowerCase(Locale.ROOT) : null;
+    }
+
+    // "400", "400.0" y "400.00" son el mismo filtro (los mismos centavos que compara el filtro);
+    // un precio inválido o con exponente ("1e999999999") se ignora sin expandirlo
+    private static String normalizePrice(String precio) {
+        String value = emptyToNull(precio);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Money.parse(value).toString();
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String normalizeDisponible(String disponible) {
+        String value = emptyToNull(disponible);
+        return value != null ? String.valueOf(Boolean.parseBoolean(value)) : null;
+    }
+
+    // Parámetro "&nombre=valor" codificado para URL (vacío si no hay valor)
+    private static String query(String name, String value) {
+        if (value == null || value.isEmpty()) {
+            return "";
+        }
+        return "&" + name + "=" + URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private static String tiendaUrl(String query) {
+        return query.isEmpty() ? "/tienda" : "/tienda?" + query.substring(1);
     }
 
     /**
@@ -69,13 +166,14 @@ public class ItemController {
         // 1. Obtiene los datos del formulario
         String name = req.queryParams("itemName");
         String category = req.queryParams("itemCategory");
-        double price = 0;
+        String itemPrice = req.queryParams("itemPrice");
+        Money price = Money.ZERO;
         
         try {
-            price = Double.parseDouble(req.queryParams("itemPrice"));
+            price = itemPrice != null ? Money.parse(itemPrice) : Money.ZERO;
         } catch (NumberFormatException e) {
             // (Aquí podrías lanzar una ValidationException si quisieras)
-            price = 0.0; // Valor por defecto si el precio es inválido
+            price = Money.ZERO; // Valor por defecto si el precio es inválido
         }
 
         // 2. Crea el item
@@ -3,13 +3,14 @@ package org.johan.controllers;
 import static spark.Spark.*;
 import com.google.gson.Gson;
 import org.johan.models.Item;
-import org.johan.services.FilterService;
+import org.johan.models.Money;
 import org.johan.services.ItemService;
+import org.johan.services.ItemSort;
 import com.google.gson.Gson;
 
 // Imports para Mustache
 import spark.ModelAndView;
-import spark.template.mustache.MustacheTemplateEngine;
+import spark.TemplateEngine;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.List;
@@ -27,12 +28,19 @@ import static spark.Spark.delete;
  */
 public class ItemControllers {
 
-    private final ItemService itemService = new ItemService();
+    /** Tamaño de página por defecto para GET /items paginado */
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    /** Resultados por defecto de GET /items/search */
+    private static final int DEFAULT_SEARCH_SIZE = 20;
+
+    private final ItemService itemService;
     private final Gson gson = new Gson();
-    // Instancia del motor de plantillas
-    private final MustacheTemplateEngine templateEngine = new MustacheTemplateEngine();
+    // Motor de plantillas compartido (plantillas precompiladas)
+    private final TemplateEngine templateEngine;
 
-    public ItemControllers() {
+    public ItemControllers(ItemService itemService, TemplateEngine templateEngine) {
+        this.itemService = itemService;
+        this.templateEngine = templateEngine;
         defineRoutes();
     }
 
@@ -59,7 +67,7 @@ public class ItemControllers {
             String availableStr = req.queryParams("available");
             Map<String, Object> model = new HashMap<>();
             String error = null;
-            double price = 0.0;
+            Money price = Money.ZERO;
             boolean available = false;
             try {
                 if (name == null || name.trim().isEmpty())
@@ -68,8 +76,8 @@ public class ItemControllers {
                     throw new IllegalArgumentException("La categoría es obligatoria");
                 if (priceStr == null || priceStr.trim().isEmpty())
                     throw new IllegalArgumentException("El precio es obligatorio");
-                price = Double.parseDouble(priceStr);
-                if (price < 0)
+                price = Money.parse(priceStr);
+                if (price.minor() < 0)
                     throw new IllegalArgumentException("El precio debe ser positivo");
                 available = "true".equalsIgnoreCase(availableStr);
                 Item newItem = new Item(name, category, price, available);
@@ -132,7 +140,7 @@ public class ItemControllers {
             String availableStr = req.queryParams("available");
             Map<String, Object> model = new HashMap<>();
             String error = null;
-            double price = 0.0;
+            Money price = Money.ZERO;
             boolean available = false;
             try {
                 if (name == null || name.trim().isEmpty())
@@ -141,8 +149,8 @@ public class ItemControllers {
                     throw new IllegalArgumentException("La categoría es obligatoria");
                 if (priceStr == null || priceStr.trim().isEmpty())
                     throw new IllegalArgumentException("El precio es obligatorio");
-                price = Double.parseDouble(priceStr);
-                if (price < 0)
+                price = Money.parse(priceStr);
+                if (price.minor() < 0)
                     throw new IllegalArgumentException("El precio debe ser positivo");
                 available = "true".equalsIgnoreCase(availableStr);
                 Item updatedItemData = new Item(name, category, price, available);
@@ -186,19 +194,48 @@ public class ItemControllers {
         // Estas pueden ir después, ya que usan '/items' y '/items/:id' que son distintos a '/items-web' etc.
 
         // Get all items API (con filtros)
+        // Con ?limit=, ?cursor= o ?sort= (added, price, -price) responde una página:
+        // {"items": [...], "nextCursor": "...", "hasMore": true, ...}
         get("/items", (req, res) -> {
             res.type("application/json");
             String category = req.queryParams("category");
             String minPriceStr = req.queryParams("minprice");
             String maxPriceStr = req.queryParams("maxprice");
-            Double minPrice = null;
-            if (minPriceStr != null && !minPriceStr.isEmpty()) { try { minPrice = Double.parseDouble(minPriceStr); } catch (NumberFormatException e) { /* Ignorar o manejar */ } }
-            Double maxPrice = null;
-            if (maxPriceStr != null && !maxPriceStr.isEmpty()) { try { maxPrice = Double.parseDouble(maxPriceStr); } catch (NumberFormatException e) { /* Ignorar o manejar */ } }
-            List<Item> allItems = itemService.getAllItems();
-            FilterService filterService = new FilterService();
-            List<Item> filteredItems = filterService.applyFilters(allItems, category, minPrice, maxPrice, null);
-            return gson.toJson(filteredItems);
+            Money minPrice = null;
+            if (minPriceStr != null && !minPriceStr.isEmpty()) { try { minPrice = Money.parse(minPriceStr); } catch (NumberFormatException e) { /* Ignorar o manejar */ } }
+            Money maxPrice = null;
+            if (maxPriceStr != null && !maxPriceStr.isEmpty()) { try { maxPrice = Money.parse(maxPriceStr); } catch (NumberFormatException e) { /* Ignorar o manejar */ } }
+            String limit = req.queryParams("limit");
+            String cursor = req.queryParams("cursor");
+            String sort = req.queryParams("sort");
+            if (limit != null || cursor != null || sort != null) {
+                return gson.toJson(itemService.findPage(category, minPrice, maxPrice, null,
+                        ItemSort.fromParam(sort), cursor, ItemService.parseLimit(limit, DEFAULT_PAGE_SIZE)));
+            }
+            // La lista completa se escribe en streaming (NDJSON con Accept: application/x-ndjson)
+            List<Item> filteredItems = category == null && minPrice == null && maxPrice == null
+                    ? itemService.getAllItems()
+                    : itemService.findItems(category, minPrice, maxPrice, null);
+            return JsonStreaming.write(req, res, gson, filteredItems, Item.class);
+        });
+
+        // Búsqueda de texto en nombre y descripción (sin mayúsculas ni acentos;
+        // la última palabra vale como prefijo). Va ANTES de '/items/:id'.
+        // GET /items/search?q=guit&category=Instrumentos&limit=10 → página como GET /items paginado
+        get("/items/search", (req, res) -> {
+            res.type("application/json");
+            String category = req.queryParams("category");
+            String minPriceStr = req.queryParams("minprice");
+            String maxPriceStr = req.queryParams("maxprice");
+            String availableStr = req.queryParams("available");
+            Money minPrice = null;
+            if (minPriceStr != null && !minPriceStr.isEmpty()) { try { minPrice = Money.parse(minPriceStr); } catch (NumberFormatException e) { /* Ignorar */ } }
+            Money maxPrice = null;
+            if (maxPriceStr != null && !maxPriceStr.isEmpty()) { try { maxPrice = Money.parse(maxPriceStr); } catch (NumberFormatException e) { /* Ignorar */ } }
+            Boolean available = availableStr != null && !availableStr.isEmpty() ? Boolean.parseBoolean(availableStr) : null;
+            return gson.toJson(itemService.searchItems(req.queryParams("q"),
+                    category != null && !category.isEmpty() ? category : null, minPrice, maxPrice, available,
+                    req.queryParams("cursor"), ItemService.parseLimit(req.queryParams("limit"), DEFAULT_SEARCH_SIZE)));
         });
 
         // Get an item by ID API
@@ -0,0 +1,85 @@
+package org.johan.controllers;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+
+import spark.Request;
+import spark.Response;
+
+/**
+ * Writes list responses element by element straight to the servlet output
+ * stream, instead of building the whole JSON document as a {@code String}
+ * with {@code gson.toJson(list)}. Peak memory per request no longer grows
+ * with the number of elements.
+ * <p>
+ * Clients sending {@code Accept: application/x-ndjson} get one JSON object
+ * per line, flushed in small batches so they can start processing before
+ * the response is complete. Everyone else gets a regular JSON array.
+ * </p>
+ */
+final class JsonStreaming {
+
+    static final String NDJSON = "application/x-ndjson";
+
+    /** NDJSON lines written between explicit flushes. */
+    private static final int FLUSH_EVERY = 256;
+
+    private JsonStreaming() {
+    }
+
+    /**
+     * @return true when the client asked for newline-delimited JSON
+     */
+    static boolean wantsNdjson(Request req) {
+        String accept = req.headers("Accept");
+        return accept != null && accept.contains(NDJSON);
+    }
+
+    /**
+     * Stream {@code elements} as a JSON array (or NDJSON, see class docs).
+     * The route must return the value of this method so Spark does not
+     * write a body of its own.
+     *
+     * @param req      current request (used for content negotiation)
+     * @param res      current response
+     * @param gson     serializer for the elements
+     * @param elements elements to write, iterated once
+     * @param type     element type used by Gson
+     * @param <T>      element type
+     * @return an empty body for Spark
+     * @throws IOException when writing to the client fails
+     */
+    static <T> String write(Request req, Response res, Gson gson, Iterable<? extends T> elements, Class<T> type)
+            throws IOException {
+        boolean ndjson = wantsNdjson(req);
+        res.type(ndjson ? NDJSON : "application/json");
+
+        Writer out = new BufferedWriter(new OutputStreamWriter(res.raw().getOutputStream(), StandardCharsets.UTF_8));
+        if (ndjson) {
+            int written = 0;
+            for (T element : elements) {
+                gson.toJson(element, type, out);
+                out.write('\n');
+                if (++written % FLUSH_EVERY == 0) {
+                    out.flush();
+                }
+            }
+            out.flush();
+        } else {
+            JsonWriter json = gson.newJsonWriter(out);
+            json.beginArray();
+            for (T element : elements) {
+                gson.toJson(element, type, json);
+            }
+            json.endArray();
+            json.flush();
+        }
+        return "";
+    }
+}
@@ -1,43 +1,107 @@
 package org.johan.controllers;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 
+import org.johan.auction.BidRateLimiter;
+import org.johan.exceptions.ConflictException;
 import org.johan.exceptions.NotFoundException;
+import org.johan.exceptions.TooManyRequestsException;
 import org.johan.exceptions.ValidationException;
+import org.johan.logging.LogSampler;
+import org.johan.models.Money;
 import org.johan.models.Offer;
 import org.johan.services.OfferService;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.google.gson.Gson;
 
 import spark.ModelAndView;
+import spark.Request;
+import spark.TemplateEngine;
 import static spark.Spark.get;
 import static spark.Spark.post;
-import spark.template.mustache.MustacheTemplateEngine;
 
 /**
  * OfferController
  * Defines routes for handling item offers.
- * Supports retrieving all offers and a specific offer by ID.
+ * Supports retrieving all offers, the best bids of an item and a specific offer by ID.
  */
 public class OffersControllers {
 
-    private final OfferService offerService = new OfferService();
+    private static final Logger log = LoggerFactory.getLogger(OffersControllers.class);
+
+    /** Pujas devueltas por {@code GET /offers?itemId=X} sin {@code top}. */
+    private static final int DEFAULT_TOP = 10;
+
+    // Mismo muestreo que las pujas del WebSocket (una de cada N)
+    private final LogSampler bidSampler = LogSampler.fromConfig("collectors.log.bidSampleEvery", 100);
+
+    private final OfferService offerService;
+    // Límite de pujas por postor e item (null = sin límite)
+    private final BidRateLimiter rateLimiter;
     private final Gson gson = new Gson();
+    // Motor de plantillas compartido (plantillas precompiladas)
+    private final TemplateEngine templateEngine;
 
-    public OffersControllers() {
-        System.out.println("[OffersControllers] Inicializando y registrando rutas...");
+    public OffersControllers(OfferService offerService, TemplateEngine templateEngine) {
+        this(offerService, templateEngine, null);
+    }
+
+    public OffersControllers(OfferService offerService, TemplateEngine templateEngine, BidRateLimiter rateLimiter) {
+        this.offerService = offerService;
+        this.templateEngine = templateEngine;
+        this.rateLimiter = rateLimiter;
         defineRoutes();
-        System.out.println("[OffersControllers] Rutas registradas: /offers, /offers/:id, /offers-web, /offers/new");
+        log.debug("Rutas registradas: /offers, /offers/:id, /offers-web, /offers/new");
+    }
+
+    // Número de pujas pedido en ?top= (por defecto DEFAULT_TOP, como máximo lo que guarda el índice)
+    private int parseTop(String value) {
+        if (value == null || value.isBlank()) {
+            return Math.min(DEFAULT_TOP, offerService.getTopCapacity());
+        }
+        try {
+            int top = Integer.parseInt(value.trim());
+            if (top >= 1 && top <= offerService.getTopCapacity()) {
+                return top;
+            }
+        } catch (NumberFormatException e) {
+            // mismo mensaje que un valor fuera de rango
+        }
+        throw new ValidationException("'top' debe ser un entero entre 1 y " + offerService.getTopCapacity());
+    }
+
+    // Se comprueba antes de llegar al servicio: las ráfagas de un script no tocan el motor de pujas.
+    // La clave es la dirección del cliente: el nombre del postor lo elige quien envía la puja
+    private void checkRate(Request req, String itemId) {
+        if (rateLimiter == null) {
+            return;
+        }
+        long wait = rateLimiter.tryAcquire(BidRateLimiter.clientKey(req.ip()), itemId);
+        if (wait > 0) {
+            throw new TooManyRequestsException("Demasiadas pujas para el item " + itemId + ", espera un momento", wait);
+        }
     }
 
     private void defineRoutes() {
 
-        // GET /offers -> list all current offers
+        // GET /offers -> list all current offers (streamed; NDJSON with Accept: application/x-ndjson)
+        // GET /offers?itemId=X&top=N -> best N bids of item X, highest first
         get("/offers", (req, res) -> {
-            res.type("application/json");
-            List<Offer> offers = offerService.getAllOffers();
-            return gson.toJson(offers);
+            String itemId = req.queryParams("itemId");
+            String top = req.queryParams("top");
+            if (itemId != null && !itemId.isBlank()) {
+                List<Offer> best = offerService.getTopOffers(itemId.trim(), parseTop(top));
+                return JsonStreaming.write(req, res, gson, best, Offer.class);
+            }
+            if (top != null) {
+                throw new ValidationException("El parámetro 'top' requiere 'itemId'");
+            }
+            return JsonStreaming.write(req, res, gson, offerService.getAllOffers(), Offer.class);
         });
 
         // GET /offers/:id -> retrieve a specific offer by ID
@@ -51,7 +115,7 @@ public class OffersControllers {
             return gson.toJson(offer);
         });
 
-        // POST /offers -> create a new bid/auction entry
+        // POST /offers -> create a new bid/auction entry (409 si no supera la puja actual)
         post("/offers", (req, res) -> {
             res.type("application/json");
             Offer newOffer = gson.fromJson(req.body(), Offer.class);
@@ -59,18 +123,26 @@ public class OffersControllers {
             if (newOffer == null || newOffer.getItemId() == null || newOffer.getItemId().trim().isEmpty()) {
                 throw new ValidationException("El ID de item es obligatorio en una puja");
             }
-            if (newOffer.getCurrentBid() <= 0) {
+            if (newOffer.getCurrentBid() == null || !newOffer.getCurrentBid().isPositive()) {
                 throw new ValidationException("La puja debe ser mayor que 0");
             }
+            checkRate(req, newOffer.getItemId());
+            long start = System.nanoTime();
             Offer createdOffer = offerService.addOffer(newOffer);
+            if (bidSampler.sample()) {
+                log.atInfo().addKeyValue("itemId", createdOffer.getItemId())
+                        .addKeyValue("sequence", createdOffer.getSequence())
+                        .addKeyValue("latencyUs", (System.nanoTime() - start) / 1_000)
+                        .addKeyValue("sampleEvery", bidSampler.every())
+                        .log("Puja aceptada");
+            }
             res.status(201);
             return gson.toJson(createdOffer);
         });
 
         // Vistas WEB
         get("/offers-web", (req, res) -> {
-            System.out.println("[OffersControllers] GET /offers-web");
-            List<Offer> offers = offerService.getAllOffers();
+            Collection<Offer> offers = offerService.getAllOffers();
             HashMap<String, Object> model = new HashMap<>();
             model.put("pageTitle", "Ofertas");
             model.put("activeOffers", true);
@@ -79,7 +151,7 @@ public class OffersControllers {
             if ("oferta-creada".equals(message)) {
                 model.put("message", "¡Oferta creada exitosamente!");
             }
-            return new MustacheTemplateEngine()
+            return templateEngine
                 .render(new ModelAndView(model, "offers.mustache"));
         });
         // Soportar trailing slash
@@ -91,7 +163,7 @@ public class OffersControllers {
             HashMap<String, Object> model = new HashMap<>();
             model.put("pageTitle", "Crear Oferta");
             model.put("activeOffers", true);
-            return new MustacheTemplateEngine()
+            return templateEngine
                 .render(new ModelAndView(model, "offer-form.mustache"));
         });
         post("/offers/new", (req, res) -> {
@@ -99,7 +171,7 @@ public class OffersControllers {
             String bidStr = req.queryParams("bidAmount");
             String bidder = req.queryParams("bidder");
             HashMap<String, Object> model = new HashMap<>();
-            double bid = 0.0;
+            Money bid = null;
             String error = null;
             try {
                 if (itemId == null || itemId.trim().isEmpty()) {
@@ -108,23 +180,25 @@ public class OffersControllers {
                 if (bidStr == null || bidStr.trim().isEmpty()) {
                     throw new ValidationException("La puja es obligatoria");
                 }
-                bid = Double.parseDouble(bidStr);
-                if (bid <= 0) {
+                bid = Money.parse(bidStr);
+                if (!bid.isPositive()) {
                     throw new ValidationException("La puja debe ser mayor a 0");
                 }
+                checkRate(req, itemId);
                 // Crear y guardar puja
                 Offer offer = new Offer(itemId, bid, bidder);
                 offerService.addOffer(offer);
                 res.redirect("/offers-web?message=oferta-creada");
                 return null;
-            } catch (ValidationException | NumberFormatException ve) {
+            } catch (ValidationException | ConflictException | NotFoundException | TooManyRequestsException
+                     | NumberFormatException ve) {
                 error = ve.getMessage();
             }
             model.put("pageTitle", "Crear Oferta");
             model.put("activeOffers", true);
             model.put("error", error);
             model.put("offer", new Offer(itemId, bid, bidder));
-            return new MustacheTemplateEngine().render(new ModelAndView(model, "offer-form.mustache"));
+            return templateEngine.render(new ModelAndView(model, "offer-form.mustache"));
         });
         // Ruta de diagnóstico rápida para validar el registro del controlador
         get("/offers-web-debug", (req, res) -> {
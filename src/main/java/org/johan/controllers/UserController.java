@@ -1,9 +1,9 @@
 package org.johan.controllers;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
-import org.johan.exceptions.ConflictException;
 import org.johan.exceptions.NotFoundException;
 import org.johan.exceptions.ValidationException;
 import org.johan.models.User;
@@ -14,18 +14,18 @@ import com.google.gson.Gson;
 import spark.ModelAndView;
 import spark.Request;
 import spark.Response;
-import spark.template.mustache.MustacheTemplateEngine;
+import spark.TemplateEngine;
 
 public class UserController {
 
     private final UserService userService;
     private final Gson gson;
-    private final MustacheTemplateEngine mustacheEngine;
+    private final TemplateEngine mustacheEngine;
 
-    public UserController(UserService userService, Gson gson) {
+    public UserController(UserService userService, Gson gson, TemplateEngine mustacheEngine) {
         this.userService = userService;
         this.gson = gson;
-        this.mustacheEngine = new MustacheTemplateEngine();
+        this.mustacheEngine = mustacheEngine;
     }
     
     // GET /users-web - Renderiza la vista HTML de usuarios
@@ -37,10 +37,9 @@ public class UserController {
         return mustacheEngine.render(new ModelAndView(model, "users.mustache"));
     }
 
-    // GET /users
-    public String getAllUsers(Request req, Response res) {
-        res.type("application/json");
-        return gson.toJson(userService.getAllUsers());
+    // GET /users (se escribe en streaming; NDJSON con Accept: application/x-ndjson)
+    public String getAllUsers(Request req, Response res) throws IOException {
+        return JsonStreaming.write(req, res, gson, userService.getAllUsers(), User.class);
     }
 
     // GET /users/:id (MODIFICADO)
@@ -75,11 +74,7 @@ public class UserController {
             throw new ValidationException("El campo 'name' es obligatorio");
         }
         
-        // Verificar si el usuario ya existe
-        if (userService.userExists(id)) {
-            throw new ConflictException("Ya existe un usuario con el ID: " + id);
-        }
-        
+        // Alta atómica: si el ID o el email ya existen el servicio lanza ConflictException (409)
         User createdUser = userService.createUser(newUser);
         res.status(201); // CREATED
         return gson.toJson(createdUser);
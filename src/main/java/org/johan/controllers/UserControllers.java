@@ -5,7 +5,7 @@ import com.google.gson.Gson;
 import org.johan.models.User;
 import org.johan.services.UserService;
 
-import java.util.List;
+import java.util.Collection;
 import java.util.Map;
 import java.util.UUID;
 
@@ -29,7 +29,7 @@ public class UserControllers {
         // GET /users → Retrieve list of all users
         get("/users", (req, res) -> {
             res.type("application/json");
-            List<User> users = userService.getAllUsers();
+            Collection<User> users = userService.getAllUsers();
             return gson.toJson(users);
         });
 
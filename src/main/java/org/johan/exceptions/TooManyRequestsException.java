@@ -0,0 +1,15 @@
+package org.johan.exceptions;
+
+public class TooManyRequestsException extends RuntimeException {
+    private final long retryAfterMillis;
+
+    public TooManyRequestsException(String message, long retryAfterMillis) {
+        super(message);
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    // Tiempo hasta que el cliente puede volver a intentarlo
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+}
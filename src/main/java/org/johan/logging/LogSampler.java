@@ -0,0 +1,57 @@
+package org.johan.logging;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.johan.config.AppConfig;
+
+/**
+ * Decides which occurrences of a high-frequency event get logged.
+ * <p>
+ * With a rate of {@code N} roughly one event in {@code N} is logged; 1 logs
+ * every event and 0 disables the event entirely. The decision uses a
+ * thread-local random number, so sampling adds no shared state to the
+ * bid path.
+ * </p>
+ */
+public final class LogSampler {
+
+    private final int every;
+
+    /**
+     * @param every log about one event in {@code every} (0 disables, 1 logs all)
+     */
+    public LogSampler(int every) {
+        if (every < 0) {
+            throw new IllegalArgumentException("every must be >= 0");
+        }
+        this.every = every;
+    }
+
+    /**
+     * Read the rate from {@link AppConfig}.
+     *
+     * @param key          configuration key
+     * @param defaultEvery rate used when the key is not set
+     * @return a sampler for that rate
+     */
+    public static LogSampler fromConfig(String key, int defaultEvery) {
+        return new LogSampler(Math.max(0, AppConfig.getInt(key, defaultEvery)));
+    }
+
+    /**
+     * @return true when the current event should be logged
+     */
+    public boolean sample() {
+        if (every <= 1) {
+            return every == 1;
+        }
+        return ThreadLocalRandom.current().nextInt(every) == 0;
+    }
+
+    /**
+     * @return configured rate (one event in {@code every})
+     */
+    public int every() {
+        return every;
+    }
+}
@@ -0,0 +1,59 @@
+package org.johan.metrics;
+
+import static spark.Spark.afterAfter;
+import static spark.Spark.before;
+
+import spark.Spark;
+
+/**
+ * Spark filters that time every request and record it in a
+ * {@link MetricsRegistry}.
+ * <p>
+ * The {@code afterAfter} filter runs after the exception handlers have set
+ * the response status, so 400/404/409/500 responses produced by the
+ * handlers in {@code Main} are counted with their final status.
+ * </p>
+ */
+public final class HttpMetrics {
+
+    private static final String START_ATTRIBUTE = "collectors.metrics.start";
+
+    private volatile RouteTemplates templates;
+
+    private HttpMetrics() {
+    }
+
+    /**
+     * Register the timing filters. Must be called before the routes are
+     * defined so the {@code before} filter runs first.
+     *
+     * @param registry registry receiving the measurements
+     */
+    public static void install(MetricsRegistry registry) {
+        HttpMetrics metrics = new HttpMetrics();
+        before((req, res) -> req.attribute(START_ATTRIBUTE, System.nanoTime()));
+        afterAfter((req, res) -> {
+            Long start = req.attribute(START_ATTRIBUTE);
+            if (start != null) {
+                String method = req.requestMethod();
+                String route = metrics.templates().match(method, req.pathInfo());
+                int status = res.raw().getStatus();
+                // Spark escribe el 404 de una ruta inexistente después de los filtros afterAfter
+                if (RouteTemplates.UNMATCHED.equals(route) && status == 200) {
+                    status = 404;
+                }
+                registry.recordRequest(method, route, status, System.nanoTime() - start);
+            }
+        });
+    }
+
+    // Las rutas se conocen cuando llega la primera petición (ya están todas registradas)
+    private RouteTemplates templates() {
+        RouteTemplates current = templates;
+        if (current == null) {
+            current = new RouteTemplates(Spark.routes());
+            templates = current;
+        }
+        return current;
+    }
+}
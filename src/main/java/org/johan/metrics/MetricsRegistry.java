@@ -0,0 +1,160 @@
+package org.johan.metrics;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Application metrics, exposed in the Prometheus text format by
+ * {@link #scrape()}.
+ * <p>
+ * HTTP requests are recorded per method and route template (e.g.
+ * {@code GET /items/:id}) with a count per status code and a
+ * {@link LatencyHistogram}. Other components register counters, gauges and
+ * histograms they already maintain; those are only read at scrape time.
+ * Recording never takes a lock: the per-route entry is found in a
+ * {@link ConcurrentHashMap} and updated with atomic increments.
+ * </p>
+ */
+public class MetricsRegistry {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final int MAX_STATUS = 600;
+
+    private final ConcurrentHashMap<String, RouteStats> routes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> exceptions = new ConcurrentHashMap<>();
+    private final List<Family> families = new CopyOnWriteArrayList<>();
+
+    private static final class RouteStats {
+        final String method;
+        final String route;
+        final AtomicLongArray statuses = new AtomicLongArray(MAX_STATUS);
+        final LatencyHistogram latency = new LatencyHistogram();
+
+        RouteStats(String method, String route) {
+            this.method = method;
+            this.route = route;
+        }
+    }
+
+    private record Family(String name, String help, String type, LongSupplier value, LatencyHistogram histogram) {
+    }
+
+    /**
+     * Record a finished HTTP request.
+     *
+     * @param method HTTP method
+     * @param route  route template, not the raw path (bounded cardinality)
+     * @param status response status code
+     * @param nanos  time spent serving the request
+     */
+    public void recordRequest(String method, String route, int status, long nanos) {
+        RouteStats stats = routes.get(method + ' ' + route);
+        if (stats == null) {
+            stats = routes.computeIfAbsent(method + ' ' + route, k -> new RouteStats(method, route));
+        }
+        stats.statuses.incrementAndGet(status >= 0 && status < MAX_STATUS ? status : 0);
+        stats.latency.record(nanos);
+    }
+
+    /**
+     * Count an exception that reached one of the exception handlers.
+     */
+    public void recordException(Throwable error) {
+        exceptions.computeIfAbsent(error.getClass().getSimpleName(), k -> new LongAdder()).increment();
+    }
+
+    /**
+     * Expose a monotonically increasing value maintained elsewhere.
+     */
+    public void counter(String name, String help, LongSupplier value) {
+        families.add(new Family(name, help, "counter", value, null));
+    }
+
+    /**
+     * Expose a value that can go up and down.
+     */
+    public void gauge(String name, String help, LongSupplier value) {
+        families.add(new Family(name, help, "gauge", value, null));
+    }
+
+    /**
+     * Expose a latency histogram as a summary in seconds.
+     */
+    public void histogram(String name, String help, LatencyHistogram histogram) {
+        families.add(new Family(name, help, "summary", null, histogram));
+    }
+
+    /**
+     * @return all metrics in the Prometheus text exposition format (0.0.4)
+     */
+    public String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+        Map<String, RouteStats> sorted = new TreeMap<>(routes);
+
+        header(out, "collectors_http_requests_total", "HTTP requests by route and status", "counter");
+        for (RouteStats stats : sorted.values()) {
+            for (int status = 0; status < MAX_STATUS; status++) {
+                long count = stats.statuses.get(status);
+                if (count > 0) {
+                    out.append("collectors_http_requests_total{method=\"").append(stats.method)
+                            .append("\",route=\"").append(escape(stats.route))
+                            .append("\",status=\"").append(status).append("\"} ").append(count).append('\n');
+                }
+            }
+        }
+
+        header(out, "collectors_http_request_duration_seconds", "HTTP request latency by route", "summary");
+        for (RouteStats stats : sorted.values()) {
+            String labels = "method=\"" + stats.method + "\",route=\"" + escape(stats.route) + "\"";
+            summary(out, "collectors_http_request_duration_seconds", labels, stats.latency);
+        }
+
+        header(out, "collectors_http_exceptions_total", "Exceptions handled by the exception handlers", "counter");
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(exceptions).entrySet()) {
+            out.append("collectors_http_exceptions_total{exception=\"").append(entry.getKey()).append("\"} ")
+                    .append(entry.getValue().sum()).append('\n');
+        }
+
+        for (Family family : families) {
+            header(out, family.name(), family.help(), family.type());
+            if (family.histogram() != null) {
+                summary(out, family.name(), null, family.histogram());
+            } else {
+                out.append(family.name()).append(' ').append(family.value().getAsLong()).append('\n');
+            }
+        }
+        return out.toString();
+    }
+
+    private static void header(StringBuilder out, String name, String help, String type) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void summary(StringBuilder out, String name, String labels, LatencyHistogram histogram) {
+        long[] values = histogram.percentiles(QUANTILES);
+        String prefix = labels != null ? labels + "," : "";
+        for (int i = 0; i < QUANTILES.length; i++) {
+            out.append(name).append('{').append(prefix).append("quantile=\"").append(QUANTILES[i]).append("\"} ")
+                    .append(seconds(values[i])).append('\n');
+        }
+        String suffix = labels != null ? "{" + labels + "}" : "";
+        out.append(name).append("_sum").append(suffix).append(' ').append(seconds(histogram.sumNanos())).append('\n');
+        out.append(name).append("_count").append(suffix).append(' ').append(histogram.count()).append('\n');
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
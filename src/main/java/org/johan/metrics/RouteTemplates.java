@@ -0,0 +1,90 @@
+package org.johan.metrics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import spark.route.HttpMethod;
+import spark.routematch.RouteMatch;
+
+/**
+ * Maps a request path back to the route template that served it
+ * ({@code /items/item42} to {@code /items/:id}), so metrics are kept per
+ * route instead of per URL. Templates without parameters are found with a
+ * single hash lookup; the others are compared segment by segment in
+ * registration order, like Spark does.
+ */
+final class RouteTemplates {
+
+    /** Label of requests that did not match any route (404, static files). */
+    static final String UNMATCHED = "unmatched";
+
+    private final Map<String, String> exact = new HashMap<>();
+    private final Map<String, List<String[]>> parameterized = new HashMap<>();
+
+    RouteTemplates(List<RouteMatch> routes) {
+        for (RouteMatch route : routes) {
+            HttpMethod method = route.getHttpMethod();
+            if (method == HttpMethod.before || method == HttpMethod.after || method == HttpMethod.afterafter) {
+                continue;
+            }
+            String template = route.getMatchUri();
+            String key = method.name().toUpperCase(Locale.ROOT);
+            if (template.contains(":") || template.contains("*")) {
+                parameterized.computeIfAbsent(key, k -> new ArrayList<>()).add(segments(template));
+            } else {
+                exact.putIfAbsent(key + ' ' + trimSlash(template), template);
+            }
+        }
+    }
+
+    /**
+     * @param method HTTP method (upper case)
+     * @param path   request path without query string
+     * @return the template of the matching route, or {@link #UNMATCHED}
+     */
+    String match(String method, String path) {
+        String trimmed = trimSlash(path);
+        String template = exact.get(method + ' ' + trimmed);
+        if (template != null) {
+            return template;
+        }
+        List<String[]> candidates = parameterized.get(method);
+        if (candidates != null) {
+            String[] parts = segments(trimmed);
+            for (String[] candidate : candidates) {
+                if (matches(candidate, parts)) {
+                    return String.join("/", candidate);
+                }
+            }
+        }
+        return UNMATCHED;
+    }
+
+    private static boolean matches(String[] template, String[] path) {
+        boolean splat = template.length > 0 && template[template.length - 1].equals("*");
+        if (splat ? path.length < template.length - 1 : path.length != template.length) {
+            return false;
+        }
+        for (int i = 0; i < template.length; i++) {
+            String segment = template[i];
+            if (segment.equals("*")) {
+                return true;
+            }
+            if (!segment.startsWith(":") && !segment.equals(path[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String[] segments(String path) {
+        return trimSlash(path).split("/", -1);
+    }
+
+    private static String trimSlash(String path) {
+        return path.length() > 1 && path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+    }
+}
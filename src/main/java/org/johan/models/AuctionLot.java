@@ -0,0 +1,73 @@
+package org.johan.models;
+
+/**
+ * Auction of one item with an end time. While the lot is open the item
+ * takes bids; when it closes the best bid wins and the item is no longer
+ * available. Fields are written by the auction service and can be read
+ * (and serialized) at any time.
+ */
+public class AuctionLot {
+
+    public enum Status {
+        OPEN, CLOSED
+    }
+
+    private final String itemId;
+    private final long openedAt;
+    private volatile long endsAt;       // epoch ms
+    private volatile int extensions;    // veces que una puja final alargó la subasta
+    private volatile Status status = Status.OPEN;
+    private volatile long closedAt;
+    private volatile String winner;     // null si nadie pujó
+    private volatile String winningOfferId;
+    private volatile Money finalPrice;
+
+    public AuctionLot(String itemId, long endsAt) {
+        this.itemId = itemId;
+        this.openedAt = System.currentTimeMillis();
+        this.endsAt = endsAt;
+    }
+
+    /**
+     * Record the outcome of the auction.
+     *
+     * @param winner         bidder of the winning bid ({@code null} when nobody bid)
+     * @param winningOfferId offer holding the winning bid (nullable)
+     * @param finalPrice     winning bid, or the opening price when nobody bid
+     * @param closedAt       when bidding stopped, in epoch ms
+     */
+    public void close(String winner, String winningOfferId, Money finalPrice, long closedAt) {
+        this.winner = winner;
+        this.winningOfferId = winningOfferId;
+        this.finalPrice = finalPrice;
+        this.closedAt = closedAt;
+        this.status = Status.CLOSED;
+    }
+
+    /**
+     * Move the end time later because of a bid in the final moments.
+     * Callers hold the lot's monitor.
+     *
+     * @param newEndsAt new end time in epoch ms (ignored when not later)
+     */
+    public void extendTo(long newEndsAt) {
+        if (newEndsAt > endsAt) {
+            endsAt = newEndsAt;
+            extensions++;
+        }
+    }
+
+    public boolean isOpen() {
+        return status == Status.OPEN;
+    }
+
+    public String getItemId() { return itemId; }
+    public long getOpenedAt() { return openedAt; }
+    public long getEndsAt() { return endsAt; }
+    public int getExtensions() { return extensions; }
+    public Status getStatus() { return status; }
+    public long getClosedAt() { return closedAt; }
+    public String getWinner() { return winner; }
+    public String getWinningOfferId() { return winningOfferId; }
+    public Money getFinalPrice() { return finalPrice; }
+}
@@ -0,0 +1,16 @@
+package org.johan.models;
+
+/**
+ * Body of {@code POST /auctions}: the item and either an absolute end time
+ * ({@code {"itemId": "item1", "endsAt": 1767225600000}}, epoch ms) or a
+ * duration from now ({@code {"itemId": "item1", "durationSeconds": 3600}}).
+ */
+public class AuctionLotRequest {
+    private String itemId;
+    private Long endsAt;
+    private Long durationSeconds;
+
+    public String getItemId() { return itemId; }
+    public Long getEndsAt() { return endsAt; }
+    public Long getDurationSeconds() { return durationSeconds; }
+}
@@ -0,0 +1,83 @@
+package org.johan.models;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Progress and outcome of a catalog import. The counters are updated by
+ * the importing thread and can be read (and serialized) at any time.
+ */
+public class ImportJob {
+
+    public enum Status {
+        RUNNING, DONE, FAILED
+    }
+
+    /** Errores guardados como ejemplo; el resto solo se cuentan. */
+    public static final int MAX_ERROR_SAMPLES = 50;
+
+    private final String id;
+    private final String source;
+    private final long startedAt;
+    private volatile Status status = Status.RUNNING;
+    private volatile long processed;
+    private volatile long created;
+    private volatile long updated;
+    private volatile long errors;
+    private volatile long finishedAt;
+    private volatile String failure;
+    private final List<String> errorSamples = new CopyOnWriteArrayList<>();
+
+    public ImportJob(String id, String source) {
+        this.id = id;
+        this.source = source;
+        this.startedAt = System.currentTimeMillis();
+    }
+
+    /** Un elemento leído (válido o no). */
+    public void recordProcessed() {
+        processed++;
+    }
+
+    /** Una tanda insertada en el catálogo. */
+    public void recordBatch(int createdItems, int updatedItems) {
+        created += createdItems;
+        updated += updatedItems;
+    }
+
+    /**
+     * Count an element that could not be imported.
+     *
+     * @param index   position of the element in the file (0-based)
+     * @param message reason
+     */
+    public void recordError(long index, String message) {
+        errors++;
+        if (errorSamples.size() < MAX_ERROR_SAMPLES) {
+            errorSamples.add("#" + index + ": " + message);
+        }
+    }
+
+    public void finish() {
+        finishedAt = System.currentTimeMillis();
+        status = Status.DONE;
+    }
+
+    public void fail(String reason) {
+        failure = reason;
+        finishedAt = System.currentTimeMillis();
+        status = Status.FAILED;
+    }
+
+    public String getId() { return id; }
+    public String getSource() { return source; }
+    public Status getStatus() { return status; }
+    public long getProcessed() { return processed; }
+    public long getCreated() { return created; }
+    public long getUpdated() { return updated; }
+    public long getErrors() { return errors; }
+    public String getFailure() { return failure; }
+    public List<String> getErrorSamples() { return errorSamples; }
+    public long getStartedAt() { return startedAt; }
+    public long getFinishedAt() { return finishedAt; }
+}
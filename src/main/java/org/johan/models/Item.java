@@ -3,20 +3,31 @@ package org.johan.models;
 public class Item {
     private String id;
     private final String name;
-    private double price;
+    private final String description;   // opcional, entra en la búsqueda de texto
+    private volatile Money price;
     private final String category;
     private String imageUrl;
-    private boolean available;
+    private volatile boolean available;
 
-    public Item(String id, String name, double price, String category, String imageUrl) {
+    public Item(String id, String name, Money price, String category, String imageUrl) {
+        this(id, name, null, price, category, imageUrl);
+    }
+
+    public Item(String id, String name, String description, Money price, String category, String imageUrl) {
         this.id = id;
         this.name = name;
+        this.description = description;
         this.price = price;
         this.category = category;
         this.imageUrl = imageUrl;
         this.available = true;
     }
 
+    public Item(String name, String category, Money price, boolean available) {
+        this(null, name, price, category, null);
+        this.available = available;
+    }
+
     // Getters y Setters
     public String getId() {
         return id;
@@ -26,7 +37,11 @@ public class Item {
         return name;
     }
 
-    public double getPrice() {
+    public String getDescription() {
+        return description;
+    }
+
+    public Money getPrice() {
         return price;
     }
 
@@ -50,7 +65,17 @@ public class Item {
         this.available = available;
     }
 
-    public void setPrice(double price) {
+    public void setPrice(Money price) {
         this.price = price;
     }
+
+    /**
+     * @param description description of the copy
+     * @return a copy of this item with another description
+     */
+    public Item withDescription(String description) {
+        Item copy = new Item(id, name, description, price, category, imageUrl);
+        copy.setAvailable(available);
+        return copy;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,29 @@
+package org.johan.models;
+
+import java.util.List;
+
+/**
+ * One page of a paginated item listing.
+ * {@code nextCursor} is {@code null} on the last page.
+ */
+public class ItemPage {
+    private final List<Item> items;
+    private final String nextCursor;
+    private final boolean hasMore;
+    private final int limit;
+    private final String sort;
+
+    public ItemPage(List<Item> items, String nextCursor, int limit, String sort) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+        this.hasMore = nextCursor != null;
+        this.limit = limit;
+        this.sort = sort;
+    }
+
+    public List<Item> getItems() { return items; }
+    public String getNextCursor() { return nextCursor; }
+    public boolean isHasMore() { return hasMore; }
+    public int getLimit() { return limit; }
+    public String getSort() { return sort; }
+}
@@ -0,0 +1,327 @@
+package org.johan.models;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Locale;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * An amount of money in fixed point: a whole number of minor units (cents)
+ * plus a currency code.
+ * <p>
+ * Prices are compared and sorted as {@code long}s, so {@code 0.1 + 0.2}
+ * style rounding never decides a filter or a bid. Parsing and formatting
+ * are written by hand and do not allocate (no regex, no
+ * {@link java.util.Formatter}, no intermediate strings), because they run
+ * for every catalog entry loaded and every price update broadcast.
+ * </p>
+ * <p>
+ * In JSON a price is still a plain number ({@code "price": 621.34}); the
+ * currency is not part of it and is {@link #DEFAULT_CURRENCY} when read.
+ * The catalog therefore holds a single currency: {@link #parseLenient}
+ * rejects any other code, since the journal would replay that amount in
+ * dollars and bids, filters and the price index compare minor units only.
+ * </p>
+ */
+@JsonAdapter(Money.GsonAdapter.class)
+public final class Money implements Comparable<Money> {
+
+    /** Currency of the catalog ({@code data/items.json} prices are in dollars). */
+    public static final String DEFAULT_CURRENCY = "USD";
+
+    /** Decimal digits of the minor unit. */
+    public static final int SCALE = 2;
+
+    private static final long MINOR_PER_UNIT = 100;
+
+    /** Más dígitos enteros desbordarían el long en unidades menores. */
+    private static final int MAX_INTEGER_DIGITS = 15;
+
+    public static final Money ZERO = new Money(0, DEFAULT_CURRENCY);
+
+    private final long minor;
+    private final String currency;
+
+    private Money(long minor, String currency) {
+        this.minor = minor;
+        this.currency = currency;
+    }
+
+    /**
+     * @param minor amount in cents
+     * @return the amount in {@link #DEFAULT_CURRENCY}
+     */
+    public static Money ofMinor(long minor) {
+        return new Money(minor, DEFAULT_CURRENCY);
+    }
+
+    /**
+     * @param minor    amount in minor units
+     * @param currency ISO currency code
+     * @return the amount
+     */
+    public static Money ofMinor(long minor, String currency) {
+        return new Money(minor, DEFAULT_CURRENCY.equals(currency) ? DEFAULT_CURRENCY : currency);
+    }
+
+    /**
+     * Parse a plain decimal amount such as {@code 150}, {@code 150.9} or
+     * {@code -3.25}, surrounded by optional spaces. Digits after the second
+     * decimal are rounded half up.
+     *
+     * @param text amount
+     * @return the amount in {@link #DEFAULT_CURRENCY}
+     * @throws NumberFormatException when the text is not a decimal number
+     */
+    public static Money parse(CharSequence text) {
+        return ofMinor(parseMinor(text, 0, text.length()));
+    }
+
+    /**
+     * Parse the amount in {@code text[from, to)} into minor units, without
+     * allocating.
+     *
+     * @param text text holding the amount
+     * @param from first index (inclusive)
+     * @param to   last index (exclusive)
+     * @return amount in minor units
+     * @throws NumberFormatException when the range is not a decimal number
+     */
+    public static long parseMinor(CharSequence text, int from, int to) {
+        while (from < to && text.charAt(from) == ' ') {
+            from++;
+        }
+        while (to > from && text.charAt(to - 1) == ' ') {
+            to--;
+        }
+        boolean negative = from < to && text.charAt(from) == '-';
+        if (negative || (from < to && text.charAt(from) == '+')) {
+            from++;
+        }
+        long minor = accumulate(text, from, to, false);
+        return negative ? -minor : minor;
+    }
+
+    /**
+     * Parse a catalog price such as {@code "$621.34 USD"} or
+     * {@code "1,250.00"}: every character other than digits and the decimal
+     * point is ignored, and a trailing three-letter code must be
+     * {@link #DEFAULT_CURRENCY}. Allocates only the result.
+     *
+     * @param text formatted price
+     * @return the price in {@link #DEFAULT_CURRENCY}
+     * @throws NumberFormatException when the text holds no digits, several decimal points
+     *                               or another currency code
+     */
+    public static Money parseLenient(CharSequence text) {
+        int end = text.length();
+        while (end > 0 && !isAsciiLetter(text.charAt(end - 1)) && !isDigit(text.charAt(end - 1))) {
+            end--;
+        }
+        if (end >= 3 && isAsciiLetter(text.charAt(end - 1)) && isAsciiLetter(text.charAt(end - 2))
+                && isAsciiLetter(text.charAt(end - 3)) && (end == 3 || !isAsciiLetter(text.charAt(end - 4)))
+                && !regionEquals(text, end - 3, DEFAULT_CURRENCY)) {
+            // Un importe en otra moneda se trataría como dólares al repetir el journal
+            throw new NumberFormatException("Moneda no admitida (el catálogo está en " + DEFAULT_CURRENCY + "): "
+                    + text.subSequence(end - 3, end).toString().toUpperCase(Locale.ROOT));
+        }
+        return ofMinor(accumulate(text, 0, text.length(), true));
+    }
+
+    /**
+     * Digits of {@code text[from, to)} as minor units; in lenient mode any
+     * other character except the decimal point is skipped.
+     */
+    private static long accumulate(CharSequence text, int from, int to, boolean lenient) {
+        long units = 0;
+        int integerDigits = 0;
+        int decimals = 0;
+        boolean point = false;
+        boolean roundUp = false;
+        boolean digits = false;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (isDigit(c)) {
+                digits = true;
+                if (!point) {
+                    if (++integerDigits > MAX_INTEGER_DIGITS) {
+                        throw new NumberFormatException("Importe demasiado grande: " + text);
+                    }
+                    units = units * 10 + (c - '0');
+                } else if (decimals < SCALE) {
+                    units = units * 10 + (c - '0');
+                    decimals++;
+                } else if (decimals == SCALE) {
+                    // Primer dígito descartado: decide el redondeo (mitad hacia arriba)
+                    roundUp = c >= '5';
+                    decimals++;
+                }
+            } else if (c == '.' && !point) {
+                point = true;
+            } else if (!lenient || c == '.') {
+                throw new NumberFormatException("Importe inválido: " + text);
+            }
+        }
+        if (!digits) {
+            throw new NumberFormatException("Importe inválido: " + text);
+        }
+        for (int d = Math.min(decimals, SCALE); d < SCALE; d++) {
+            units *= 10;
+        }
+        return roundUp ? units + 1 : units;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
+    }
+
+    private static boolean regionEquals(CharSequence text, int from, String expected) {
+        for (int i = 0; i < expected.length(); i++) {
+            if (Character.toUpperCase(text.charAt(from + i)) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Append the amount as {@code 621.34} (always two decimals, never a
+     * thousands separator or a locale-dependent comma), without allocating.
+     *
+     * @param out destination
+     * @return {@code out}
+     */
+    public StringBuilder appendTo(StringBuilder out) {
+        long value = minor;
+        if (value < 0) {
+            out.append('-');
+            value = -value;
+        }
+        out.append(value / MINOR_PER_UNIT).append('.');
+        long cents = value % MINOR_PER_UNIT;
+        if (cents < 10) {
+            out.append('0');
+        }
+        return out.append(cents);
+    }
+
+    /**
+     * @param factor multiplier (for example 0.9 for a 10% discount)
+     * @return this amount times {@code factor}, rounded half up to the minor unit
+     */
+    public Money times(double factor) {
+        return new Money(Math.round(minor * factor), currency);
+    }
+
+    /**
+     * @return amount in minor units (cents)
+     */
+    public long minor() {
+        return minor;
+    }
+
+    /**
+     * @return ISO currency code
+     */
+    public String currency() {
+        return currency;
+    }
+
+    public boolean isPositive() {
+        return minor > 0;
+    }
+
+    /**
+     * @return the amount as a {@code double} (display or legacy APIs only, never for comparisons)
+     */
+    public double toDouble() {
+        return (double) minor / MINOR_PER_UNIT;
+    }
+
+    /**
+     * @throws IllegalArgumentException when the currencies differ
+     */
+    @Override
+    public int compareTo(Money other) {
+        if (!currency.equals(other.currency)) {
+            throw new IllegalArgumentException("No se pueden comparar " + currency + " y " + other.currency);
+        }
+        return Long.compare(minor, other.minor);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Money m && m.minor == minor && m.currency.equals(currency);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(minor) * 31 + currency.hashCode();
+    }
+
+    /**
+     * @return the amount as {@code 621.34} (used by the templates)
+     */
+    @Override
+    public String toString() {
+        return appendTo(new StringBuilder(16)).toString();
+    }
+
+    /**
+     * Writes a price as a JSON number with two decimals and reads it from a
+     * number or from a formatted string ({@code "$621.34 USD"}).
+     */
+    static final class GsonAdapter extends TypeAdapter<Money> {
+        @Override
+        public void write(JsonWriter out, Money value) throws IOException {
+            if (value == null) {
+                out.nullValue();
+            } else {
+                out.value(BigDecimal.valueOf(value.minor, SCALE));
+            }
+        }
+
+        @Override
+        public Money read(JsonReader in) throws IOException {
+            JsonToken token = in.peek();
+            if (token == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            // nextString devuelve el número tal cual está escrito, sin pasar por double
+            String text = in.nextString();
+            try {
+                return token == JsonToken.NUMBER ? parseNumber(text) : parseLenient(text);
+            } catch (NumberFormatException | ArithmeticException e) {
+                throw new JsonSyntaxException("Importe inválido en " + in.getPreviousPath() + ": " + text, e);
+            }
+        }
+
+        private static Money parseNumber(String text) {
+            if (text.indexOf('e') >= 0 || text.indexOf('E') >= 0) {
+                BigDecimal value = new BigDecimal(text);
+                // Se acota el exponente antes de escalar: "1e99999999" calcularía 10^100000001
+                if (value.precision() - value.scale() > MAX_INTEGER_DIGITS || value.scale() < -MAX_INTEGER_DIGITS) {
+                    throw new NumberFormatException("Importe demasiado grande: " + text);
+                }
+                if (value.precision() - value.scale() < -SCALE) {
+                    // Menos de media unidad menor ("1e-99999999"): redondea a cero sin escalar
+                    return ofMinor(0);
+                }
+                return ofMinor(value.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact());
+            }
+            return parse(text);
+        }
+    }
+}
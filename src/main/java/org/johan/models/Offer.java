@@ -9,14 +9,16 @@ public class Offer {
 
     private String id;
     private String itemId;
-    private double currentBid; 
+    private Money currentBid; 
     private String bidder;     
+    private long sequence;     // posición de la puja en el historial del item
+    private boolean winner;    // puja ganadora de una subasta ya cerrada
 
     public Offer() {
         this.id = UUID.randomUUID().toString();
     }
 
-    public Offer(String itemId, double currentBid, String bidder) {
+    public Offer(String itemId, Money currentBid, String bidder) {
         this.id = UUID.randomUUID().toString();
         this.itemId = itemId;
         this.currentBid = currentBid;
@@ -40,8 +42,12 @@ public class Offer {
         this.itemId = itemId;
     }
 
-    public double getCurrentBid() { return currentBid; }
-    public void setCurrentBid(double currentBid) { this.currentBid = currentBid; }
+    public Money getCurrentBid() { return currentBid; }
+    public void setCurrentBid(Money currentBid) { this.currentBid = currentBid; }
     public String getBidder() { return bidder; }
     public void setBidder(String bidder) { this.bidder = bidder; }
+    public long getSequence() { return sequence; }
+    public void setSequence(long sequence) { this.sequence = sequence; }
+    public boolean isWinner() { return winner; }
+    public void setWinner(boolean winner) { this.winner = winner; }
 }
\ No newline at end of file
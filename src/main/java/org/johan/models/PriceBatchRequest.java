@@ -0,0 +1,18 @@
+package org.johan.models;
+
+import java.util.Map;
+
+/**
+ * Body of a bulk price update: either explicit prices per item
+ * ({@code {"prices": {"item1": 120.0, "item7": 89.5}}}) or a rule applied
+ * to a whole category ({@code {"category": "Monedas", "factor": 0.9}}).
+ */
+public class PriceBatchRequest {
+    private Map<String, Money> prices;
+    private String category;
+    private Double factor;
+
+    public Map<String, Money> getPrices() { return prices; }
+    public String getCategory() { return category; }
+    public Double getFactor() { return factor; }
+}
@@ -0,0 +1,113 @@
+package org.johan.server;
+
+import static spark.Spark.afterAfter;
+import static spark.Spark.before;
+import static spark.Spark.halt;
+
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.johan.models.ErrorResponse;
+
+import com.google.gson.Gson;
+
+/**
+ * Spark filters that bound the number of HTTP requests handled at the same
+ * time.
+ * <p>
+ * A request that finds every permit taken waits up to the configured
+ * timeout and is then answered with {@code 503} and {@code Retry-After}.
+ * This replaces the back-pressure of a bounded Jetty pool when requests run
+ * on {@link VirtualThreadPool}, and protects the catalog, the write-ahead
+ * log and the WebSocket fan-out from an unbounded number of concurrent
+ * handlers. Static files, WebSocket connections and the exempt paths
+ * (such as {@code /metrics}, which must answer while the server is saturated)
+ * are not counted.
+ * </p>
+ */
+public final class ConcurrencyLimiter {
+
+    private static final String PERMIT_ATTRIBUTE = "collectors.limiter.permit";
+
+    private final Semaphore permits;
+    private final int maxConcurrent;
+    private final long timeoutNanos;
+    private final String rejection;
+    private final LongAdder rejected = new LongAdder();
+
+    private ConcurrencyLimiter(int maxConcurrent, long timeoutMs) {
+        this.maxConcurrent = maxConcurrent;
+        this.permits = new Semaphore(maxConcurrent);
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        this.rejection = new Gson().toJson(new ErrorResponse("SERVICE_UNAVAILABLE",
+                "Servidor saturado, inténtalo de nuevo"));
+    }
+
+    /**
+     * Register the limiting filters. Must be called before the routes are
+     * defined.
+     *
+     * @param maxConcurrent requests handled at the same time (must be positive)
+     * @param timeoutMs     how long a request may wait for a permit (0 = reject at once)
+     * @param exemptPaths   paths served without a permit
+     * @return the installed limiter, for its metrics
+     */
+    public static ConcurrencyLimiter install(int maxConcurrent, long timeoutMs, String... exemptPaths) {
+        if (maxConcurrent <= 0) {
+            throw new IllegalArgumentException("El límite de concurrencia debe ser positivo");
+        }
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(maxConcurrent, Math.max(0, timeoutMs));
+        Set<String> exempt = Set.of(exemptPaths);
+        before((req, res) -> {
+            // Las conexiones WebSocket pasan por estos filtros al negociar el upgrade
+            if (exempt.contains(req.pathInfo()) || "websocket".equalsIgnoreCase(req.headers("Upgrade"))) {
+                return;
+            }
+            if (!limiter.acquire()) {
+                limiter.rejected.increment();
+                res.type("application/json");
+                res.header("Retry-After", "1");
+                halt(503, limiter.rejection);
+            }
+            req.attribute(PERMIT_ATTRIBUTE, Boolean.TRUE);
+        });
+        // afterAfter se ejecuta también tras un halt o una excepción: solo libera si se obtuvo el permiso
+        afterAfter((req, res) -> {
+            if (req.attribute(PERMIT_ATTRIBUTE) != null) {
+                req.raw().removeAttribute(PERMIT_ATTRIBUTE);
+                limiter.permits.release();
+            }
+        });
+        return limiter;
+    }
+
+    private boolean acquire() throws InterruptedException {
+        if (permits.tryAcquire()) {
+            return true;
+        }
+        return timeoutNanos > 0 && permits.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return maximum number of requests handled at the same time
+     */
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    /**
+     * @return requests being handled right now
+     */
+    public int getInFlight() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    /**
+     * @return requests answered with 503 because no permit was free in time
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+}
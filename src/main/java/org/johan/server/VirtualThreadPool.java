@@ -0,0 +1,137 @@
+package org.johan.server;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+/**
+ * Jetty thread pool that starts one virtual thread per task instead of
+ * reusing a bounded set of platform threads.
+ * <p>
+ * Jetty 9.4 (the version embedded by Spark) has no virtual thread support
+ * of its own, so every task it executes (acceptors, selectors, HTTP request
+ * handling and WebSocket frame dispatch) runs on a fresh virtual thread. A
+ * handler blocked on the write-ahead log fsync, a template render or a slow
+ * WebSocket write then parks its virtual thread and frees the carrier.
+ * </p>
+ * <p>
+ * The pool never refuses work while running; bound the number of requests
+ * in progress with {@link ConcurrencyLimiter}. Virtual threads need Java 21:
+ * the API is looked up at runtime so the application still builds and runs
+ * on Java 17, where {@link #isSupported()} is false.
+ * </p>
+ */
+public final class VirtualThreadPool extends AbstractLifeCycle implements ThreadPool {
+
+    private static final ThreadFactory FACTORY = virtualThreadFactory("jetty-vt-");
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final Object joinLock = new Object();
+    private volatile boolean shutdown;
+
+    /**
+     * @return true when the running JVM supports virtual threads
+     */
+    public static boolean isSupported() {
+        return FACTORY != null;
+    }
+
+    /**
+     * @throws UnsupportedOperationException when the JVM has no virtual threads
+     */
+    public VirtualThreadPool() {
+        if (FACTORY == null) {
+            throw new UnsupportedOperationException("Los hilos virtuales requieren Java 21 o superior");
+        }
+    }
+
+    // Thread.ofVirtual().name(prefix, 0).factory(), sin depender de Java 21 al compilar
+    private static ThreadFactory virtualThreadFactory(String prefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+            Method factory = builderType.getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void execute(Runnable job) {
+        if (shutdown) {
+            throw new RejectedExecutionException("Pool de hilos virtuales detenido");
+        }
+        active.incrementAndGet();
+        try {
+            FACTORY.newThread(() -> {
+                try {
+                    job.run();
+                } finally {
+                    if (active.decrementAndGet() == 0) {
+                        synchronized (joinLock) {
+                            joinLock.notifyAll();
+                        }
+                    }
+                }
+            }).start();
+        } catch (RuntimeException | Error e) {
+            active.decrementAndGet();
+            throw e;
+        }
+    }
+
+    @Override
+    protected void doStart() throws Exception {
+        shutdown = false;
+        super.doStart();
+    }
+
+    /** Las tareas en curso terminan por su cuenta (Jetty ya cerró conectores y sesiones). */
+    @Override
+    protected void doStop() throws Exception {
+        shutdown = true;
+        super.doStop();
+    }
+
+    /**
+     * Wait until every running task has finished.
+     */
+    @Override
+    public void join() throws InterruptedException {
+        synchronized (joinLock) {
+            while (active.get() > 0) {
+                joinLock.wait();
+            }
+        }
+    }
+
+    /**
+     * @return tasks currently running (one virtual thread each)
+     */
+    @Override
+    public int getThreads() {
+        return active.get();
+    }
+
+    /** Los hilos virtuales no se reutilizan: nunca hay hilos ociosos. */
+    @Override
+    public int getIdleThreads() {
+        return 0;
+    }
+
+    @Override
+    public boolean isLowOnThreads() {
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "VirtualThreadPool[active=" + active.get() + "]";
+    }
+}
@@ -0,0 +1,359 @@
+package org.johan.services;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.johan.auction.Bid;
+import org.johan.auction.BidEngine;
+import org.johan.auction.TimerWheel;
+import org.johan.exceptions.ConflictException;
+import org.johan.exceptions.NotFoundException;
+import org.johan.exceptions.ValidationException;
+import org.johan.metrics.LatencyHistogram;
+import org.johan.models.AuctionLot;
+import org.johan.models.Item;
+import org.johan.models.Offer;
+import org.johan.storage.DurableStore;
+import org.johan.storage.Journal;
+import org.johan.websocket.PriceWebSocket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Auction lots: one per item, open until its end time.
+ * <p>
+ * The end of every open lot is a {@link TimerWheel} timeout, so millions of
+ * lots cost one small object each and a single timer thread. When a lot
+ * expires its order book is closed (the best bid is final), the offer with
+ * that bid is marked as the winner, the item is marked unavailable and a
+ * {@code CLOSED:ITEM_ID:PRICE} event is pushed to the WebSocket clients
+ * following the item. The closing work runs on a small pool, never on the
+ * timer thread.
+ * </p>
+ * <p>
+ * Soft close: a bid that can win in the last {@code softCloseMs} of a lot
+ * pushes its end to {@code softCloseMs} after the bid, so sniping in the
+ * last second leaves the other bidders time to answer. The timer is not
+ * touched on the bid path; when it fires it finds the later end and is
+ * scheduled again.
+ * </p>
+ * <p>
+ * Lots are recorded in the {@link Journal}. Open lots recovered from disk
+ * are scheduled again by {@link #start()}; the ones that ended while the
+ * server was down are closed right away.
+ * </p>
+ */
+public class AuctionService {
+
+    private static final Logger log = LoggerFactory.getLogger(AuctionService.class);
+
+    /** Name of the lots in the journal. */
+    static final String STORE = "lots";
+
+    /** Length of a timer tick when none is configured (firing precision). */
+    public static final long DEFAULT_TICK_MS = 5;
+
+    /** Buckets of the timer wheel when none is configured. */
+    public static final int DEFAULT_WHEEL_SIZE = 8192;
+
+    /** Final stretch in which a bid extends the auction, when none is configured. */
+    public static final long DEFAULT_SOFT_CLOSE_MS = 30_000;
+
+    private final ItemService itemService;
+    private final BidEngine bidEngine;
+    private final OfferService offerService;
+    private final Journal journal;
+    private final TimerWheel wheel;
+    private final long softCloseMs;
+
+    private final ConcurrentHashMap<String, AuctionLot> lots = new ConcurrentHashMap<>();
+    private final Collection<AuctionLot> lotView = Collections.unmodifiableCollection(lots.values());
+    private final ConcurrentHashMap<String, TimerWheel.Timeout> timers = new ConcurrentHashMap<>();
+    private final LongAdder closed = new LongAdder();
+    private final LongAdder extended = new LongAdder();
+    private final LatencyHistogram closeLag = new LatencyHistogram();
+
+    public AuctionService(ItemService itemService, BidEngine bidEngine, OfferService offerService) {
+        this(itemService, bidEngine, offerService, Journal.disabled(),
+                newWheel(DEFAULT_TICK_MS, DEFAULT_WHEEL_SIZE, 1), DEFAULT_SOFT_CLOSE_MS);
+    }
+
+    /**
+     * @param wheel       timer wheel for the end of the lots (see {@link #newWheel})
+     * @param softCloseMs a bid this close to the end moves the end this far from
+     *                    the bid (anti-sniping; 0 = fixed end times)
+     */
+    public AuctionService(ItemService itemService, BidEngine bidEngine, OfferService offerService,
+                          Journal journal, TimerWheel wheel, long softCloseMs) {
+        this.itemService = itemService;
+        this.bidEngine = bidEngine;
+        this.offerService = offerService;
+        this.journal = journal;
+        this.wheel = wheel;
+        this.softCloseMs = Math.max(0, softCloseMs);
+        journal.register(STORE, new LotStore());
+        bidEngine.setBidListener(this::beforeBid);
+    }
+
+    /**
+     * Timer wheel that closes lots on a pool of daemon threads.
+     *
+     * @param tickMs       length of a tick in milliseconds
+     * @param wheelSize    number of buckets
+     * @param closeThreads threads that close the expired lots
+     * @return the wheel (its timer thread starts with the first lot)
+     */
+    public static TimerWheel newWheel(long tickMs, int wheelSize, int closeThreads) {
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService closer = Executors.newFixedThreadPool(Math.max(1, closeThreads), r -> {
+            Thread t = new Thread(r, "auction-close-" + threads.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        return new TimerWheel("auction-timer", tickMs, wheelSize, closer);
+    }
+
+    /**
+     * Schedule the open lots recovered from the journal. Call once, after
+     * {@link Journal#recover()}; lots whose end time has passed close now.
+     */
+    public void start() {
+        int scheduled = 0;
+        for (AuctionLot lot : lots.values()) {
+            if (lot.isOpen()) {
+                schedule(lot);
+                scheduled++;
+            } else {
+                // Una subasta cerrada no vuelve a aceptar pujas tras reiniciar
+                bidEngine.closeBook(lot.getItemId());
+            }
+        }
+        log.atInfo().addKeyValue("open", scheduled).addKeyValue("closed", lots.size() - scheduled)
+                .log("Subastas recuperadas");
+    }
+
+    /**
+     * Open the auction of an item.
+     *
+     * @param itemId item to auction
+     * @param endsAt end time in epoch milliseconds
+     * @return the new lot
+     * @throws ValidationException when the end time is not in the future
+     * @throws NotFoundException   when the item does not exist
+     * @throws ConflictException   when the item is unavailable or already has a lot
+     */
+    public AuctionLot openLot(String itemId, long endsAt) {
+        if (endsAt <= System.currentTimeMillis()) {
+            throw new ValidationException("La subasta debe terminar en el futuro");
+        }
+        Item item = itemService.getItemById(itemId);
+        if (item == null) {
+            throw new NotFoundException("Item no encontrado: " + itemId);
+        }
+        if (!item.isAvailable()) {
+            throw new ConflictException("El item " + itemId + " no está disponible");
+        }
+        AuctionLot lot = new AuctionLot(itemId, endsAt);
+        AuctionLot stored = journal.put(STORE, itemId, () -> {
+            if (lots.putIfAbsent(itemId, lot) != null) {
+                throw new ConflictException("Ya existe una subasta para el item: " + itemId);
+            }
+            return lot;
+        });
+        schedule(stored);
+        return stored;
+    }
+
+    /**
+     * @param itemId item identifier
+     * @return the lot of the item, or {@code null} when it was never auctioned
+     */
+    public AuctionLot getLot(String itemId) {
+        return itemId != null ? lots.get(itemId) : null;
+    }
+
+    /**
+     * @return read-only view of all lots, open and closed (weakly consistent)
+     */
+    public Collection<AuctionLot> getLots() {
+        return lotView;
+    }
+
+    /**
+     * @return lots still taking bids
+     */
+    public int getOpenLots() {
+        return timers.size();
+    }
+
+    /**
+     * @return lots closed since the server started
+     */
+    public long getClosedLots() {
+        return closed.sum();
+    }
+
+    /**
+     * @return end times moved by bids in the final stretch
+     */
+    public long getExtensions() {
+        return extended.sum();
+    }
+
+    /**
+     * @return delay between the end time of each lot and its closing
+     */
+    public LatencyHistogram closeLag() {
+        return closeLag;
+    }
+
+    /**
+     * @return the wheel holding the end times
+     */
+    public TimerWheel wheel() {
+        return wheel;
+    }
+
+    private void schedule(AuctionLot lot) {
+        String itemId = lot.getItemId();
+        long endsAt = lot.getEndsAt();
+        long delay = endsAt - System.currentTimeMillis();
+        TimerWheel.Timeout timeout = wheel.schedule(() -> expire(itemId, endsAt), delay, TimeUnit.MILLISECONDS);
+        TimerWheel.Timeout previous = timers.put(itemId, timeout);
+        if (previous != null) {
+            previous.cancel();
+        }
+    }
+
+    /**
+     * Soft close, called by the {@link BidEngine} before a bid that can win:
+     * a bid in the last {@code softCloseMs} moves the end to {@code softCloseMs}
+     * from now, and a bid after the end time is rejected even if the timer has
+     * not fired yet. Far from the end it is a map lookup and a volatile read.
+     */
+    private void beforeBid(String itemId) {
+        AuctionLot lot = lots.get(itemId);
+        if (lot == null || !lot.isOpen()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long endsAt = lot.getEndsAt();
+        if (endsAt > now && endsAt - now > softCloseMs) {
+            return;
+        }
+        // Excluye el cierre: o la puja alarga la subasta antes, o la encuentra cerrada
+        synchronized (lot) {
+            if (!lot.isOpen()) {
+                return;
+            }
+            if (lot.getEndsAt() <= now) {
+                throw new ConflictException("La subasta de " + itemId + " ha terminado");
+            }
+            if (lot.getEndsAt() - now <= softCloseMs) {
+                lot.extendTo(now + softCloseMs);
+                extended.increment();
+            }
+        }
+        // El temporizador no se toca: al vencer ve el nuevo final y se reprograma
+    }
+
+    // En el hilo de cierre
+    private void expire(String itemId, long scheduledEnd) {
+        AuctionLot lot = lots.get(itemId);
+        if (lot == null || !lot.isOpen()) {
+            return;
+        }
+        try {
+            if (!close(lot)) {
+                // Alargada por pujas de última hora: se guarda el nuevo final y se vuelve a programar
+                if (lot.getEndsAt() != scheduledEnd) {
+                    journal.put(STORE, itemId, () -> lot.isOpen() ? lot : null);
+                }
+                schedule(lot);
+            }
+        } catch (RuntimeException e) {
+            log.atError().addKeyValue("itemId", itemId).setCause(e).log("No se pudo cerrar la subasta");
+        }
+    }
+
+    // false si el final se ha movido y todavía no toca cerrar
+    private boolean close(AuctionLot lot) {
+        String itemId = lot.getItemId();
+        Bid finalBid;
+        synchronized (lot) {
+            if (!lot.isOpen()) {
+                return true;
+            }
+            if (lot.getEndsAt() > System.currentTimeMillis()) {
+                return false;
+            }
+            // A partir de aquí ninguna puja puede superar a la ganadora
+            finalBid = bidEngine.closeBook(itemId);
+            long closedAt = System.currentTimeMillis();
+            boolean sold = finalBid.sequence() > 0;
+            Offer winning = offerService.finalizeWinner(finalBid);
+            // Primero el item: si se cae antes de guardar el lote, se vuelve a cerrar al arrancar
+            Item item = itemService.getItemById(itemId);
+            if (item != null && item.isAvailable()) {
+                itemService.setItemAvailable(itemId, false);
+            }
+            journal.put(STORE, itemId, () -> {
+                lot.close(sold ? finalBid.bidder() : null, winning != null ? winning.getId() : null,
+                        finalBid.amount(), closedAt);
+                return lot;
+            });
+            timers.remove(itemId);
+        }
+        closed.increment();
+        closeLag.record(TimeUnit.MILLISECONDS.toNanos(lot.getClosedAt() - lot.getEndsAt()));
+
+        Item item = itemService.getItemById(itemId);
+        PriceWebSocket.broadcastEvent(itemId, item != null ? item.getCategory() : null,
+                PriceWebSocket.closedMessage(itemId, lot.getWinner() != null ? lot.getFinalPrice() : null));
+        log.atInfo().addKeyValue("itemId", itemId).addKeyValue("winner", lot.getWinner())
+                .addKeyValue("finalPrice", lot.getFinalPrice())
+                .addKeyValue("lagMs", lot.getClosedAt() - lot.getEndsAt())
+                .log("Subasta cerrada");
+        return true;
+    }
+
+    /** Lots as seen by the journal (snapshots and recovery). */
+    private final class LotStore implements DurableStore<AuctionLot> {
+        @Override
+        public Class<AuctionLot> type() {
+            return AuctionLot.class;
+        }
+
+        @Override
+        public Collection<AuctionLot> values() {
+            return lotView;
+        }
+
+        @Override
+        public void clear() {
+            lots.clear();
+        }
+
+        // Solo se guarda el lote: los plazos se programan en start()
+        @Override
+        public void restore(String id, AuctionLot value) {
+            lots.put(id, value);
+        }
+
+        @Override
+        public void restoreRemove(String id) {
+            lots.remove(id);
+        }
+
+        @Override
+        public String idOf(AuctionLot value) {
+            return value.getItemId();
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package org.johan.services;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.johan.models.ImportJob;
+import org.johan.models.Item;
+import org.johan.models.Money;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Streaming bulk import of catalog files in the {@code data/items.json}
+ * format.
+ * <p>
+ * The file is read with Gson's {@link JsonReader} one array element at a
+ * time; only the current element and the pending batch are in memory, so
+ * peak memory does not depend on the size of the file. Items are inserted
+ * through {@link ItemService#upsertItems(List)} in batches of
+ * {@code batchSize}: an existing id is replaced, a new one is added.
+ * </p>
+ * <p>
+ * An element that is not a valid item (wrong field types, no name, no
+ * price) is counted and skipped. Malformed JSON cannot be resynchronized,
+ * so it ends the import; everything imported before stays.
+ * </p>
+ */
+public class CatalogImporter {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogImporter.class);
+
+    /** Elementos entre dos mensajes de progreso en el log. */
+    private static final int PROGRESS_EVERY = 50_000;
+
+    private final ItemService itemService;
+    private final int batchSize;
+    private final Gson gson = new Gson();
+    private final Map<String, ImportJob> jobs = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong();
+
+    /**
+     * @param itemService service receiving the items
+     * @param batchSize   items inserted per batch
+     */
+    public CatalogImporter(ItemService itemService, int batchSize) {
+        this.itemService = itemService;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Import a JSON array of items read from {@code in}, on the calling thread.
+     *
+     * @param in     JSON source (not closed)
+     * @param source description shown in the job (file name, "http")
+     * @return the finished job ({@link ImportJob.Status#DONE} or {@link ImportJob.Status#FAILED})
+     */
+    public ImportJob importItems(Reader in, String source) {
+        ImportJob job = newJob(source);
+        run(job, in);
+        return job;
+    }
+
+    /**
+     * Import a file in a background thread.
+     *
+     * @param file JSON file
+     * @return the job, already registered and running
+     */
+    public ImportJob importFileAsync(Path file) {
+        ImportJob job = newJob(file.toString());
+        Thread worker = new Thread(() -> {
+            try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                run(job, in);
+            } catch (IOException e) {
+                job.fail("No se pudo leer " + file + ": " + e.getMessage());
+                log.warn("Importación {} fallida: {}", job.getId(), job.getFailure());
+            }
+        }, "catalog-import-" + job.getId());
+        worker.setDaemon(true);
+        worker.start();
+        return job;
+    }
+
+    /**
+     * @return every import since startup, running or finished
+     */
+    public List<ImportJob> getJobs() {
+        List<ImportJob> all = new ArrayList<>(jobs.values());
+        all.sort((a, b) -> Long.compare(Long.parseLong(a.getId()), Long.parseLong(b.getId())));
+        return all;
+    }
+
+    /**
+     * @param id job id
+     * @return the job, or {@code null} when unknown
+     */
+    public ImportJob getJob(String id) {
+        return id != null ? jobs.get(id) : null;
+    }
+
+    private ImportJob newJob(String source) {
+        ImportJob job = new ImportJob(String.valueOf(nextId.incrementAndGet()), source);
+        jobs.put(job.getId(), job);
+        return job;
+    }
+
+    private void run(ImportJob job, Reader in) {
+        long start = System.nanoTime();
+        List<Item> batch = new ArrayList<>(batchSize);
+        long index = 0;
+        try {
+            JsonReader reader = new JsonReader(in);
+            reader.beginArray();
+            while (reader.hasNext()) {
+                // El elemento se lee entero (errores de sintaxis abortan); su conversión
+                // a Item puede fallar sin perder la posición en el fichero
+                JsonElement element = JsonParser.parseReader(reader);
+                job.recordProcessed();
+                String error = toItem(element, batch);
+                if (error != null) {
+                    job.recordError(index, error);
+                }
+                index++;
+                if (batch.size() == batchSize) {
+                    flush(job, batch);
+                }
+                if (index % PROGRESS_EVERY == 0) {
+                    log.atInfo().addKeyValue("job", job.getId()).addKeyValue("processed", index)
+                            .addKeyValue("errors", job.getErrors()).log("Importando catálogo");
+                }
+            }
+            reader.endArray();
+            if (reader.peek() != JsonToken.END_DOCUMENT) {
+                throw new JsonParseException("Contenido después del array de items");
+            }
+            flush(job, batch);
+            job.finish();
+        } catch (IOException | JsonParseException | IllegalStateException e) {
+            flush(job, batch);
+            job.fail("JSON inválido cerca del elemento #" + index + ": " + e.getMessage());
+        }
+        log.atInfo().addKeyValue("job", job.getId()).addKeyValue("source", job.getSource())
+                .addKeyValue("status", job.getStatus()).addKeyValue("processed", job.getProcessed())
+                .addKeyValue("created", job.getCreated()).addKeyValue("updated", job.getUpdated())
+                .addKeyValue("errors", job.getErrors())
+                .addKeyValue("ms", (System.nanoTime() - start) / 1_000_000)
+                .log("Importación de catálogo terminada");
+    }
+
+    /**
+     * Convert one element and add it to the batch.
+     *
+     * @return the reason it was rejected, or {@code null} when it was added
+     */
+    private String toItem(JsonElement element, List<Item> batch) {
+        if (!element.isJsonObject()) {
+            return "se esperaba un objeto";
+        }
+        ItemService.ItemJson ij;
+        try {
+            ij = gson.fromJson(element, ItemService.ItemJson.class);
+        } catch (JsonParseException | NumberFormatException e) {
+            return "tipo de campo inválido (" + e.getMessage() + ")";
+        }
+        if (ij.name == null || ij.name.isBlank()) {
+            return "el nombre es obligatorio";
+        }
+        Money price;
+        try {
+            price = Money.parseLenient(ij.price != null ? ij.price : "");
+        } catch (NumberFormatException e) {
+            return "precio inválido: " + ij.price;
+        }
+        batch.add(ItemService.toItem(ij, price));
+        return null;
+    }
+
+    private void flush(ImportJob job, List<Item> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        int created = itemService.upsertItems(batch);
+        job.recordBatch(created, batch.size() - created);
+        batch.clear();
+    }
+}
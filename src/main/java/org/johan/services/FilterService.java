@@ -1,9 +1,18 @@
 package org.johan.services;
 
+import org.johan.exceptions.ValidationException;
 import org.johan.models.Item;
+import org.johan.models.ItemPage;
+import org.johan.models.Money;
+import org.johan.storage.ItemCatalog;
+import org.johan.storage.ItemIndex;
+import org.johan.storage.TextIndex;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.PrimitiveIterator;
 
 /**
  * FilterService
@@ -13,9 +22,32 @@ import java.util.stream.Collectors;
  *
  * This service can be used by ItemController or ItemService to
  * respond to user queries with specific filtering options.
+ *
+ * When the items live in an {@link ItemCatalog} the filters are answered
+ * from its secondary indexes: a small query planner estimates how many
+ * items each index would yield and drives the query from the most
+ * selective one, checking the remaining filters on those candidates only.
+ * The same planner backs the keyset-paginated listings
+ * ({@link #findPage}), so the cost of a page does not depend on its depth,
+ * and the full-text search ({@link #searchPage}), where the word index
+ * competes with the other three.
  */
 public class FilterService {
 
+    /**
+     * Index chosen by the planner to produce the candidate items.
+     */
+    enum AccessPath {
+        CATEGORY, PRICE, AVAILABILITY, TEXT, FULL_SCAN
+    }
+
+    /**
+     * Relative cost of a candidate produced by the price index (tree walk,
+     * plus re-sorting into insertion order) compared with one produced by
+     * a bitset or ordinal list. Measured with ServicesBenchmark.
+     */
+    private static final int PRICE_CANDIDATE_COST = 4;
+
     /**
      * Applies category and price filters to a list of items.
      *
@@ -26,14 +58,307 @@ public class FilterService {
      * @param available - Availability filter (can be null)
      * @return Filtered list of items that match the criteria
      */
-    public List<Item> applyFilters(List<Item> items, String category, Double minPrice, Double maxPrice, Boolean available) {
+    public List<Item> applyFilters(List<Item> items, String category, Money minPrice, Money maxPrice, Boolean available) {
+        long min = minPrice != null ? minPrice.minor() : Long.MIN_VALUE;
+        long max = maxPrice != null ? maxPrice.minor() : Long.MAX_VALUE;
+
+        List<Item> result = new ArrayList<>();
+        for (Item item : items) {
+            if (matches(item, category, min, max, available)) {
+                result.add(item);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Applies the same filters using the indexes of an {@link ItemCatalog}.
+     * The cost is proportional to the size of the most selective index
+     * involved, not to the size of the catalog. Results keep the catalog's
+     * insertion order.
+     *
+     * @param catalog - Catalog to query
+     * @param category - Category filter (can be null)
+     * @param minPrice - Minimum price filter (can be null)
+     * @param maxPrice - Maximum price filter (can be null)
+     * @param available - Availability filter (can be null)
+     * @return Filtered list of items that match the criteria
+     */
+    public List<Item> applyFilters(ItemCatalog catalog, String category, Money minPrice, Money maxPrice, Boolean available) {
+        long min = minPrice != null ? minPrice.minor() : Long.MIN_VALUE;
+        long max = maxPrice != null ? maxPrice.minor() : Long.MAX_VALUE;
+        boolean hasPrice = minPrice != null || maxPrice != null;
+
+        return catalog.read(index -> {
+            AccessPath path = plan(index, category, min, max, hasPrice, available);
+            PrimitiveIterator.OfInt ordinals = candidates(index, path, category, min, max, available, -1);
+            if (path == AccessPath.PRICE) {
+                // The price index yields items by price; restore insertion order
+                int[] sorted = drain(ordinals);
+                Arrays.sort(sorted);
+                ordinals = Arrays.stream(sorted).iterator();
+            }
+
+            List<Item> result = new ArrayList<>();
+            while (ordinals.hasNext()) {
+                Item item = index.item(ordinals.nextInt());
+                if (item != null && matches(item, category, min, max, available)) {
+                    result.add(item);
+                }
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Returns one page of filtered items in the requested order, starting
+     * strictly after {@code cursor}.
+     * <p>
+     * For catalog order the planner's candidate stream is resumed directly
+     * at the cursor ordinal. For price order the price index is walked from
+     * the cursor position, unless category or availability is more selective,
+     * in which case those few candidates are sorted by price instead.
+     * </p>
+     *
+     * @param catalog - Catalog to query
+     * @param category - Category filter (can be null)
+     * @param minPrice - Minimum price filter (can be null)
+     * @param maxPrice - Maximum price filter (can be null)
+     * @param available - Availability filter (can be null)
+     * @param sort - Sort order of the listing
+     * @param cursor - Cursor returned with the previous page (can be null)
+     * @param limit - Maximum number of items in the page (must be positive)
+     * @return the page, with a cursor for the next one when more items exist
+     */
+    public ItemPage findPage(ItemCatalog catalog, String category, Money minPrice, Money maxPrice, Boolean available,
+                             ItemSort sort, String cursor, int limit) {
+        long min = minPrice != null ? minPrice.minor() : Long.MIN_VALUE;
+        long max = maxPrice != null ? maxPrice.minor() : Long.MAX_VALUE;
+        boolean hasPrice = minPrice != null || maxPrice != null;
+        ItemCursor after = ItemCursor.decode(cursor, sort);
+
+        return catalog.read(index -> {
+            AccessPath path = plan(index, category, min, max, hasPrice, available);
+            PrimitiveIterator.OfInt ordinals;
+
+            if (sort == ItemSort.ADDED && path != AccessPath.PRICE) {
+                ordinals = candidates(index, path, category, min, max, available, after != null ? after.ordinal() : -1);
+            } else if (sort != ItemSort.ADDED && (path == AccessPath.PRICE || path == AccessPath.FULL_SCAN)) {
+                ordinals = index.priceRangeOrdinals(min, max, sort == ItemSort.PRICE_DESC,
+                        after != null ? after.price() : ItemIndex.NO_POSITION, after != null ? after.ordinal() : -1);
+            } else {
+                // The most selective index is not in the requested order:
+                // sort its (small) candidate set instead
+                ordinals = sortCandidates(index, candidates(index, path, category, min, max, available, -1), sort);
+            }
+
+            List<Item> items = new ArrayList<>(limit);
+            ItemCursor last = null;
+            while (ordinals.hasNext()) {
+                int ordinal = ordinals.nextInt();
+                Item item = index.item(ordinal);
+                if (item == null || !matches(item, category, min, max, available)
+                        || (after != null && !after.isBefore(item.getPrice().minor(), ordinal))) {
+                    continue;
+                }
+                if (items.size() == limit) {
+                    // One more match exists: hand out a cursor for the next page
+                    return new ItemPage(items, last.encode(), limit, sort.param());
+                }
+                items.add(item);
+                last = new ItemCursor(sort, item.getPrice().minor(), ordinal);
+            }
+            return new ItemPage(items, null, limit, sort.param());
+        });
+    }
+
+    /**
+     * Returns one page of the items whose name or description contains every
+     * word of {@code query} (the last word may be incomplete), in catalog
+     * order, starting strictly after {@code cursor}.
+     * <p>
+     * Candidates come from the word index unless the planner finds a more
+     * selective filter (category, price range or availability), in which
+     * case those candidates are checked against the words instead, with a
+     * probe of the word index before the item itself is read.
+     * </p>
+     *
+     * @param catalog - Catalog to query
+     * @param query - Search text (at least one word)
+     * @param category - Category filter (can be null)
+     * @param minPrice - Minimum price filter (can be null)
+     * @param maxPrice - Maximum price filter (can be null)
+     * @param available - Availability filter (can be null)
+     * @param cursor - Cursor returned with the previous page (can be null)
+     * @param limit - Maximum number of items in the page (must be positive)
+     * @return the page, with a cursor for the next one when more items exist
+     * @throws ValidationException when the query has no word or the cursor is invalid
+     */
+    public ItemPage searchPage(ItemCatalog catalog, String query, String category, Money minPrice, Money maxPrice,
+                               Boolean available, String cursor, int limit) {
+        long min = minPrice != null ? minPrice.minor() : Long.MIN_VALUE;
+        long max = maxPrice != null ? maxPrice.minor() : Long.MAX_VALUE;
+        boolean hasPrice = minPrice != null || maxPrice != null;
+        ItemCursor after = ItemCursor.decode(cursor, ItemSort.ADDED);
+        int start = after != null ? after.ordinal() : -1;
+
+        return catalog.read(index -> {
+            TextIndex.Query words = index.textQuery(query);
+            if (words.isBlank()) {
+                throw new ValidationException("La búsqueda debe contener al menos una palabra");
+            }
+            int textCount = words.estimate();
+            AccessPath path = plan(index, category, min, max, hasPrice, available);
+            if (textCount <= candidateCount(index, path, category, min, max, available, textCount)) {
+                path = AccessPath.TEXT;
+            }
+            PrimitiveIterator.OfInt ordinals;
+            if (path == AccessPath.TEXT) {
+                ordinals = words.ordinals(start);
+            } else if (path == AccessPath.PRICE) {
+                // The price index yields items by price; restore insertion order
+                int[] sorted = drain(candidates(index, path, category, min, max, available, -1));
+                Arrays.sort(sorted);
+                ordinals = Arrays.stream(sorted).filter(o -> o > start).iterator();
+            } else {
+                ordinals = candidates(index, path, category, min, max, available, start);
+            }
 
-        return items.stream()
-                .filter(i -> (category == null || i.getCategory().equalsIgnoreCase(category)))
-                .filter(i -> (minPrice == null || i.getPrice() >= minPrice))
-                .filter(i -> (maxPrice == null || i.getPrice() <= maxPrice))
-                .filter(i -> (available == null || i.isAvailable() == available))
-                .collect(Collectors.toList());
+            List<Item> items = new ArrayList<>(limit);
+            ItemCursor last = null;
+            while (ordinals.hasNext()) {
+                int ordinal = ordinals.nextInt();
+                // Probe the word index before touching the item
+                if (path != AccessPath.TEXT && !words.matches(ordinal)) {
+                    continue;
+                }
+                Item item = index.item(ordinal);
+                if (item == null || !matches(item, category, min, max, available)) {
+                    continue;
+                }
+                if (items.size() == limit) {
+                    return new ItemPage(items, last.encode(), limit, ItemSort.ADDED.param());
+                }
+                items.add(item);
+                last = new ItemCursor(ItemSort.ADDED, item.getPrice().minor(), ordinal);
+            }
+            return new ItemPage(items, null, limit, ItemSort.ADDED.param());
+        });
+    }
+
+    /**
+     * Candidates the access path chosen by {@link #plan} would yield, in
+     * the same units as the planner (price candidates weighted). The price
+     * range is only counted up to what the alternative costs.
+     */
+    private static int candidateCount(ItemIndex index, AccessPath path, String category, long min, long max,
+                                      Boolean available, int alternative) {
+        switch (path) {
+            case CATEGORY:
+                return index.categoryCount(category);
+            case AVAILABILITY:
+                return index.availabilityCount(available);
+            case PRICE:
+                int budget = alternative / PRICE_CANDIDATE_COST + 1;
+                return index.countPriceRange(min, max, budget) * PRICE_CANDIDATE_COST;
+            default:
+                return index.liveCount();
+        }
+    }
+
+    /**
+     * Choose the index that yields the fewest candidates. Category and
+     * availability counts are exact and O(1); the price range is counted
+     * only up to the best estimate found so far, weighted by
+     * {@link #PRICE_CANDIDATE_COST} because its candidates are dearer.
+     */
+    AccessPath plan(ItemIndex index, String category, long min, long max, boolean hasPrice, Boolean available) {
+        AccessPath best = AccessPath.FULL_SCAN;
+        int bestCount = index.liveCount();
+
+        if (category != null) {
+            int count = index.categoryCount(category);
+            if (count < bestCount) {
+                best = AccessPath.CATEGORY;
+                bestCount = count;
+            }
+        }
+        if (available != null) {
+            int count = index.availabilityCount(available);
+            if (count < bestCount) {
+                best = AccessPath.AVAILABILITY;
+                bestCount = count;
+            }
+        }
+        int priceBudget = bestCount / PRICE_CANDIDATE_COST;
+        if (hasPrice && priceBudget > 0) {
+            int count = index.countPriceRange(min, max, priceBudget);
+            if (count < priceBudget) {
+                best = AccessPath.PRICE;
+            }
+        }
+        return best;
+    }
+
+    private PrimitiveIterator.OfInt candidates(ItemIndex index, AccessPath path, String category,
+                                               long min, long max, Boolean available, int after) {
+        switch (path) {
+            case CATEGORY:
+                return index.categoryOrdinals(category, after);
+            case AVAILABILITY:
+                return index.availabilityOrdinals(available, after);
+            case PRICE:
+                return index.priceRangeOrdinals(min, max);
+            default:
+                return index.allOrdinals(after);
+        }
+    }
+
+    private static PrimitiveIterator.OfInt sortCandidates(ItemIndex index, PrimitiveIterator.OfInt candidates,
+                                                          ItemSort sort) {
+        int[] ordinals = drain(candidates);
+        if (sort == ItemSort.ADDED) {
+            Arrays.sort(ordinals);
+            return Arrays.stream(ordinals).iterator();
+        }
+        Comparator<Integer> byPrice = Comparator.comparingLong(o -> index.item(o).getPrice().minor());
+        if (sort == ItemSort.PRICE_DESC) {
+            byPrice = byPrice.reversed();
+        }
+        return Arrays.stream(ordinals)
+                .filter(o -> index.item(o) != null)
+                .boxed()
+                .sorted(byPrice.thenComparing(Comparator.naturalOrder()))
+                .mapToInt(Integer::intValue)
+                .iterator();
+    }
+
+    private static int[] drain(PrimitiveIterator.OfInt it) {
+        int[] out = new int[16];
+        int n = 0;
+        while (it.hasNext()) {
+            if (n == out.length) {
+                out = Arrays.copyOf(out, n * 2);
+            }
+            out[n++] = it.nextInt();
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    /**
+     * Checks a single item against all filters. Price bounds are in minor
+     * units ({@code Long.MIN_VALUE}/{@code MAX_VALUE} when absent), so the
+     * comparison is exact.
+     */
+    static boolean matches(Item item, String category, long min, long max, Boolean available) {
+        if (category != null && (item.getCategory() == null || !item.getCategory().equalsIgnoreCase(category))) {
+            return false;
+        }
+        long price = item.getPrice().minor();
+        if (price < min || price > max) {
+            return false;
+        }
+        return available == null || item.isAvailable() == available;
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,83 @@
+package org.johan.services;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import org.johan.exceptions.ValidationException;
+
+/**
+ * Keyset cursor for the paginated item listings: the sort key of the last
+ * item of a page. The next page starts strictly after it, so the cost of a
+ * page does not depend on how deep the client has paged.
+ * <p>
+ * Cursors are opaque to clients (URL-safe Base64) and bound to the sort
+ * order they were issued for.
+ * </p>
+ */
+final class ItemCursor {
+
+    private final ItemSort sort;
+    /** Precio en unidades menores (céntimos). */
+    private final long price;
+    private final int ordinal;
+
+    ItemCursor(ItemSort sort, long price, int ordinal) {
+        this.sort = sort;
+        this.price = price;
+        this.ordinal = ordinal;
+    }
+
+    long price() {
+        return price;
+    }
+
+    int ordinal() {
+        return ordinal;
+    }
+
+    /**
+     * @return true when the row {@code (rowPrice, rowOrdinal)} comes after
+     *         this cursor in its sort order
+     */
+    boolean isBefore(long rowPrice, int rowOrdinal) {
+        if (sort == ItemSort.ADDED) {
+            return rowOrdinal > ordinal;
+        }
+        int cmp = Long.compare(rowPrice, price);
+        if (sort == ItemSort.PRICE_DESC) {
+            cmp = -cmp;
+        }
+        return cmp > 0 || (cmp == 0 && rowOrdinal > ordinal);
+    }
+
+    String encode() {
+        String raw = sort.param() + ":" + price + ":" + ordinal;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param cursor encoded cursor (nullable)
+     * @param sort   sort order of the current request
+     * @return decoded cursor, or {@code null} when no cursor was given
+     * @throws ValidationException when the cursor is malformed or was issued
+     *                             for another sort order
+     */
+    static ItemCursor decode(String cursor, ItemSort sort) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int last = raw.lastIndexOf(':');
+            int first = raw.lastIndexOf(':', last - 1);
+            if (!raw.substring(0, first).equals(sort.param())) {
+                throw new ValidationException("El cursor no corresponde al orden solicitado");
+            }
+            long price = Long.parseLong(raw.substring(first + 1, last));
+            int ordinal = Integer.parseInt(raw.substring(last + 1));
+            return new ItemCursor(sort, price, ordinal);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new ValidationException("Cursor inválido");
+        }
+    }
+}
@@ -1,14 +1,31 @@
 package org.johan.services;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Type;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
 import java.util.UUID;
+import java.util.function.UnaryOperator;
 
+import org.johan.config.AppConfig;
+import org.johan.exceptions.ConflictException;
+import org.johan.exceptions.ValidationException;
 import org.johan.models.Item;
+import org.johan.models.ItemPage;
+import org.johan.models.Money;
+import org.johan.storage.CatalogSnapshot;
+import org.johan.storage.DurableStore;
+import org.johan.storage.ItemCatalog;
+import org.johan.storage.Journal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
@@ -21,14 +38,29 @@ import com.google.gson.reflect.TypeToken;
  * {@link FilterService}), creating new items and updating an item's price.
  * </p>
  * <p>
- * Note: Persistence is not implemented; items are held in-memory in a
- * {@code List<Item>} and initialized with a small sample dataset.
+ * Items are held in-memory in an {@link ItemCatalog} (O(1) lookups by id,
+ * safe for concurrent writers). At startup the catalog comes from the binary
+ * {@link CatalogSnapshot} when one is configured, otherwise from
+ * {@code data/items.json} or a small sample dataset. Every create, update and
+ * delete is then recorded in the {@link Journal}, whose recovery replaces the
+ * initial catalog with the persisted one.
  * </p>
  */
 public class ItemService {
 
-    /** In-memory list that stores the application's items. */
-    private List<Item> items = new ArrayList<>();
+    private static final Logger log = LoggerFactory.getLogger(ItemService.class);
+
+    /** Upper bound for the {@code limit} of a paginated listing. */
+    public static final int MAX_PAGE_SIZE = 500;
+
+    /** Name of the items in the journal. */
+    static final String STORE = "items";
+
+    /** Concurrent in-memory store that holds the application's items. */
+    private final ItemCatalog items = new ItemCatalog();
+
+    /** Write-ahead log receiving every change (disabled by default). */
+    private final Journal journal;
 
     // 1. CONECTAMOS EL NUEVO SERVICIO DE FILTROS
     /**
@@ -43,13 +75,28 @@ public class ItemService {
      * {@link #getAllItems(String, String, String, String)}.
      */
     public ItemService() {
+        this(Journal.disabled());
+    }
+
+    /**
+     * Construct an ItemService whose changes are recorded in {@code journal}.
+     * The sample items are loaded first; {@link Journal#recover()} then
+     * replaces them with the persisted catalog when one exists.
+     *
+     * @param journal journal receiving creates, updates and deletes
+     */
+    public ItemService(Journal journal) {
+        this.journal = journal;
         // Initialize the filter service
         this.filterService = new FilterService();
 
-        // Attempt to load items from classpath resource data/items.json. If the
-        // resource is missing or parsing fails we fall back to an internal
-        // sample dataset (so the application remains functional).
-        boolean loaded = loadItemsFromJson();
+        // Attempt to load items from the binary catalog snapshot, then from the
+        // classpath resource data/items.json. If the resource is missing or
+        // parsing fails we fall back to an internal sample dataset (so the
+        // application remains functional).
+        Path snapshot = catalogSnapshotPath();
+        boolean fromSnapshot = loadItemsFromSnapshot(snapshot);
+        boolean loaded = fromSnapshot || loadItemsFromJson();
         if (!loaded) {
             // Sample dataset used by the demo application (fallback)
             items.add(new Item("item1", "Gorra autografiada por Peso Pluma", parsePrice("$621.34 USD"), "Memorabilia",
@@ -67,6 +114,20 @@ public class ItemService {
             items.add(new Item("item7", "Guitarra autografiada por Coldplay", parsePrice("$458.91 USD"), "Instrumentos",
                     "coldplay.png"));
         }
+        if (snapshot != null && !fromSnapshot) {
+            // Primer arranque con snapshot configurado: se genera para el siguiente
+            try {
+                saveCatalogSnapshot(snapshot);
+            } catch (IOException e) {
+                log.warn("No se pudo escribir el snapshot del catálogo {}: {}", snapshot, e.getMessage());
+            }
+        }
+        journal.register(STORE, new ItemStore());
+    }
+
+    private static Path catalogSnapshotPath() {
+        String file = AppConfig.getString("collectors.catalog.snapshot", null);
+        return file != null && !file.isBlank() ? Path.of(file) : null;
     }
 
     /**
@@ -75,8 +136,8 @@ public class ItemService {
      * the fields: id, name and price (price as a string such as "$621.34 USD").
      * Optional fields are description, category, imageUrl and available.
      *
-     * @return true when items were successfully loaded (and added to
-     *         {@link #items}), false otherwise.
+     * @return true when items were successfully loaded (and added to the
+     *         catalog), false otherwise.
      */
     private boolean loadItemsFromJson() {
         InputStream is = getClass().getClassLoader().getResourceAsStream("data/items.json");
@@ -90,26 +151,11 @@ public class ItemService {
                 return false;
             }
 
-            Gson gson = new Gson();
-            Type listType = new TypeToken<List<ItemJson>>() {
-            }.getType();
-            List<ItemJson> list = gson.fromJson(json, listType);
-            if (list == null || list.isEmpty()) {
+            List<Item> parsed = parseItemsJson(json);
+            if (parsed.isEmpty()) {
                 return false;
             }
-
-            for (ItemJson ij : list) {
-                String id = ij.id != null ? ij.id : UUID.randomUUID().toString();
-                String name = ij.name != null ? ij.name : "";
-                double price = parsePrice(ij.price);
-                String category = ij.category != null ? ij.category : "Uncategorized";
-                String imageUrl = ij.imageUrl != null ? ij.imageUrl : null;
-                Item item = new Item(id, name, price, category, imageUrl);
-                if (ij.available != null) {
-                    item.setAvailable(ij.available);
-                }
-                items.add(item);
-            }
+            items.addAll(parsed);
 
             return true;
         } catch (Exception e) {
@@ -119,10 +165,87 @@ public class ItemService {
         }
     }
 
+    /**
+     * Convert the JSON array format of {@code data/items.json} into items.
+     * Missing ids are generated and missing categories become
+     * "Uncategorized".
+     *
+     * @param json JSON array of item objects
+     * @return the parsed items (empty when the array is empty or null)
+     */
+    public static List<Item> parseItemsJson(String json) {
+        Gson gson = new Gson();
+        Type listType = new TypeToken<List<ItemJson>>() {
+        }.getType();
+        List<ItemJson> list = gson.fromJson(json, listType);
+        List<Item> result = new ArrayList<>(list != null ? list.size() : 0);
+        if (list == null) {
+            return result;
+        }
+        for (ItemJson ij : list) {
+            result.add(toItem(ij, parsePrice(ij.price)));
+        }
+        return result;
+    }
+
+    /**
+     * Load the catalog from the binary snapshot configured with
+     * {@code collectors.catalog.snapshot}, when the file exists.
+     *
+     * @param snapshot configured snapshot file (nullable)
+     * @return true when items were loaded from the snapshot
+     */
+    private boolean loadItemsFromSnapshot(Path snapshot) {
+        if (snapshot == null || !Files.isRegularFile(snapshot)) {
+            return false;
+        }
+        try {
+            long start = System.nanoTime();
+            List<Item> loaded = CatalogSnapshot.read(snapshot);
+            items.addAll(loaded);
+            log.atInfo().addKeyValue("items", loaded.size()).addKeyValue("file", snapshot)
+                    .addKeyValue("ms", (System.nanoTime() - start) / 1_000_000)
+                    .log("Catálogo cargado del snapshot binario");
+            return true;
+        } catch (IOException e) {
+            // Snapshot ilegible: se vuelve a generar desde el JSON
+            log.warn("No se pudo leer el snapshot del catálogo {}: {}", snapshot, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Write the current catalog as a binary snapshot that
+     * {@code collectors.catalog.snapshot} can load at the next start.
+     *
+     * @param file target file
+     * @return number of items written
+     * @throws IOException when the file cannot be written
+     */
+    public int saveCatalogSnapshot(Path file) throws IOException {
+        return CatalogSnapshot.write(file, items.snapshot());
+    }
+
+    /**
+     * Build an item from its JSON form, filling in the defaults used by
+     * {@code data/items.json} (generated id, "Uncategorized").
+     */
+    static Item toItem(ItemJson ij, Money price) {
+        String id = ij.id != null ? ij.id : UUID.randomUUID().toString();
+        String name = ij.name != null ? ij.name : "";
+        String category = ij.category != null ? ij.category : "Uncategorized";
+        String imageUrl = ij.imageUrl != null ? ij.imageUrl : null;
+        Item item = new Item(id, name, ij.description, price, category, imageUrl);
+        if (ij.available != null) {
+            item.setAvailable(ij.available);
+        }
+        return item;
+    }
+
     /**
      * Small helper type used only to parse the incoming JSON structure.
      */
-    private static class ItemJson {
+    static class ItemJson {
         String id;
         String name;
         String description;
@@ -134,23 +257,24 @@ public class ItemService {
 
     /**
      * Helper method that converts a human readable price such as
-     * "$621.34 USD" into a primitive double value 621.34.
+     * "$621.34 USD" into {@link Money} (62134 cents, USD), without a regex
+     * or an intermediate string (see {@link Money#parseLenient(CharSequence)}).
      *
      * @param priceStr text representation of the price, may contain currency
-     *                 symbols and text. If {@code null} or not parseable, the
-     *                 method returns 0.0.
-     * @return parsed numeric price as {@code double}, or 0.0 on invalid input
+     *                 symbols and text. If {@code null} or not parseable
+     *                 (including a currency other than
+     *                 {@link Money#DEFAULT_CURRENCY}), the method returns
+     *                 {@link Money#ZERO}.
+     * @return parsed price, or zero on invalid input
      */
-    private double parsePrice(String priceStr) {
+    static Money parsePrice(String priceStr) {
         if (priceStr == null)
-            return 0.0;
-        String cleaned = priceStr.replaceAll("[^\\d.]", "");
-        if (cleaned.isEmpty())
-            return 0.0;
+            return Money.ZERO;
         try {
-            return Double.parseDouble(cleaned);
+            return Money.parseLenient(priceStr);
         } catch (NumberFormatException e) {
-            return 0.0;
+            log.warn("Precio inválido, se usa 0: {} ({})", priceStr, e.getMessage());
+            return Money.ZERO;
         }
     }
 
@@ -166,40 +290,179 @@ public class ItemService {
      * HTTP query parameters). This method attempts to parse the numeric and
      * boolean values; invalid numeric values are ignored (that filter is
      * skipped). The actual filter implementation is delegated to
-     * {@link FilterService#applyFilters(List, String, Double, Double, Boolean)}.
+     * {@link FilterService#applyFilters(ItemCatalog, String, Money, Money, Boolean)}.
      * </p>
      *
-     * @param categoria  category name to filter by (nullable)
+     * @param categoria  category name to filter by (nullable, empty means no
+     *                   category filter)
      * @param precioMin  minimum price as a String (nullable). If parseable it
-     *                   will be converted to {@link Double} and applied.
+     *                   will be converted to {@link Money} and applied.
      * @param precioMax  maximum price as a String (nullable). If parseable it
-     *                   will be converted to {@link Double} and applied.
+     *                   will be converted to {@link Money} and applied.
      * @param disponible availability flag as a String (nullable). Expected
      *                   values are "true" or "false" (case-insensitive).
      * @return list of items matching the provided filters (never {@code null})
      */
     public List<Item> getAllItems(String categoria, String precioMin, String precioMax, String disponible) {
+        return findItems(emptyToNull(categoria), parseOptionalMoney(precioMin), parseOptionalMoney(precioMax),
+                parseOptionalBoolean(disponible));
+    }
+
+    /**
+     * Paginated variant of {@link #getAllItems(String, String, String, String)}
+     * used by the shop page: same string filters, one page of results.
+     *
+     * @param categoria  category name to filter by (nullable)
+     * @param precioMin  minimum price as a String (nullable, ignored if invalid)
+     * @param precioMax  maximum price as a String (nullable, ignored if invalid)
+     * @param disponible availability flag as a String (nullable)
+     * @param sort       sort order of the listing
+     * @param cursor     {@code nextCursor} of the previous page (nullable)
+     * @param limit      page size
+     * @return the requested page
+     */
+    public ItemPage getItemsPage(String categoria, String precioMin, String precioMax, String disponible,
+                                 ItemSort sort, String cursor, int limit) {
+        return findPage(emptyToNull(categoria), parseOptionalMoney(precioMin), parseOptionalMoney(precioMax),
+                parseOptionalBoolean(disponible), sort, cursor, limit);
+    }
 
-        Double min = null;
-        Double max = null;
-        Boolean available = null;
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
 
+    /** Invalid numeric filters are ignored: treated as absent. */
+    private static Money parseOptionalMoney(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
         try {
-            if (precioMin != null && !precioMin.isEmpty()) {
-                min = Double.parseDouble(precioMin);
-            }
-            if (precioMax != null && !precioMax.isEmpty()) {
-                max = Double.parseDouble(precioMax);
-            }
-            if (disponible != null && !disponible.isEmpty()) {
-                available = Boolean.parseBoolean(disponible);
-            }
+            return Money.parse(value);
         } catch (NumberFormatException e) {
-            // Ignore invalid numeric filters: treat them as absent
+            return null;
         }
+    }
+
+    private static Boolean parseOptionalBoolean(String value) {
+        return value == null || value.isEmpty() ? null : Boolean.parseBoolean(value);
+    }
 
+    /**
+     * Typed variant of {@link #getAllItems(String, String, String, String)}.
+     * Filtering is delegated to {@link FilterService}, which answers it from
+     * the catalog indexes.
+     *
+     * @param category  category name to filter by (nullable)
+     * @param minPrice  minimum price (nullable)
+     * @param maxPrice  maximum price (nullable)
+     * @param available availability flag (nullable)
+     * @return list of items matching the provided filters (never {@code null})
+     */
+    public List<Item> findItems(String category, Money minPrice, Money maxPrice, Boolean available) {
         // Delegate filtering to the dedicated service
-        return filterService.applyFilters(this.items, categoria, min, max, available);
+        return filterService.applyFilters(items, category, minPrice, maxPrice, available);
+    }
+
+    /**
+     * Return one page of filtered items. Pages are addressed with keyset
+     * cursors, so fetching any page costs the same regardless of how many
+     * pages came before it.
+     *
+     * @param category  category name to filter by (nullable)
+     * @param minPrice  minimum price (nullable)
+     * @param maxPrice  maximum price (nullable)
+     * @param available availability flag (nullable)
+     * @param sort      sort order of the listing
+     * @param cursor    {@code nextCursor} of the previous page (nullable)
+     * @param limit     page size, between 1 and {@link #MAX_PAGE_SIZE}
+     * @return the requested page
+     * @throws ValidationException when the limit is out of range or the
+     *                             cursor is invalid
+     */
+    public ItemPage findPage(String category, Money minPrice, Money maxPrice, Boolean available,
+                             ItemSort sort, String cursor, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new ValidationException("El límite debe estar entre 1 y " + MAX_PAGE_SIZE);
+        }
+        return filterService.findPage(items, category, minPrice, maxPrice, available, sort, cursor, limit);
+    }
+
+    /**
+     * Full-text search over item names and descriptions. Words are matched
+     * ignoring case and accents, the last word also as a prefix (so partial
+     * input works for typeahead), and results come in catalog order, one
+     * page at a time. The word index is kept up to date on every create,
+     * update and delete.
+     *
+     * @param query     search text
+     * @param category  category name to filter by (nullable)
+     * @param minPrice  minimum price (nullable)
+     * @param maxPrice  maximum price (nullable)
+     * @param available availability flag (nullable)
+     * @param cursor    {@code nextCursor} of the previous page (nullable)
+     * @param limit     page size, between 1 and {@link #MAX_PAGE_SIZE}
+     * @return the requested page
+     * @throws ValidationException when the query has no word, the limit is
+     *                             out of range or the cursor is invalid
+     */
+    public ItemPage searchItems(String query, String category, Money minPrice, Money maxPrice, Boolean available,
+                                String cursor, int limit) {
+        if (query == null || query.isBlank()) {
+            throw new ValidationException("El parámetro q es obligatorio");
+        }
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new ValidationException("El límite debe estar entre 1 y " + MAX_PAGE_SIZE);
+        }
+        return filterService.searchPage(items, query, category, minPrice, maxPrice, available, cursor, limit);
+    }
+
+    /**
+     * Parse the {@code limit} query parameter of a paginated listing.
+     *
+     * @param limit        raw parameter value (nullable)
+     * @param defaultLimit value used when the parameter is absent
+     * @return the page size
+     * @throws ValidationException when the value is not a number
+     */
+    public static int parseLimit(String limit, int defaultLimit) {
+        if (limit == null || limit.isEmpty()) {
+            return defaultLimit;
+        }
+        try {
+            return Integer.parseInt(limit);
+        } catch (NumberFormatException e) {
+            throw new ValidationException("El límite debe ser un número entero");
+        }
+    }
+
+    /**
+     * Return every item in the catalog, in insertion order.
+     *
+     * @return immutable, consistent snapshot of the catalog
+     */
+    public List<Item> getAllItems() {
+        return items.snapshot();
+    }
+
+    /**
+     * Version of the catalog; it changes whenever an item is created,
+     * updated, repriced or removed. Used to invalidate derived data such as
+     * cached pages.
+     *
+     * @return current catalog version
+     */
+    public long getCatalogVersion() {
+        return items.version();
+    }
+
+    /**
+     * Look up a single item by its id in O(1).
+     *
+     * @param id identifier of the item
+     * @return the item, or {@code null} when it does not exist
+     */
+    public Item getItemById(String id) {
+        return items.get(id);
     }
 
     /**
@@ -209,16 +472,83 @@ public class ItemService {
      * @param item item to create and store (must not be {@code null})
      * @return the stored item instance (same reference as the parameter but
      *         with id set when previously absent)
+     * @throws ConflictException when an item with the same id already exists
      */
     public Item createItem(Item item) {
         if (item.getId() == null) {
             item.setId(UUID.randomUUID().toString());
         }
-        items.add(item);
-        System.out.println("Item creado: " + item.getName());
+        journal.put(STORE, item.getId(), () -> {
+            if (!items.add(item)) {
+                throw new ConflictException("Ya existe un item con el ID: " + item.getId());
+            }
+            return item;
+        });
+        log.atDebug().addKeyValue("itemId", item.getId()).addKeyValue("name", item.getName()).log("Item creado");
         return item;
     }
 
+    /**
+     * Create or replace a batch of items (bulk import). Existing ids are
+     * replaced in place, new ones are appended to the catalog. The batch is
+     * made durable with a single wait on the journal.
+     *
+     * @param batch items to store, each with an id
+     * @return number of items that did not exist before
+     */
+    public int upsertItems(List<Item> batch) {
+        int[] created = new int[1];
+        journal.putAll(STORE, batch, Item::getId, item -> {
+            if (items.replace(item.getId(), item) == null) {
+                if (!items.add(item)) {
+                    // Creado por otra petición entre replace y add
+                    items.replace(item.getId(), item);
+                } else {
+                    created[0]++;
+                }
+            }
+            return item;
+        });
+        return created[0];
+    }
+
+    /**
+     * Alias of {@link #createItem(Item)} used by the JSON item routes.
+     *
+     * @param item item to create and store
+     * @return the stored item instance
+     */
+    public Item addItem(Item item) {
+        return createItem(item);
+    }
+
+    /**
+     * Replace the data of an existing item, keeping its id and position.
+     * When the new data has no description (the web edit form has no such
+     * field) the current description is kept, and so are its words in the
+     * search index.
+     *
+     * @param id          identifier of the item to update
+     * @param updatedItem new item data
+     * @return the updated item, or {@code null} when no item has that id
+     */
+    public Item updateItem(String id, Item updatedItem) {
+        return journal.put(STORE, id, () -> items.replace(id, current ->
+                updatedItem.getDescription() == null && current.getDescription() != null
+                        ? updatedItem.withDescription(current.getDescription())
+                        : updatedItem));
+    }
+
+    /**
+     * Remove an item from the catalog.
+     *
+     * @param id identifier of the item to delete
+     * @return true when the item existed and was removed
+     */
+    public boolean deleteItemById(String id) {
+        return journal.delete(STORE, id, () -> items.remove(id) != null);
+    }
+
     /**
      * Update the numeric price of an existing item identified by its id.
      *
@@ -227,13 +557,105 @@ public class ItemService {
      * @return the updated item instance
      * @throws IllegalArgumentException when no item with the given id exists
      */
-    public Item updateItemPrice(String itemId, double newPrice) {
-        Item item = items.stream()
-                .filter(i -> i.getId().equals(itemId))
-                .findFirst()
-                .orElseThrow(() -> new IllegalArgumentException("Item no encontrado: " + itemId));
+    public Item updateItemPrice(String itemId, Money newPrice) {
+        return journal.put(STORE, itemId, () -> {
+            Item item = items.updatePrice(itemId, newPrice);
+            if (item == null) {
+                throw new IllegalArgumentException("Item no encontrado: " + itemId);
+            }
+            return item;
+        });
+    }
 
-        item.setPrice(newPrice);
-        return item;
+    /**
+     * Update the prices of several items as one atomic change: when one of
+     * the ids does not exist nothing is updated. The batch is logged and
+     * made durable with a single wait on the journal.
+     *
+     * @param prices item id to new price
+     * @return the updated items
+     * @throws IllegalArgumentException when some id does not exist
+     */
+    public List<Item> updateItemPrices(Map<String, Money> prices) {
+        return journal.putBatch(STORE, () -> {
+            List<Item> updated = items.updatePrices(prices);
+            if (updated == null) {
+                String missing = prices.keySet().stream().filter(id -> !items.contains(id)).findFirst().orElse(null);
+                throw new IllegalArgumentException("Item no encontrado: " + missing);
+            }
+            return updated;
+        }, Item::getId);
+    }
+
+    /**
+     * Reprice every item of a category as one atomic change.
+     *
+     * @param category category name (matched case-insensitively)
+     * @param rule     new price from the current one; throwing
+     *                 {@link IllegalArgumentException} cancels the whole batch
+     * @return the updated items (empty when the category has no items)
+     */
+    public List<Item> updateCategoryPrices(String category, UnaryOperator<Money> rule) {
+        return journal.putBatch(STORE, () -> items.updateCategoryPrices(category, rule), Item::getId);
+    }
+
+    /**
+     * Mark an existing item as available or unavailable, keeping the
+     * availability index of the catalog in sync.
+     *
+     * @param itemId    identifier of the item to update
+     * @param available new availability flag
+     * @return the updated item instance
+     * @throws IllegalArgumentException when no item with the given id exists
+     */
+    public Item setItemAvailable(String itemId, boolean available) {
+        return journal.put(STORE, itemId, () -> {
+            Item item = items.updateAvailability(itemId, available);
+            if (item == null) {
+                throw new IllegalArgumentException("Item no encontrado: " + itemId);
+            }
+            return item;
+        });
+    }
+
+    /**
+     * The catalog as seen by the journal. Restored items replace an existing
+     * item in place so its position in the catalog is kept.
+     */
+    private final class ItemStore implements DurableStore<Item> {
+        @Override
+        public Class<Item> type() {
+            return Item.class;
+        }
+
+        @Override
+        public Collection<Item> values() {
+            return items.snapshot();
+        }
+
+        @Override
+        public void clear() {
+            for (Item item : items.snapshot()) {
+                items.remove(item.getId());
+            }
+        }
+
+        @Override
+        public void restore(String id, Item value) {
+            if (items.replace(id, value) == null) {
+                value.setId(id);
+                items.add(value);
+            }
+        }
+
+        @Override
+        public void restoreRemove(String id) {
+            items.remove(id);
+        }
+
+        @Override
+        public String idOf(Item value) {
+            return value.getId();
+        }
     }
-}
\ No newline at end of file
+}
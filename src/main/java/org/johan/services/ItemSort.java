@@ -0,0 +1,52 @@
+package org.johan.services;
+
+import org.johan.exceptions.ValidationException;
+
+/**
+ * Sort orders supported by the paginated item listings.
+ * <p>
+ * Every order is total (ties are broken by the item's position in the
+ * catalog) so it can back a stable keyset cursor.
+ * </p>
+ */
+public enum ItemSort {
+
+    /** Order in which items were added to the catalog (default). */
+    ADDED("added"),
+    /** Cheapest first. */
+    PRICE_ASC("price"),
+    /** Most expensive first. */
+    PRICE_DESC("-price");
+
+    private final String param;
+
+    ItemSort(String param) {
+        this.param = param;
+    }
+
+    /**
+     * @return value used for this order in the {@code sort} query parameter
+     */
+    public String param() {
+        return param;
+    }
+
+    /**
+     * Parse the {@code sort} query parameter.
+     *
+     * @param value raw parameter value (nullable; defaults to {@link #ADDED})
+     * @return the matching sort order
+     * @throws ValidationException when the value is not a supported order
+     */
+    public static ItemSort fromParam(String value) {
+        if (value == null || value.isEmpty()) {
+            return ADDED;
+        }
+        for (ItemSort sort : values()) {
+            if (sort.param.equalsIgnoreCase(value)) {
+                return sort;
+            }
+        }
+        throw new ValidationException("Orden no soportado: " + value + " (use added, price o -price)");
+    }
+}
@@ -1,58 +1,210 @@
 package org.johan.services;
 
+import org.johan.auction.Bid;
+import org.johan.auction.BidEngine;
+import org.johan.models.Money;
 import org.johan.models.Offer;
+import org.johan.storage.DurableStore;
+import org.johan.storage.Journal;
+import org.johan.storage.OfferIndex;
 
-import java.util.*;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * Service for managing item offers.
  * Holds offer data in memory for demonstration and testing.
+ *
+ * New offers are bids: they go through the {@link BidEngine}, which only
+ * accepts a bid higher than the current best one of the item. Accepted
+ * bids are kept here with their sequence number.
+ *
+ * Changes are recorded in the {@link Journal}; on recovery the accepted
+ * bids are handed back to the engine so sequence numbers continue.
+ *
+ * Offers are stored in an {@link OfferIndex}: lookups by id are O(1) and
+ * the best bids of an item are answered from a bounded per-item set,
+ * independently of the size of the bid history.
+ *
+ * When an auction closes, the offer holding the final bid is marked as the
+ * winner ({@link #finalizeWinner}).
  */
 public class OfferService {
 
-    private final List<Offer> offers = new ArrayList<>();
+    /** Name of the offers in the journal. */
+    static final String STORE = "offers";
 
-    public OfferService() {
+    /** Best bids kept per item when none is configured. */
+    public static final int DEFAULT_TOP_PER_ITEM = 100;
+
+    private final OfferIndex offers;
+    private final BidEngine bidEngine;
+    private final Journal journal;
+
+    public OfferService(BidEngine bidEngine) {
+        this(bidEngine, Journal.disabled());
+    }
+
+    public OfferService(BidEngine bidEngine, Journal journal) {
+        this(bidEngine, journal, DEFAULT_TOP_PER_ITEM);
+    }
+
+    /**
+     * @param topPerItem best bids kept per item for {@link #getTopOffers}
+     */
+    public OfferService(BidEngine bidEngine, Journal journal, int topPerItem) {
+        this.offers = new OfferIndex(topPerItem);
+        this.bidEngine = bidEngine;
+        this.journal = journal;
         // preload some sample bids
-        offers.add(new Offer("1", 150.0, "Alice"));
-        offers.add(new Offer("2", 90.0, "Bob"));
-        offers.add(new Offer("3", 320.0, "Carol"));
+        store(new Offer("1", Money.ofMinor(15000), "Alice"));
+        store(new Offer("2", Money.ofMinor(9000), "Bob"));
+        store(new Offer("3", Money.ofMinor(32000), "Carol"));
+        journal.register(STORE, new OfferStore());
+    }
+
+    private Offer store(Offer offer) {
+        return offers.add(offer);
     }
 
-    /** Retrieve all available offers **/
-    public List<Offer> getAllOffers() {
-        return offers;
+    /** Retrieve all available offers (read-only view in creation order) **/
+    public Collection<Offer> getAllOffers() {
+        return offers.values();
     }
 
     /** Retrieve a specific offer by ID **/
     public Offer getOfferById(String id) {
-        return offers.stream()
-                .filter(o -> o.getId().equals(id))
-                .findFirst()
-                .orElse(null);
+        return offers.get(id);
+    }
+
+    /**
+     * Best bids of an item, highest first.
+     *
+     * @param itemId item identifier
+     * @param limit  maximum number of bids, at most {@link #getTopCapacity()}
+     * @return the bids (empty when the item has none)
+     */
+    public List<Offer> getTopOffers(String itemId, int limit) {
+        return offers.top(itemId, limit);
     }
 
-    /** Add a new offer **/
+    /**
+     * @return largest {@code limit} accepted by {@link #getTopOffers}
+     */
+    public int getTopCapacity() {
+        return offers.topCapacity();
+    }
+
+    /**
+     * Place a bid and record it as an offer.
+     *
+     * @throws org.johan.exceptions.ConflictException when the bid is not higher than the current one
+     * @throws org.johan.exceptions.NotFoundException when the item does not exist
+     */
+    public Offer placeBid(String itemId, String bidder, Money amount) {
+        Bid bid = bidEngine.placeBid(itemId, bidder, amount);
+        Offer offer = new Offer(itemId, bid.amount(), bidder);
+        offer.setSequence(bid.sequence());
+        return record(bid, offer);
+    }
+
+    /** Add a new offer (validated by the bid engine) **/
     public Offer addOffer(Offer newOffer) {
-        offers.add(newOffer);
-        return newOffer;
+        Bid bid = bidEngine.placeBid(newOffer.getItemId(), newOffer.getBidder(), newOffer.getCurrentBid());
+        newOffer.setSequence(bid.sequence());
+        // Solo el cierre de la subasta decide quién gana
+        newOffer.setWinner(false);
+        return record(bid, newOffer);
+    }
+
+    private Offer record(Bid bid, Offer offer) {
+        Offer stored = journal.put(STORE, offer.getId(), () -> store(offer));
+        // La subasta pudo cerrarse entre la aceptación y el guardado: la última puja es la ganadora
+        if (bidEngine.isFinal(bid)) {
+            finalizeWinner(bid);
+        }
+        return stored;
+    }
+
+    /**
+     * Mark the offer holding the final bid of a closed auction as the winner.
+     * Safe to call more than once: the auction and the request that placed
+     * the bid may both get here when they race.
+     *
+     * @param finalBid winning bid returned by {@link BidEngine#closeBook}
+     * @return the winning offer, or {@code null} when nobody bid or the offer
+     *         has not been stored yet (it is then marked when it is)
+     */
+    public Offer finalizeWinner(Bid finalBid) {
+        if (finalBid.sequence() == 0) {
+            return null;
+        }
+        for (Offer offer : offers.top(finalBid.itemId(), offers.topCapacity())) {
+            if (offer.getSequence() == finalBid.sequence()) {
+                if (offer.isWinner()) {
+                    return offer;
+                }
+                // El indicador no cuenta en el orden de las pujas: no hace falta reindexar
+                return journal.put(STORE, offer.getId(),
+                        () -> offers.updateUnindexed(offer.getId(), o -> o.setWinner(true)));
+            }
+        }
+        return null;
     }
 
     /** Delete an offer by its ID **/
     public boolean deleteOfferById(String id) {
-        return offers.removeIf(o -> o.getId().equals(id));
+        return journal.delete(STORE, id, () -> remove(id));
+    }
+
+    private boolean remove(String id) {
+        return offers.remove(id) != null;
     }
 
     /** Update an existing offer **/
     public Offer updateOffer(String id, Offer updatedOffer) {
-        for (Offer offer : offers) {
-            if (offer.getId().equals(id)) {
-                offer.setItemId(updatedOffer.getItemId());
-                offer.setCurrentBid(updatedOffer.getCurrentBid());
-                offer.setBidder(updatedOffer.getBidder());
-                return offer;
+        return journal.put(STORE, id, () -> offers.update(id, offer -> {
+            offer.setItemId(updatedOffer.getItemId());
+            offer.setCurrentBid(updatedOffer.getCurrentBid());
+            offer.setBidder(updatedOffer.getBidder());
+        }));
+    }
+
+    /** Offers as seen by the journal (snapshots and recovery). */
+    private final class OfferStore implements DurableStore<Offer> {
+        @Override
+        public Class<Offer> type() {
+            return Offer.class;
+        }
+
+        @Override
+        public Collection<Offer> values() {
+            return offers.values();
+        }
+
+        @Override
+        public void clear() {
+            offers.clear();
+        }
+
+        @Override
+        public void restore(String id, Offer value) {
+            remove(id);
+            store(value);
+            if (value.getSequence() > 0) {
+                bidEngine.restoreBid(new Bid(value.getItemId(), value.getBidder(), value.getCurrentBid(),
+                        value.getSequence(), System.currentTimeMillis()));
             }
         }
-        return null;
+
+        @Override
+        public void restoreRemove(String id) {
+            remove(id);
+        }
+
+        @Override
+        public String idOf(Offer value) {
+            return value.getId();
+        }
     }
-}
\ No newline at end of file
+}
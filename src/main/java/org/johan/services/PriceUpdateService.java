@@ -1,6 +1,12 @@
 package org.johan.services;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 import org.johan.models.Item;
+import org.johan.models.Money;
+import org.johan.websocket.BroadcastEngine;
 import org.johan.websocket.PriceWebSocket;
 
 /**
@@ -20,19 +26,78 @@ public class PriceUpdateService {
      * @param newPrice Nuevo precio
      * @return El item actualizado
      */
-    public Item updatePrice(String itemId, double newPrice) {
+    public Item updatePrice(String itemId, Money newPrice) {
         // Validar que el precio sea positivo
-        if (newPrice <= 0) {
+        if (newPrice == null || !newPrice.isPositive()) {
             throw new IllegalArgumentException("El precio debe ser mayor que 0");
         }
 
         // Actualizar el precio en la base de datos
         Item updatedItem = itemService.updateItemPrice(itemId, newPrice);
 
-        // Notificar a todos los clientes conectados
-        String message = String.format("%s:%.2f", itemId, newPrice);
-        PriceWebSocket.broadcast(message);
+        // Notificar a todos los clientes conectados (los precios pendientes se fusionan)
+        String message = PriceWebSocket.priceMessage(itemId, newPrice);
+        PriceWebSocket.broadcastPrice(itemId, updatedItem.getCategory(), message);
 
         return updatedItem;
     }
+
+    /**
+     * Actualiza los precios de muchos items de una vez: o se aplican todos o
+     * ninguno (si falta algún item o algún precio no es válido). Los clientes
+     * reciben un único mensaje con todos los precios nuevos.
+     *
+     * @param prices ID del item a su nuevo precio
+     * @return los items actualizados
+     */
+    public List<Item> updatePrices(Map<String, Money> prices) {
+        if (prices == null || prices.isEmpty()) {
+            throw new IllegalArgumentException("No hay precios que actualizar");
+        }
+        for (Map.Entry<String, Money> entry : prices.entrySet()) {
+            Money price = entry.getValue();
+            if (price == null || !price.isPositive()) {
+                throw new IllegalArgumentException("El precio de " + entry.getKey() + " debe ser mayor que 0");
+            }
+        }
+        List<Item> updated = itemService.updateItemPrices(prices);
+        notifyPrices(updated);
+        return updated;
+    }
+
+    /**
+     * Multiplica por {@code factor} el precio de todos los items de una
+     * categoría (por ejemplo 0.9 para un 10% de descuento), redondeando a
+     * céntimos (mitad hacia arriba). Se aplica de forma atómica y se notifica con un único mensaje.
+     *
+     * @param category categoría (sin distinguir mayúsculas)
+     * @param factor   multiplicador, mayor que 0
+     * @return los items actualizados (vacío si la categoría no tiene items)
+     */
+    public List<Item> applyCategoryFactor(String category, double factor) {
+        if (category == null || category.isBlank()) {
+            throw new IllegalArgumentException("La categoría es obligatoria");
+        }
+        if (!(factor > 0) || Double.isInfinite(factor)) {
+            throw new IllegalArgumentException("El factor debe ser mayor que 0");
+        }
+        List<Item> updated = itemService.updateCategoryPrices(category, price -> {
+            Money newPrice = price.times(factor);
+            if (!newPrice.isPositive()) {
+                throw new IllegalArgumentException("El factor deja un precio en 0 (" + price + ")");
+            }
+            return newPrice;
+        });
+        notifyPrices(updated);
+        return updated;
+    }
+
+    private static void notifyPrices(List<Item> updated) {
+        List<BroadcastEngine.PriceUpdate> updates = new ArrayList<>(updated.size());
+        for (Item item : updated) {
+            updates.add(new BroadcastEngine.PriceUpdate(item.getId(), item.getCategory(),
+                    PriceWebSocket.priceMessage(item.getId(), item.getPrice())));
+        }
+        PriceWebSocket.broadcastPrices(updates);
+    }
 }
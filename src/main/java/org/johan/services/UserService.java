@@ -1,57 +1,243 @@
 package org.johan.services;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
 
+import org.johan.exceptions.ConflictException;
 import org.johan.models.User;
+import org.johan.storage.DurableStore;
+import org.johan.storage.Journal;
 
 // Nivel C2: Separamos la "lógica de negocio" del controlador.
 // Este servicio FINGE ser la base de datos.
+//
+// Índices en memoria: id -> usuario (O(1), lecturas sin bloqueo), email -> id
+// (único, sin distinguir mayúsculas) y orden de alta para los listados. Las
+// escrituras se serializan con un lock para que "crear si no existe" y el
+// cambio de email sean atómicos frente a peticiones concurrentes.
 public class UserService {
 
-    // Nuestra base de datos Falsa
-    private List<User> users = new ArrayList<>();
+    /** Nombre de los usuarios en el journal. */
+    static final String STORE = "users";
+
+    /** Posición de un usuario en el orden de alta. */
+    private record Slot(long sequence, User user) {
+    }
+
+    private final ConcurrentHashMap<String, Slot> byId = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, String> idByEmail = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Long, User> byOrder = new ConcurrentSkipListMap<>();
+    private final Collection<User> users = Collections.unmodifiableCollection(byOrder.values());
+
+    // Serializa altas, cambios y bajas (los dos índices deben cambiar juntos)
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private long nextSequence;
+
+    // Los cambios se registran en el write-ahead log (si está configurado)
+    private final Journal journal;
 
     public UserService() {
+        this(Journal.disabled());
+    }
+
+    public UserService(Journal journal) {
+        this.journal = journal;
         // Datos de prueba para el Sprint 1
-        users.add(new User("1", "Rafael", "rafael@coleccionista.com"));
-        users.add(new User("2", "Ramón", "ramon@eventos.com"));
-        users.add(new User("3", "Sofía", "sofia@experta.com"));
+        insert(new User("1", "Rafael", "rafael@coleccionista.com"));
+        insert(new User("2", "Ramón", "ramon@eventos.com"));
+        insert(new User("3", "Sofía", "sofia@experta.com"));
+        journal.register(STORE, new UserStore());
     }
 
-    public List<User> getAllUsers() {
-        return this.users;
+    // Vista de solo lectura en orden de alta: se recorre sin copiar ni bloquear
+    public Collection<User> getAllUsers() {
+        return users;
     }
 
     public User getUserById(String id) {
-        // Usamos Java Streams (funcionalidad avanzada C1/C2)
-        return users.stream()
-                .filter(user -> user.getId().equals(id))
-                .findFirst()
-                .orElse(null); // (Manejaremos el error 404 en Sprint 2)
+        Slot slot = id != null ? byId.get(id) : null;
+        return slot != null ? slot.user() : null;
     }
 
+    /**
+     * Alta atómica: el usuario se guarda solo si ni su id ni su email están en uso.
+     *
+     * @throws ConflictException si el id o el email ya pertenecen a otro usuario
+     */
     public User createUser(User user) {
         // En una BD real, el ID sería autogenerado
-        users.add(user);
-        return user;
+        return journal.put(STORE, user.getId(), () -> {
+            writeLock.lock();
+            try {
+                if (byId.containsKey(user.getId())) {
+                    throw new ConflictException("Ya existe un usuario con el ID: " + user.getId());
+                }
+                requireEmailAvailable(user.getEmail(), user.getId());
+                insert(user);
+                return user;
+            } finally {
+                writeLock.unlock();
+            }
+        });
+    }
+
+    // Alias usado por UserControllers
+    public User addUser(User user) {
+        return createUser(user);
     }
 
+    /**
+     * @throws ConflictException si el nuevo email ya pertenece a otro usuario
+     */
     public User updateUser(String id, User updatedUserData) {
-        User userToUpdate = getUserById(id);
-        if (userToUpdate != null) {
-            userToUpdate.setName(updatedUserData.getName());
-            userToUpdate.setEmail(updatedUserData.getEmail());
-            return userToUpdate;
-        }
-        return null;
+        return journal.put(STORE, id, () -> {
+            writeLock.lock();
+            try {
+                User userToUpdate = getUserById(id);
+                if (userToUpdate != null) {
+                    requireEmailAvailable(updatedUserData.getEmail(), id);
+                    unindexEmail(userToUpdate);
+                    userToUpdate.setName(updatedUserData.getName());
+                    userToUpdate.setEmail(updatedUserData.getEmail());
+                    indexEmail(userToUpdate);
+                }
+                return userToUpdate;
+            } finally {
+                writeLock.unlock();
+            }
+        });
     }
 
     public boolean deleteUser(String id) {
-        return users.removeIf(user -> user.getId().equals(id));
+        return journal.delete(STORE, id, () -> remove(id));
+    }
+
+    // Alias usado por UserControllers
+    public boolean deleteUserById(String id) {
+        return deleteUser(id);
     }
-    
+
     public boolean userExists(String id) {
-        return users.stream().anyMatch(user -> user.getId().equals(id));
+        return id != null && byId.containsKey(id);
+    }
+
+    /**
+     * @return el usuario con ese email (sin distinguir mayúsculas), o {@code null}
+     */
+    public User getUserByEmail(String email) {
+        String key = emailKey(email);
+        String id = key != null ? idByEmail.get(key) : null;
+        return id != null ? getUserById(id) : null;
+    }
+
+    private void requireEmailAvailable(String email, String id) {
+        String key = emailKey(email);
+        String owner = key != null ? idByEmail.get(key) : null;
+        if (owner != null && !owner.equals(id)) {
+            throw new ConflictException("Ya existe un usuario con el email: " + email);
+        }
+    }
+
+    // Llamar con writeLock (o durante la construcción/recuperación)
+    private void insert(User user) {
+        long sequence = nextSequence++;
+        byId.put(user.getId(), new Slot(sequence, user));
+        byOrder.put(sequence, user);
+        indexEmail(user);
+    }
+
+    private boolean remove(String id) {
+        writeLock.lock();
+        try {
+            Slot slot = id != null ? byId.remove(id) : null;
+            if (slot == null) {
+                return false;
+            }
+            byOrder.remove(slot.sequence());
+            unindexEmail(slot.user());
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void indexEmail(User user) {
+        String key = emailKey(user.getEmail());
+        if (key != null) {
+            idByEmail.put(key, user.getId());
+        }
+    }
+
+    // Solo quita la entrada si apunta a este usuario
+    private void unindexEmail(User user) {
+        String key = emailKey(user.getEmail());
+        if (key != null) {
+            idByEmail.remove(key, user.getId());
+        }
+    }
+
+    private static String emailKey(String email) {
+        if (email == null || email.isBlank()) {
+            return null;
+        }
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // Usuarios tal como los ve el journal (snapshots y recuperación)
+    private final class UserStore implements DurableStore<User> {
+        @Override
+        public Class<User> type() {
+            return User.class;
+        }
+
+        @Override
+        public Collection<User> values() {
+            return users;
+        }
+
+        @Override
+        public void clear() {
+            writeLock.lock();
+            try {
+                byId.clear();
+                byOrder.clear();
+                idByEmail.clear();
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        // La recuperación reaplica el log tal cual: no se vuelve a comprobar la unicidad
+        @Override
+        public void restore(String id, User value) {
+            writeLock.lock();
+            try {
+                Slot previous = byId.get(id);
+                if (previous == null) {
+                    insert(value);
+                } else {
+                    unindexEmail(previous.user());
+                    byId.put(id, new Slot(previous.sequence(), value));
+                    byOrder.put(previous.sequence(), value);
+                    indexEmail(value);
+                }
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        @Override
+        public void restoreRemove(String id) {
+            remove(id);
+        }
+
+        @Override
+        public String idOf(User value) {
+            return value.getId();
+        }
     }
-}
\ No newline at end of file
+}
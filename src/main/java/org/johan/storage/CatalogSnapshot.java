@@ -0,0 +1,255 @@
+package org.johan.storage;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.johan.models.Item;
+import org.johan.models.Money;
+
+/**
+ * Compact binary image of the catalog, loaded through a
+ * {@link MappedByteBuffer}.
+ * <p>
+ * Layout (big endian):
+ * </p>
+ * <pre>
+ *   int    magic ("CLC3")
+ *   int    item count
+ *   short  category count, then each category as a string
+ *   short  currency count, then each currency code as a string
+ *   items: string id, string name, string description, string imageUrl,
+ *          short category index (-1 = none), long price (minor units),
+ *          short currency index, byte available
+ *   long   CRC32 of everything above
+ * </pre>
+ * <p>
+ * A string is a {@code short} byte length ({@code -1} for {@code null})
+ * followed by its UTF-8 bytes. Categories are stored once and shared by
+ * every item that uses them, which keeps the file small and the loaded
+ * items from holding duplicate category strings; currencies likewise.
+ * Snapshots of an older layout are rejected by their magic number and
+ * rebuilt.
+ * </p>
+ * <p>
+ * Loading maps the file and decodes it sequentially: there is no text to
+ * tokenize and no price to parse, so cold start is dominated by page
+ * faults on the mapped file instead of JSON parsing. Files are limited to
+ * 2 GB (one mapping).
+ * </p>
+ */
+public final class CatalogSnapshot {
+
+    private static final int MAGIC = 0x434C4333; // "CLC3"
+    private static final int MAX_STRING_BYTES = Short.MAX_VALUE;
+
+    private CatalogSnapshot() {
+    }
+
+    /**
+     * Write {@code items} to {@code file}. The file is written under a
+     * temporary name and renamed, so readers never see a partial snapshot.
+     *
+     * @param file  target file
+     * @param items items to store
+     * @return number of items written
+     * @throws IOException when the file cannot be written or a string is longer than 32 KB
+     */
+    public static int write(Path file, Collection<Item> items) throws IOException {
+        Map<String, Integer> categories = new HashMap<>();
+        List<String> categoryTable = new ArrayList<>();
+        for (Item item : items) {
+            String category = item.getCategory();
+            if (category != null && !categories.containsKey(category)) {
+                categories.put(category, categoryTable.size());
+                categoryTable.add(category);
+            }
+        }
+        if (categoryTable.size() > Short.MAX_VALUE) {
+            throw new IOException("Demasiadas categorías para el snapshot: " + categoryTable.size());
+        }
+        Map<String, Integer> currencies = new HashMap<>();
+        List<String> currencyTable = new ArrayList<>();
+        for (Item item : items) {
+            String currency = item.getPrice().currency();
+            if (!currencies.containsKey(currency)) {
+                currencies.put(currency, currencyTable.size());
+                currencyTable.add(currency);
+            }
+        }
+
+        Path absolute = file.toAbsolutePath();
+        if (absolute.getParent() != null) {
+            Files.createDirectories(absolute.getParent());
+        }
+        Path tmp = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        int count = 0;
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new CrcOutputStream(Channels.newOutputStream(channel), crc), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(items.size());
+            out.writeShort(categoryTable.size());
+            for (String category : categoryTable) {
+                writeString(out, category);
+            }
+            out.writeShort(currencyTable.size());
+            for (String currency : currencyTable) {
+                writeString(out, currency);
+            }
+            for (Item item : items) {
+                writeString(out, item.getId());
+                writeString(out, item.getName());
+                writeString(out, item.getDescription());
+                writeString(out, item.getImageUrl());
+                Integer category = item.getCategory() != null ? categories.get(item.getCategory()) : null;
+                out.writeShort(category != null ? category : -1);
+                out.writeLong(item.getPrice().minor());
+                out.writeShort(currencies.get(item.getPrice().currency()));
+                out.writeBoolean(item.isAvailable());
+                count++;
+            }
+            out.flush();
+            if (count != items.size()) {
+                throw new IOException("El catálogo cambió mientras se escribía el snapshot");
+            }
+            // El CRC no se incluye a sí mismo
+            ByteBuffer trailer = ByteBuffer.allocate(Long.BYTES).putLong(crc.getValue());
+            trailer.flip();
+            while (trailer.hasRemaining()) {
+                channel.write(trailer);
+            }
+            channel.force(true);
+        }
+        Files.move(tmp, absolute, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return count;
+    }
+
+    /**
+     * Map {@code file} and decode its items.
+     *
+     * @param file snapshot written by {@link #write(Path, Collection)}
+     * @return the items, in the order they were written
+     * @throws IOException when the file cannot be read, is not a snapshot or is corrupt
+     */
+    public static List<Item> read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot demasiado grande para una sola proyección: " + size + " bytes");
+            }
+            if (size < 2 * Integer.BYTES + Short.BYTES + Long.BYTES) {
+                throw new IOException("Snapshot truncado: " + file);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            int bodyLength = (int) size - Long.BYTES;
+            CRC32 crc = new CRC32();
+            crc.update(buffer.slice(0, bodyLength));
+            if (crc.getValue() != buffer.getLong(bodyLength)) {
+                throw new IOException("Checksum inválido en el snapshot " + file);
+            }
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("No es un snapshot de catálogo: " + file);
+            }
+
+            int count = buffer.getInt();
+            byte[] scratch = new byte[256];
+            String[] categories = new String[buffer.getShort()];
+            for (int i = 0; i < categories.length; i++) {
+                categories[i] = readString(buffer, scratch);
+            }
+            String[] currencies = new String[buffer.getShort()];
+            for (int i = 0; i < currencies.length; i++) {
+                currencies[i] = readString(buffer, scratch);
+                if (!Money.DEFAULT_CURRENCY.equals(currencies[i])) {
+                    // Un snapshot antiguo con otra moneda se regenera desde el JSON
+                    throw new IOException("Moneda no admitida en el snapshot " + file + ": " + currencies[i]);
+                }
+            }
+            List<Item> items = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String id = readString(buffer, scratch);
+                String name = readString(buffer, scratch);
+                String description = readString(buffer, scratch);
+                String imageUrl = readString(buffer, scratch);
+                short category = buffer.getShort();
+                long price = buffer.getLong();
+                short currency = buffer.getShort();
+                boolean available = buffer.get() != 0;
+                Item item = new Item(id, name, description, Money.ofMinor(price, currencies[currency]),
+                        category >= 0 ? categories[category] : null, imageUrl);
+                item.setAvailable(available);
+                items.add(item);
+            }
+            return items;
+        } catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+            throw new IOException("Snapshot corrupto: " + file, e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeShort(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_BYTES) {
+            throw new IOException("Texto demasiado largo para el snapshot (" + bytes.length + " bytes)");
+        }
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer, byte[] scratch) {
+        int length = buffer.getShort();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = length <= scratch.length ? scratch : new byte[length];
+        buffer.get(bytes, 0, length);
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /** Computes the CRC of everything written through it. */
+    private static final class CrcOutputStream extends OutputStream {
+        private final OutputStream out;
+        private final CRC32 crc;
+
+        CrcOutputStream(OutputStream out, CRC32 crc) {
+            this.out = out;
+            this.crc = crc;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            crc.update(b);
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            crc.update(b, off, len);
+            out.write(b, off, len);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package org.johan.storage;
+
+import java.util.Collection;
+
+/**
+ * In-memory state that a {@link Journal} can snapshot and rebuild.
+ * <p>
+ * The restore methods are only called during {@link Journal#recover()},
+ * before the application starts serving requests, and must not write to
+ * the journal themselves.
+ * </p>
+ *
+ * @param <T> type of the stored values
+ */
+public interface DurableStore<T> {
+
+    /**
+     * @return class used to (de)serialize the values
+     */
+    Class<T> type();
+
+    /**
+     * @return current values, used to write a snapshot (a weakly consistent
+     *         view is enough: later changes are in the log)
+     */
+    Collection<T> values();
+
+    /**
+     * Drop every value before loading a snapshot.
+     */
+    void clear();
+
+    /**
+     * Insert or replace a value by its id.
+     *
+     * @param id    value identifier
+     * @param value recovered value
+     */
+    void restore(String id, T value);
+
+    /**
+     * Remove a value by its id (no-op when absent).
+     *
+     * @param id value identifier
+     */
+    void restoreRemove(String id);
+
+    /**
+     * @param value stored value
+     * @return its identifier
+     */
+    String idOf(T value);
+}
@@ -0,0 +1,380 @@
+package org.johan.storage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+import org.johan.models.Item;
+import org.johan.models.Money;
+
+/**
+ * Concurrent in-memory store for the catalog of {@link Item} objects.
+ * <p>
+ * Items are indexed by id in a {@link ConcurrentHashMap} so lookups are O(1)
+ * and lock-free. Every item also receives a dense, never reused ordinal (its
+ * insertion slot) which keeps the insertion order stable and is the key of
+ * the secondary indexes kept in {@link ItemIndex} (category, price,
+ * availability and the words of names and descriptions).
+ * </p>
+ * <p>
+ * Changes (add, replace, remove, reprice) are serialized by a write lock so
+ * the indexes always agree with the items, while {@link #snapshot()} returns
+ * an immutable list that is rebuilt at most once per structural change, so
+ * readers always see a consistent view of the catalog without copying it on
+ * every request.
+ * </p>
+ */
+public class ItemCatalog {
+
+    /** Id index: item id to its ordinal and instance. */
+    private final ConcurrentHashMap<String, Slot> byId = new ConcurrentHashMap<>();
+
+    /** Guards {@link #index} and all changes. */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** Ordinal table and secondary indexes. */
+    private final ItemIndex index = new ItemIndex();
+
+    /** Incremented on every structural change. */
+    private long structureVersion;
+
+    /** Incremented on every change, including price updates. */
+    private final AtomicLong version = new AtomicLong();
+
+    /** Last snapshot handed out by {@link #snapshot()}. */
+    private volatile Snapshot snapshot = new Snapshot(0, Collections.emptyList());
+
+    /**
+     * Position of an item inside the catalog (its ordinal in {@link #index}).
+     */
+    private record Slot(int ordinal, Item item) {
+    }
+
+    /**
+     * Immutable list of items tagged with the structure version it was built from.
+     */
+    private record Snapshot(long structureVersion, List<Item> items) {
+    }
+
+    /**
+     * Look up an item by id.
+     *
+     * @param id item identifier
+     * @return the item, or {@code null} when it does not exist
+     */
+    public Item get(String id) {
+        if (id == null) {
+            return null;
+        }
+        Slot slot = byId.get(id);
+        return slot != null ? slot.item() : null;
+    }
+
+    /**
+     * @param id item identifier
+     * @return true when an item with the given id is stored
+     */
+    public boolean contains(String id) {
+        return id != null && byId.containsKey(id);
+    }
+
+    /**
+     * Add a new item. The item must already have an id.
+     *
+     * @param item item to store
+     * @return true when the item was added, false when the id is already taken
+     */
+    public boolean add(Item item) {
+        lock.writeLock().lock();
+        try {
+            if (byId.containsKey(item.getId())) {
+                return false;
+            }
+            int ordinal = index.add(item);
+            byId.put(item.getId(), new Slot(ordinal, item));
+            structureVersion++;
+            version.incrementAndGet();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Add many items under a single write lock (bulk loads at startup).
+     * Items whose id is already taken are skipped.
+     *
+     * @param items items to store, each with an id
+     * @return number of items added
+     */
+    public int addAll(Collection<Item> items) {
+        lock.writeLock().lock();
+        try {
+            int added = 0;
+            for (Item item : items) {
+                if (byId.containsKey(item.getId())) {
+                    continue;
+                }
+                int ordinal = index.add(item);
+                byId.put(item.getId(), new Slot(ordinal, item));
+                added++;
+            }
+            if (added > 0) {
+                structureVersion++;
+                version.incrementAndGet();
+            }
+            return added;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replace the item stored under {@code id}, keeping its position in the
+     * catalog. The replacement receives the same id.
+     *
+     * @param id          identifier of the item to replace
+     * @param replacement new item data
+     * @return the stored replacement, or {@code null} when no item has that id
+     */
+    public Item replace(String id, Item replacement) {
+        return replace(id, current -> replacement);
+    }
+
+    /**
+     * Replace the item stored under {@code id} with one built from it, under
+     * the write lock, so fields the update leaves out can be carried over.
+     *
+     * @param id          identifier of the item to replace
+     * @param replacement builds the new item data from the current item
+     * @return the stored replacement, or {@code null} when no item has that id
+     */
+    public Item replace(String id, UnaryOperator<Item> replacement) {
+        lock.writeLock().lock();
+        try {
+            Slot slot = byId.get(id);
+            if (slot == null) {
+                return null;
+            }
+            Item updated = replacement.apply(slot.item());
+            updated.setId(id);
+            index.replace(slot.ordinal(), updated);
+            byId.put(id, new Slot(slot.ordinal(), updated));
+            structureVersion++;
+            version.incrementAndGet();
+            return updated;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove an item by id.
+     *
+     * @param id identifier of the item to remove
+     * @return the removed item, or {@code null} when no item has that id
+     */
+    public Item remove(String id) {
+        lock.writeLock().lock();
+        try {
+            Slot slot = byId.remove(id);
+            if (slot == null) {
+                return null;
+            }
+            index.remove(slot.ordinal());
+            structureVersion++;
+            version.incrementAndGet();
+            return slot.item();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Update the price of an existing item.
+     *
+     * @param id       identifier of the item to update
+     * @param newPrice new price value
+     * @return the updated item, or {@code null} when no item has that id
+     */
+    public Item updatePrice(String id, Money newPrice) {
+        lock.writeLock().lock();
+        try {
+            Slot slot = byId.get(id);
+            if (slot == null) {
+                return null;
+            }
+            slot.item().setPrice(newPrice);
+            index.reprice(slot.ordinal(), newPrice);
+            version.incrementAndGet();
+            return slot.item();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Update the prices of several items at once. Either every item is
+     * repriced or, when one of the ids does not exist, none is; index
+     * queries never see a partially applied batch.
+     *
+     * @param prices item id to new price
+     * @return the updated items in the iteration order of {@code prices},
+     *         or {@code null} when some id does not exist
+     */
+    public List<Item> updatePrices(Map<String, Money> prices) {
+        lock.writeLock().lock();
+        try {
+            List<Slot> slots = new ArrayList<>(prices.size());
+            for (String id : prices.keySet()) {
+                Slot slot = id != null ? byId.get(id) : null;
+                if (slot == null) {
+                    return null;
+                }
+                slots.add(slot);
+            }
+            List<Item> updated = new ArrayList<>(slots.size());
+            for (Slot slot : slots) {
+                Money newPrice = prices.get(slot.item().getId());
+                slot.item().setPrice(newPrice);
+                index.reprice(slot.ordinal(), newPrice);
+                updated.add(slot.item());
+            }
+            version.incrementAndGet();
+            return updated;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Reprice every item of a category at once. All new prices are computed
+     * before any is applied, so a rule rejecting one item leaves the
+     * catalog unchanged.
+     *
+     * @param category category name (matched case-insensitively)
+     * @param rule     new price from the current one; it may throw
+     *                 {@link IllegalArgumentException} to reject the batch
+     * @return the updated items in catalog order (empty when the category has none)
+     */
+    public List<Item> updateCategoryPrices(String category, UnaryOperator<Money> rule) {
+        lock.writeLock().lock();
+        try {
+            int[] ordinals = new int[index.categoryCount(category)];
+            PrimitiveIterator.OfInt it = index.categoryOrdinals(category, -1);
+            for (int i = 0; i < ordinals.length; i++) {
+                ordinals[i] = it.nextInt();
+            }
+            Money[] newPrices = new Money[ordinals.length];
+            for (int i = 0; i < ordinals.length; i++) {
+                newPrices[i] = rule.apply(index.item(ordinals[i]).getPrice());
+            }
+            List<Item> updated = new ArrayList<>(ordinals.length);
+            for (int i = 0; i < ordinals.length; i++) {
+                Item item = index.item(ordinals[i]);
+                item.setPrice(newPrices[i]);
+                index.reprice(ordinals[i], newPrices[i]);
+                updated.add(item);
+            }
+            if (!updated.isEmpty()) {
+                version.incrementAndGet();
+            }
+            return updated;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Change the availability of an existing item. Availability changes must
+     * go through the catalog so the availability index stays in sync.
+     *
+     * @param id          identifier of the item to update
+     * @param isAvailable new availability flag
+     * @return the updated item, or {@code null} when no item has that id
+     */
+    public Item updateAvailability(String id, boolean isAvailable) {
+        lock.writeLock().lock();
+        try {
+            Slot slot = byId.get(id);
+            if (slot == null) {
+                return null;
+            }
+            slot.item().setAvailable(isAvailable);
+            index.setAvailable(slot.ordinal(), isAvailable);
+            version.incrementAndGet();
+            return slot.item();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Run a read-only query against the indexes while holding the read lock.
+     * The function must not keep references to iterators after returning.
+     *
+     * @param query function evaluated against a consistent index state
+     * @param <T>   result type
+     * @return the query result
+     */
+    public <T> T read(Function<ItemIndex, T> query) {
+        lock.readLock().lock();
+        try {
+            return query.apply(index);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Return an immutable, consistent view of all items in insertion order.
+     * The same list instance is shared between callers until the catalog
+     * changes structurally.
+     *
+     * @return immutable list of items (never {@code null})
+     */
+    public List<Item> snapshot() {
+        Snapshot current = snapshot;
+        lock.readLock().lock();
+        try {
+            if (current.structureVersion() == structureVersion) {
+                return current.items();
+            }
+            List<Item> items = new ArrayList<>(index.liveCount());
+            PrimitiveIterator.OfInt ordinals = index.allOrdinals(-1);
+            while (ordinals.hasNext()) {
+                items.add(index.item(ordinals.nextInt()));
+            }
+            current = new Snapshot(structureVersion, Collections.unmodifiableList(items));
+            snapshot = current;
+            return current.items();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return number of items currently stored
+     */
+    public int size() {
+        return byId.size();
+    }
+
+    /**
+     * Monotonic counter that changes whenever any item is added, replaced,
+     * removed or repriced. Useful to detect stale derived data.
+     *
+     * @return current catalog version
+     */
+    public long version() {
+        return version.get();
+    }
+}
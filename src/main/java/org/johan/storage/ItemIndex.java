@@ -0,0 +1,334 @@
+package org.johan.storage;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.TreeSet;
+
+import org.johan.models.Item;
+import org.johan.models.Money;
+
+/**
+ * Ordinal table plus secondary indexes over the items of an {@link ItemCatalog}.
+ * <p>
+ * Every item is addressed by its ordinal (insertion slot). On top of the
+ * ordinal table the index keeps:
+ * </p>
+ * <ul>
+ *   <li>a case-normalized category to ordinals map,</li>
+ *   <li>a price-sorted set (in minor units) so price ranges are sub-set scans,</li>
+ *   <li>availability bitsets with cached counts,</li>
+ *   <li>an inverted index of the words of names and descriptions ({@link TextIndex}).</li>
+ * </ul>
+ * <p>
+ * Mutations are package-private and only performed by {@link ItemCatalog}
+ * while holding its write lock; the public read methods must be called
+ * through {@link ItemCatalog#read(java.util.function.Function)}.
+ * </p>
+ */
+public class ItemIndex {
+
+    /** Resume position of {@link #priceRangeOrdinals(long, long, boolean, long, int)} meaning "from the start". */
+    public static final long NO_POSITION = Long.MIN_VALUE;
+
+    /** Entry of the price index (minor units); ties are broken by ordinal. */
+    private record PriceEntry(long price, int ordinal) implements Comparable<PriceEntry> {
+        @Override
+        public int compareTo(PriceEntry other) {
+            int byPrice = Long.compare(price, other.price);
+            return byPrice != 0 ? byPrice : Integer.compare(ordinal, other.ordinal);
+        }
+    }
+
+    private Item[] items = new Item[64];
+    /** Price and category each ordinal was indexed with (the Item may change later). */
+    private long[] indexedPrices = new long[64];
+    private String[] indexedCategories = new String[64];
+    private int nextOrdinal;
+
+    private final BitSet live = new BitSet();
+    private int liveCount;
+
+    private final Map<String, OrdinalSet> byCategory = new HashMap<>();
+    private final NavigableSet<PriceEntry> byPrice = new TreeSet<>();
+
+    private final BitSet available = new BitSet();
+    private final BitSet unavailable = new BitSet();
+    private int availableCount;
+
+    private final TextIndex text = new TextIndex();
+
+    /**
+     * Normalize a category name for index lookups (case-insensitive match).
+     *
+     * @param category raw category name (nullable)
+     * @return normalized key, or {@code null} for a {@code null} category
+     */
+    public static String normalizeCategory(String category) {
+        return category != null ? category.toLowerCase(Locale.ROOT) : null;
+    }
+
+    // ------------------------------------------------------------------
+    // Mutations (caller holds the catalog write lock)
+    // ------------------------------------------------------------------
+
+    int add(Item item) {
+        int ordinal = nextOrdinal++;
+        if (ordinal == items.length) {
+            int capacity = items.length * 2;
+            items = Arrays.copyOf(items, capacity);
+            indexedPrices = Arrays.copyOf(indexedPrices, capacity);
+            indexedCategories = Arrays.copyOf(indexedCategories, capacity);
+        }
+        items[ordinal] = item;
+        live.set(ordinal);
+        liveCount++;
+        indexAttributes(ordinal, item);
+        text.add(ordinal, item);
+        return ordinal;
+    }
+
+    void replace(int ordinal, Item item) {
+        unindexAttributes(ordinal);
+        text.replace(ordinal, items[ordinal], item);
+        items[ordinal] = item;
+        indexAttributes(ordinal, item);
+    }
+
+    void remove(int ordinal) {
+        unindexAttributes(ordinal);
+        text.remove(ordinal, items[ordinal]);
+        items[ordinal] = null;
+        live.clear(ordinal);
+        liveCount--;
+    }
+
+    void reprice(int ordinal, Money newPrice) {
+        byPrice.remove(new PriceEntry(indexedPrices[ordinal], ordinal));
+        indexedPrices[ordinal] = newPrice.minor();
+        byPrice.add(new PriceEntry(newPrice.minor(), ordinal));
+    }
+
+    void setAvailable(int ordinal, boolean isAvailable) {
+        boolean was = available.get(ordinal);
+        if (was == isAvailable) {
+            return;
+        }
+        available.set(ordinal, isAvailable);
+        unavailable.set(ordinal, !isAvailable);
+        availableCount += isAvailable ? 1 : -1;
+    }
+
+    private void indexAttributes(int ordinal, Item item) {
+        String category = normalizeCategory(item.getCategory());
+        indexedCategories[ordinal] = category;
+        if (category != null) {
+            byCategory.computeIfAbsent(category, k -> new OrdinalSet()).add(ordinal);
+        }
+        indexedPrices[ordinal] = item.getPrice().minor();
+        byPrice.add(new PriceEntry(indexedPrices[ordinal], ordinal));
+        if (item.isAvailable()) {
+            available.set(ordinal);
+            availableCount++;
+        } else {
+            unavailable.set(ordinal);
+        }
+    }
+
+    private void unindexAttributes(int ordinal) {
+        String category = indexedCategories[ordinal];
+        if (category != null) {
+            OrdinalSet set = byCategory.get(category);
+            if (set != null) {
+                set.remove(ordinal);
+                if (set.isEmpty()) {
+                    byCategory.remove(category);
+                }
+            }
+        }
+        byPrice.remove(new PriceEntry(indexedPrices[ordinal], ordinal));
+        if (available.get(ordinal)) {
+            availableCount--;
+        }
+        available.clear(ordinal);
+        unavailable.clear(ordinal);
+    }
+
+    // ------------------------------------------------------------------
+    // Reads (caller holds the catalog read lock)
+    // ------------------------------------------------------------------
+
+    /**
+     * @param ordinal item ordinal
+     * @return the item stored at that ordinal, or {@code null} if removed
+     */
+    public Item item(int ordinal) {
+        return ordinal >= 0 && ordinal < nextOrdinal ? items[ordinal] : null;
+    }
+
+    /**
+     * @return number of live items
+     */
+    public int liveCount() {
+        return liveCount;
+    }
+
+    /**
+     * @param after exclusive lower bound ordinal (-1 for all)
+     * @return ascending ordinals of every live item
+     */
+    public PrimitiveIterator.OfInt allOrdinals(int after) {
+        return bitSetIterator(live, after);
+    }
+
+    /**
+     * @param category category name (matched case-insensitively)
+     * @return number of items in that category
+     */
+    public int categoryCount(String category) {
+        OrdinalSet set = byCategory.get(normalizeCategory(category));
+        return set != null ? set.size() : 0;
+    }
+
+    /**
+     * @param category category name (matched case-insensitively)
+     * @param after    exclusive lower bound ordinal (-1 for all)
+     * @return ascending ordinals of the items in that category
+     */
+    public PrimitiveIterator.OfInt categoryOrdinals(String category, int after) {
+        OrdinalSet set = byCategory.get(normalizeCategory(category));
+        return set != null ? set.iteratorAfter(after) : new OrdinalSet().iteratorAfter(after);
+    }
+
+    /**
+     * @param isAvailable availability flag
+     * @return number of items with that availability
+     */
+    public int availabilityCount(boolean isAvailable) {
+        return isAvailable ? availableCount : liveCount - availableCount;
+    }
+
+    /**
+     * @param isAvailable availability flag
+     * @param after       exclusive lower bound ordinal (-1 for all)
+     * @return ascending ordinals of the items with that availability
+     */
+    public PrimitiveIterator.OfInt availabilityOrdinals(boolean isAvailable, int after) {
+        return bitSetIterator(isAvailable ? available : unavailable, after);
+    }
+
+    /**
+     * Count the items whose indexed price lies in {@code [min, max]}, stopping
+     * early once {@code limit} is reached so the planner can compare
+     * selectivity without walking a large range.
+     *
+     * @param min   inclusive lower bound, in minor units
+     * @param max   inclusive upper bound, in minor units
+     * @param limit maximum value to count up to
+     * @return {@code min(count, limit)}
+     */
+    public int countPriceRange(long min, long max, int limit) {
+        int count = 0;
+        Iterator<PriceEntry> it = priceRange(min, max).iterator();
+        while (count < limit && it.hasNext()) {
+            it.next();
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * @param min inclusive lower bound, in minor units
+     * @param max inclusive upper bound, in minor units
+     * @return ordinals of the items in the price range, ascending by price
+     */
+    public PrimitiveIterator.OfInt priceRangeOrdinals(long min, long max) {
+        return priceRangeOrdinals(min, max, false, NO_POSITION, -1);
+    }
+
+    /**
+     * Walk the price index in either direction, optionally resuming strictly
+     * after a {@code (price, ordinal)} position (keyset pagination).
+     *
+     * @param min          inclusive lower bound, in minor units
+     * @param max          inclusive upper bound, in minor units
+     * @param descending   true to walk from the most expensive item down
+     * @param afterPrice   price of the resume position, or {@link #NO_POSITION}
+     *                     to start at the beginning of the range
+     * @param afterOrdinal ordinal of the resume position (tie breaker)
+     * @return ordinals of the items in the price range, in walk order
+     */
+    public PrimitiveIterator.OfInt priceRangeOrdinals(long min, long max, boolean descending,
+                                                      long afterPrice, int afterOrdinal) {
+        NavigableSet<PriceEntry> range = priceRange(min, max);
+        if (afterPrice != NO_POSITION) {
+            PriceEntry resume = new PriceEntry(afterPrice, afterOrdinal);
+            range = descending ? range.headSet(resume, false) : range.tailSet(resume, false);
+        }
+        Iterator<PriceEntry> it = descending ? range.descendingIterator() : range.iterator();
+        return new PrimitiveIterator.OfInt() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public int nextInt() {
+                return it.next().ordinal();
+            }
+        };
+    }
+
+    /**
+     * Compile a full-text search over names and descriptions: every word
+     * must appear, the last one may be a prefix (see {@link TextIndex}).
+     *
+     * @param query search text
+     * @return the compiled search, valid while the read lock is held
+     */
+    public TextIndex.Query textQuery(String query) {
+        return text.query(query, this::item);
+    }
+
+    /**
+     * @return number of distinct words in the text index
+     */
+    public int wordCount() {
+        return text.wordCount();
+    }
+
+    private NavigableSet<PriceEntry> priceRange(long min, long max) {
+        if (min > max) {
+            return new TreeSet<>();
+        }
+        return byPrice.subSet(new PriceEntry(min, Integer.MIN_VALUE), true,
+                new PriceEntry(max, Integer.MAX_VALUE), true);
+    }
+
+    private static PrimitiveIterator.OfInt bitSetIterator(BitSet bits, int after) {
+        return new PrimitiveIterator.OfInt() {
+            private int next = bits.nextSetBit(after + 1);
+
+            @Override
+            public boolean hasNext() {
+                return next >= 0;
+            }
+
+            @Override
+            public int nextInt() {
+                if (next < 0) {
+                    throw new NoSuchElementException();
+                }
+                int current = next;
+                next = bits.nextSetBit(current + 1);
+                return current;
+            }
+        };
+    }
+}
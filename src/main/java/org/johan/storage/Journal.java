@@ -0,0 +1,447 @@
+package org.johan.storage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+import org.johan.config.AppConfig;
+import org.johan.metrics.LatencyHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+
+/**
+ * Makes changes to the in-memory services durable through a
+ * {@link WriteAheadLog}.
+ * <p>
+ * Services wrap each create/update/delete in {@link #put} or
+ * {@link #delete}. The change is applied in memory and its resulting state
+ * is appended to the log under a per-id lock, so two changes to the same
+ * id reach the log in the order they were applied. The caller then waits
+ * (outside the lock) for the group commit that makes it durable. Records
+ * hold the full value, so replaying a record twice is harmless.
+ * </p>
+ * <p>
+ * Every {@code snapshotEvery} records, and once after each recovery, the
+ * log is rotated and the current values of every registered
+ * {@link DurableStore} are written as a compacted snapshot; the segments it
+ * replaces are deleted.
+ * </p>
+ * <p>
+ * A disabled journal ({@link #disabled()}, or no {@code collectors.data.dir}
+ * configured) just runs the mutations: the services behave as the plain
+ * in-memory stores they were before.
+ * </p>
+ */
+public final class Journal implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(Journal.class);
+
+    private static final String PUT = "P";
+    private static final String DELETE = "D";
+
+    /** Locks that order the log records of the same id. */
+    private static final int STRIPES = 64;
+
+    /** One log record: store name, operation, id and (for PUT) the value. */
+    private record Entry(String s, String op, String id, JsonElement v) {
+    }
+
+    private static final Journal DISABLED = new Journal(null, 0);
+
+    private final WriteAheadLog wal;
+    private final long snapshotEvery;
+    private final Gson gson = new Gson();
+    private final Map<String, DurableStore<?>> stores = new LinkedHashMap<>();
+    private final Object[] stripes = new Object[STRIPES];
+    private final Object snapshotLock = new Object();
+    private final AtomicBoolean snapshotScheduled = new AtomicBoolean();
+    private final ExecutorService snapshotter;
+    private final LatencyHistogram commitTime = new LatencyHistogram();
+    private volatile long snapshots;
+
+    private Journal(WriteAheadLog wal, long snapshotEvery) {
+        this.wal = wal;
+        this.snapshotEvery = snapshotEvery;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+        this.snapshotter = wal == null ? null : Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "wal-snapshot");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * @return a journal that keeps nothing (pure in-memory services)
+     */
+    public static Journal disabled() {
+        return DISABLED;
+    }
+
+    /**
+     * Open a journal over the log in {@code dir}.
+     *
+     * @param dir             data directory
+     * @param mode            durability mode of the log
+     * @param flushIntervalMs fsync interval in {@link WriteAheadLog.SyncMode#ASYNC}
+     * @param snapshotEvery   records between snapshots (0 only snapshots on recovery)
+     * @return the journal; call {@link #recover()} once every store is registered
+     * @throws IOException when the log cannot be opened
+     */
+    public static Journal open(Path dir, WriteAheadLog.SyncMode mode, long flushIntervalMs, long snapshotEvery)
+            throws IOException {
+        return new Journal(WriteAheadLog.open(dir, mode, flushIntervalMs), Math.max(0, snapshotEvery));
+    }
+
+    /**
+     * Build the journal from {@link AppConfig}: {@code collectors.data.dir}
+     * (disabled when unset), {@code collectors.wal.sync} ({@code GROUP} or
+     * {@code ASYNC}), {@code collectors.wal.flushIntervalMs} and
+     * {@code collectors.wal.snapshotEvery}.
+     *
+     * @return the configured journal
+     * @throws UncheckedIOException when the data directory cannot be used
+     */
+    public static Journal fromConfig() {
+        String dir = AppConfig.getString("collectors.data.dir", null);
+        if (dir == null || dir.isBlank()) {
+            return disabled();
+        }
+        try {
+            return open(Path.of(dir),
+                    AppConfig.getEnum("collectors.wal.sync", WriteAheadLog.SyncMode.class, WriteAheadLog.SyncMode.GROUP),
+                    AppConfig.getLong("collectors.wal.flushIntervalMs", 5),
+                    AppConfig.getLong("collectors.wal.snapshotEvery", 100_000));
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo abrir el directorio de datos " + dir, e);
+        }
+    }
+
+    /**
+     * @return true when changes are written to disk
+     */
+    public boolean isEnabled() {
+        return wal != null;
+    }
+
+    /**
+     * Register a store under a name that is written in every record. Must be
+     * called before {@link #recover()}.
+     *
+     * @param name  store name (stable across restarts)
+     * @param store in-memory state
+     * @param <T>   value type
+     */
+    public synchronized <T> void register(String name, DurableStore<T> store) {
+        if (wal != null) {
+            stores.put(name, store);
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // Changes
+    // ------------------------------------------------------------------
+
+    /**
+     * Apply a create or update and log the resulting value.
+     *
+     * @param store    store name
+     * @param id       id of the value being changed
+     * @param mutation applies the change and returns the new value, or
+     *                 {@code null} when nothing changed (nothing is logged)
+     * @param <T>      value type
+     * @return the value returned by {@code mutation}
+     */
+    public <T> T put(String store, String id, Supplier<T> mutation) {
+        if (wal == null) {
+            return mutation.get();
+        }
+        long start = System.nanoTime();
+        T result;
+        long ticket;
+        synchronized (stripe(store, id)) {
+            result = mutation.get();
+            if (result == null) {
+                return null;
+            }
+            ticket = wal.append(encode(store, PUT, id, result));
+        }
+        commit(ticket, start);
+        return result;
+    }
+
+    /**
+     * Apply a create or update to many values and wait once for the group
+     * commit covering all of them (bulk imports). Each value is still
+     * applied and logged under its own id lock.
+     *
+     * @param store    store name
+     * @param values   values to apply
+     * @param idOf     id of each value
+     * @param mutation applies one change and returns the value to log, or
+     *                 {@code null} when nothing changed
+     * @param <T>      value type
+     * @return number of values that changed
+     */
+    public <T> int putAll(String store, List<T> values, Function<T, String> idOf, UnaryOperator<T> mutation) {
+        long start = System.nanoTime();
+        long ticket = 0;
+        int changed = 0;
+        for (T value : values) {
+            String id = idOf.apply(value);
+            if (wal == null) {
+                if (mutation.apply(value) != null) {
+                    changed++;
+                }
+                continue;
+            }
+            synchronized (stripe(store, id)) {
+                T result = mutation.apply(value);
+                if (result == null) {
+                    continue;
+                }
+                ticket = wal.append(encode(store, PUT, id, result));
+            }
+            changed++;
+        }
+        if (ticket > 0) {
+            commit(ticket, start);
+        }
+        return changed;
+    }
+
+    /**
+     * Apply a change spanning many values as one atomic step and log every
+     * value it returns (bulk repricing). No other journaled change can run
+     * while {@code mutation} executes and its records are appended, so the
+     * log order matches the order the changes were applied in; callers wait
+     * once for the group commit covering the whole batch.
+     *
+     * @param store    store name
+     * @param mutation applies the whole change and returns the values to log
+     * @param idOf     id of each value
+     * @param <T>      value type
+     * @return the values returned by {@code mutation}
+     */
+    public <T> List<T> putBatch(String store, Supplier<List<T>> mutation, Function<T, String> idOf) {
+        if (wal == null) {
+            return mutation.get();
+        }
+        long start = System.nanoTime();
+        long[] ticket = new long[1];
+        List<T> result = withAllStripes(0, () -> {
+            List<T> changed = mutation.get();
+            for (T value : changed) {
+                ticket[0] = wal.append(encode(store, PUT, idOf.apply(value), value));
+            }
+            return changed;
+        });
+        if (ticket[0] > 0) {
+            commit(ticket[0], start);
+        }
+        return result;
+    }
+
+    // Toma los candados en orden creciente: put/delete solo toman uno, no hay interbloqueo
+    private <R> R withAllStripes(int from, Supplier<R> body) {
+        if (from == STRIPES) {
+            return body.get();
+        }
+        synchronized (stripes[from]) {
+            return withAllStripes(from + 1, body);
+        }
+    }
+
+    /**
+     * Apply a delete and log it when something was removed.
+     *
+     * @param store    store name
+     * @param id       id of the value being removed
+     * @param mutation removes the value, returning whether it existed
+     * @return the value returned by {@code mutation}
+     */
+    public boolean delete(String store, String id, BooleanSupplier mutation) {
+        if (wal == null) {
+            return mutation.getAsBoolean();
+        }
+        long start = System.nanoTime();
+        long ticket;
+        synchronized (stripe(store, id)) {
+            if (!mutation.getAsBoolean()) {
+                return false;
+            }
+            ticket = wal.append(encode(store, DELETE, id, null));
+        }
+        commit(ticket, start);
+        return true;
+    }
+
+    private void commit(long ticket, long start) {
+        if (wal.mode() == WriteAheadLog.SyncMode.GROUP) {
+            wal.awaitDurable(ticket);
+        }
+        commitTime.record(System.nanoTime() - start);
+        if (snapshotEvery > 0 && wal.segmentRecords() >= snapshotEvery && snapshotScheduled.compareAndSet(false, true)) {
+            snapshotter.execute(() -> {
+                try {
+                    snapshot();
+                } catch (IOException | RuntimeException e) {
+                    log.error("No se pudo escribir el snapshot", e);
+                } finally {
+                    snapshotScheduled.set(false);
+                }
+            });
+        }
+    }
+
+    private Object stripe(String store, String id) {
+        int h = store.hashCode() * 31 + (id != null ? id.hashCode() : 0);
+        return stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+
+    private byte[] encode(String store, String op, String id, Object value) {
+        JsonElement v = value != null ? gson.toJsonTree(value) : null;
+        return gson.toJson(new Entry(store, op, id, v)).getBytes(StandardCharsets.UTF_8);
+    }
+
+    // ------------------------------------------------------------------
+    // Recovery and snapshots
+    // ------------------------------------------------------------------
+
+    /**
+     * Rebuild the registered stores from the newest snapshot and the log
+     * written after it, then take a fresh snapshot so the next start only
+     * has to read that. When there is no snapshot yet (first start) the
+     * stores keep their initial data and the log is replayed on top.
+     *
+     * @throws UncheckedIOException when the data cannot be read or written
+     */
+    public synchronized void recover() {
+        if (wal == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        long[] records = new long[1];
+        try {
+            if (wal.hasSnapshot()) {
+                stores.values().forEach(DurableStore::clear);
+            }
+            wal.replay(payload -> {
+                apply(payload);
+                records[0]++;
+            });
+            long compacted = snapshot();
+            log.atInfo().addKeyValue("records", records[0]).addKeyValue("snapshot", compacted)
+                    .addKeyValue("ms", (System.nanoTime() - start) / 1_000_000)
+                    .log("Datos recuperados del write-ahead log");
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo recuperar el write-ahead log", e);
+        }
+    }
+
+    private void apply(byte[] payload) {
+        Entry entry = gson.fromJson(new String(payload, StandardCharsets.UTF_8), Entry.class);
+        DurableStore<?> store = stores.get(entry.s());
+        if (store == null) {
+            log.warn("Registro de un almacén desconocido: {}", entry.s());
+            return;
+        }
+        if (DELETE.equals(entry.op())) {
+            store.restoreRemove(entry.id());
+        } else {
+            restore(store, entry);
+        }
+    }
+
+    private <T> void restore(DurableStore<T> store, Entry entry) {
+        store.restore(entry.id(), gson.fromJson(entry.v(), store.type()));
+    }
+
+    /**
+     * Rotate the log and write the current state of every store as a
+     * snapshot, deleting the segments it replaces.
+     *
+     * @return number of values in the snapshot (0 when disabled)
+     * @throws IOException when the snapshot cannot be written
+     */
+    public long snapshot() throws IOException {
+        if (wal == null) {
+            return 0;
+        }
+        synchronized (snapshotLock) {
+            // Todo lo aplicado en memoria antes de rotar está en segmentos anteriores,
+            // así que el estado leído después de rotar los cubre
+            long generation = wal.rotate();
+            Iterator<byte[]> records = stores.entrySet().stream()
+                    .flatMap(e -> records(e.getKey(), e.getValue()))
+                    .iterator();
+            long count = wal.writeSnapshot(generation, records);
+            snapshots++;
+            return count;
+        }
+    }
+
+    private <T> Stream<byte[]> records(String name, DurableStore<T> store) {
+        return store.values().stream().map(value -> encode(name, PUT, store.idOf(value), value));
+    }
+
+    // ------------------------------------------------------------------
+    // Stats
+    // ------------------------------------------------------------------
+
+    /**
+     * @return time from a change to its record being durable (empty when disabled)
+     */
+    public LatencyHistogram commitTime() {
+        return commitTime;
+    }
+
+    /**
+     * @return records appended since start
+     */
+    public long appended() {
+        return wal != null ? wal.appended() : 0;
+    }
+
+    /**
+     * @return group commits (write + fsync) since start
+     */
+    public long batches() {
+        return wal != null ? wal.batches() : 0;
+    }
+
+    /**
+     * @return snapshots written since start
+     */
+    public long snapshots() {
+        return snapshots;
+    }
+
+    /**
+     * Flush pending records and close the log.
+     */
+    @Override
+    public void close() {
+        if (wal != null) {
+            snapshotter.shutdown();
+            wal.close();
+        }
+    }
+}
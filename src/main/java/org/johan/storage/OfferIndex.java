@@ -0,0 +1,271 @@
+package org.johan.storage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.johan.models.Offer;
+
+/**
+ * Concurrent in-memory store for offers, indexed by id and by item.
+ * <p>
+ * Offers are kept in a {@link ConcurrentHashMap} by id and in insertion
+ * order for the full listing. Every item also keeps its best bids (highest
+ * amount first) in a sorted set bounded to {@link #topCapacity()} entries,
+ * so asking for the top bids of an item costs O(log k + n) whatever the
+ * total bid history is; older, lower bids fall out of the set as new ones
+ * arrive.
+ * </p>
+ * <p>
+ * Every item also keeps the set of all its offers, so removing or changing
+ * a bid that is in the top set of an item with more bids than the bound
+ * refills the set by scanning that item's offers only, never the whole
+ * bid history.
+ * </p>
+ */
+public class OfferIndex {
+
+    /** Best bid first; ties (same amount) by newest sequence, then id. */
+    private static final Comparator<Offer> BEST_FIRST = Comparator
+            .comparingLong((Offer o) -> o.getCurrentBid() != null ? o.getCurrentBid().minor() : Long.MIN_VALUE)
+            .thenComparingLong(Offer::getSequence)
+            .reversed()
+            .thenComparing(Offer::getId);
+
+    /** Position of an offer in the insertion order. */
+    private record Slot(long position, Offer offer) {
+    }
+
+    /** Best bids of one item; guarded by its own monitor. */
+    private static final class ItemBids {
+        final TreeSet<Offer> top = new TreeSet<>(BEST_FIRST);
+        /** Offers of the item, including the ones outside {@link #top} (by identity). */
+        final Set<Offer> all = new HashSet<>();
+    }
+
+    private final int topCapacity;
+    private final ConcurrentHashMap<String, Slot> byId = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Long, Offer> byPosition = new ConcurrentSkipListMap<>();
+    private final Collection<Offer> values = Collections.unmodifiableCollection(byPosition.values());
+    private final ConcurrentHashMap<String, ItemBids> byItem = new ConcurrentHashMap<>();
+    private final AtomicLong positions = new AtomicLong();
+
+    /**
+     * @param topCapacity best bids kept per item (must be positive)
+     */
+    public OfferIndex(int topCapacity) {
+        if (topCapacity <= 0) {
+            throw new IllegalArgumentException("El número de mejores pujas por item debe ser positivo");
+        }
+        this.topCapacity = topCapacity;
+    }
+
+    /**
+     * @return maximum number of bids returned by {@link #top} for one item
+     */
+    public int topCapacity() {
+        return topCapacity;
+    }
+
+    /**
+     * @param id offer identifier
+     * @return the offer, or {@code null} when it does not exist
+     */
+    public Offer get(String id) {
+        Slot slot = id != null ? byId.get(id) : null;
+        return slot != null ? slot.offer() : null;
+    }
+
+    /**
+     * Store an offer, replacing any offer with the same id.
+     *
+     * @param offer offer with an id and an item id
+     * @return {@code offer}
+     */
+    public Offer add(Offer offer) {
+        remove(offer.getId());
+        long position = positions.getAndIncrement();
+        byId.put(offer.getId(), new Slot(position, offer));
+        byPosition.put(position, offer);
+        index(offer);
+        return offer;
+    }
+
+    /**
+     * @param id offer identifier
+     * @return the removed offer, or {@code null} when it does not exist
+     */
+    public Offer remove(String id) {
+        Slot slot = id != null ? byId.remove(id) : null;
+        if (slot == null) {
+            return null;
+        }
+        synchronized (slot.offer()) {
+            byPosition.remove(slot.position());
+            unindex(slot.offer());
+        }
+        return slot.offer();
+    }
+
+    /**
+     * Change an offer in place (item, amount or bidder) keeping its position
+     * in the listing and its item index up to date.
+     *
+     * @param id     offer identifier
+     * @param change applied to the stored offer
+     * @return the changed offer, or {@code null} when it does not exist
+     */
+    public Offer update(String id, Consumer<Offer> change) {
+        Offer offer = get(id);
+        if (offer == null) {
+            return null;
+        }
+        synchronized (offer) {
+            // Borrada mientras tanto
+            if (get(id) != offer) {
+                return null;
+            }
+            // El orden del TreeSet depende de los campos: se saca antes de cambiarlos
+            unindex(offer);
+            change.accept(offer);
+            index(offer);
+            return offer;
+        }
+    }
+
+    /**
+     * Change fields of an offer that the item index does not sort by (such
+     * as the winner flag) in place, under the offer's monitor and without
+     * taking it out of its item's top set.
+     *
+     * @param id     offer identifier
+     * @param change applied to the stored offer; must not touch the item, amount or sequence
+     * @return the changed offer, or {@code null} when it does not exist
+     */
+    public Offer updateUnindexed(String id, Consumer<Offer> change) {
+        Offer offer = get(id);
+        if (offer == null) {
+            return null;
+        }
+        synchronized (offer) {
+            if (get(id) != offer) {
+                return null;
+            }
+            change.accept(offer);
+            return offer;
+        }
+    }
+
+    /**
+     * @param itemId item identifier
+     * @param limit  maximum number of bids (capped at {@link #topCapacity()})
+     * @return the best bids of the item, highest first (empty when it has none)
+     */
+    public List<Offer> top(String itemId, int limit) {
+        ItemBids bids = itemId != null ? byItem.get(itemId) : null;
+        if (bids == null || limit <= 0) {
+            return Collections.emptyList();
+        }
+        synchronized (bids) {
+            List<Offer> result = new ArrayList<>(Math.min(limit, bids.top.size()));
+            Iterator<Offer> it = bids.top.iterator();
+            while (it.hasNext() && result.size() < limit) {
+                result.add(it.next());
+            }
+            return result;
+        }
+    }
+
+    /**
+     * @param itemId item identifier
+     * @return number of offers stored for the item
+     */
+    public int countForItem(String itemId) {
+        ItemBids bids = itemId != null ? byItem.get(itemId) : null;
+        if (bids == null) {
+            return 0;
+        }
+        synchronized (bids) {
+            return bids.all.size();
+        }
+    }
+
+    /**
+     * @return read-only view of all offers in insertion order (weakly consistent, never copied)
+     */
+    public Collection<Offer> values() {
+        return values;
+    }
+
+    /**
+     * @return number of offers stored
+     */
+    public int size() {
+        return byId.size();
+    }
+
+    /**
+     * Remove every offer.
+     */
+    public void clear() {
+        byId.clear();
+        byPosition.clear();
+        byItem.clear();
+    }
+
+    private void index(Offer offer) {
+        if (offer.getItemId() == null) {
+            return;
+        }
+        ItemBids bids = byItem.computeIfAbsent(offer.getItemId(), k -> new ItemBids());
+        synchronized (bids) {
+            bids.all.add(offer);
+            bids.top.add(offer);
+            if (bids.top.size() > topCapacity) {
+                bids.top.pollLast();
+            }
+        }
+    }
+
+    private void unindex(Offer offer) {
+        if (offer.getItemId() == null) {
+            return;
+        }
+        ItemBids bids = byItem.get(offer.getItemId());
+        if (bids == null) {
+            return;
+        }
+        synchronized (bids) {
+            bids.all.remove(offer);
+            if (bids.top.remove(offer) && bids.all.size() > bids.top.size()) {
+                refill(bids);
+            }
+        }
+    }
+
+    // Recupera la mejor puja que quedó fuera del conjunto acotado (solo recorre las ofertas del item)
+    private static void refill(ItemBids bids) {
+        // El conjunto guarda las mejores: las que faltan van después de la última
+        Offer last = bids.top.isEmpty() ? null : bids.top.last();
+        Offer best = null;
+        for (Offer candidate : bids.all) {
+            if ((last == null || BEST_FIRST.compare(candidate, last) > 0)
+                    && (best == null || BEST_FIRST.compare(candidate, best) < 0)) {
+                best = candidate;
+            }
+        }
+        if (best != null) {
+            bids.top.add(best);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package org.johan.storage;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Sorted set of item ordinals backed by a growable {@code int[]}.
+ * <p>
+ * Ordinals are handed out in increasing order, so the common case (adding a
+ * freshly created item) is an append. Iteration cost is proportional to the
+ * number of members, not to the size of the catalog. Not thread-safe: callers
+ * hold the {@link ItemCatalog} lock.
+ * </p>
+ * <p>
+ * Once the set holds at least one ordinal in {@value #DENSE_RATIO} of the
+ * range it covers (and {@value #DENSE_MIN_SIZE} of them), it switches to a
+ * {@link BitSet}: no bigger than the array at that density, and adding or
+ * removing an ordinal in the middle no longer shifts the rest of the array.
+ * Common words of the {@link TextIndex} and large categories end up dense.
+ * </p>
+ */
+class OrdinalSet {
+
+    /** Densidad a partir de la cual un bitset no ocupa más que el array. */
+    static final int DENSE_RATIO = 32;
+    static final int DENSE_MIN_SIZE = 1024;
+
+    private int[] ordinals;
+    private BitSet dense;
+    private int size;
+
+    OrdinalSet() {
+        this(8);
+    }
+
+    /**
+     * @param capacity initial capacity (at least 1); small for sets that
+     *                 usually hold a few ordinals, such as word postings
+     */
+    OrdinalSet(int capacity) {
+        ordinals = new int[Math.max(1, capacity)];
+    }
+
+    /**
+     * @param ordinal ordinal to add
+     * @return true when the ordinal was not present
+     */
+    boolean add(int ordinal) {
+        if (dense != null) {
+            if (dense.get(ordinal)) {
+                return false;
+            }
+            dense.set(ordinal);
+            size++;
+            return true;
+        }
+        if (size > 0 && ordinals[size - 1] < ordinal) {
+            ensureCapacity();
+            ordinals[size++] = ordinal;
+            densifyIfWorthIt();
+            return true;
+        }
+        int pos = Arrays.binarySearch(ordinals, 0, size, ordinal);
+        if (pos >= 0) {
+            return false;
+        }
+        int insertAt = -pos - 1;
+        ensureCapacity();
+        System.arraycopy(ordinals, insertAt, ordinals, insertAt + 1, size - insertAt);
+        ordinals[insertAt] = ordinal;
+        size++;
+        densifyIfWorthIt();
+        return true;
+    }
+
+    /**
+     * @param ordinal ordinal to remove
+     * @return true when the ordinal was present
+     */
+    boolean remove(int ordinal) {
+        if (dense != null) {
+            if (!dense.get(ordinal)) {
+                return false;
+            }
+            dense.clear(ordinal);
+            size--;
+            return true;
+        }
+        int pos = Arrays.binarySearch(ordinals, 0, size, ordinal);
+        if (pos < 0) {
+            return false;
+        }
+        System.arraycopy(ordinals, pos + 1, ordinals, pos, size - pos - 1);
+        size--;
+        return true;
+    }
+
+    boolean contains(int ordinal) {
+        if (dense != null) {
+            return dense.get(ordinal);
+        }
+        return Arrays.binarySearch(ordinals, 0, size, ordinal) >= 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Iterate the members in ascending order, starting at the first ordinal
+     * strictly greater than {@code after}.
+     *
+     * @param after lower bound (exclusive); use -1 to start from the beginning
+     * @return ascending iterator over the matching ordinals
+     */
+    PrimitiveIterator.OfInt iteratorAfter(int after) {
+        if (dense != null) {
+            BitSet bits = dense;
+            return new PrimitiveIterator.OfInt() {
+                private int next = bits.nextSetBit(after + 1);
+
+                @Override
+                public boolean hasNext() {
+                    return next >= 0;
+                }
+
+                @Override
+                public int nextInt() {
+                    if (next < 0) {
+                        throw new NoSuchElementException();
+                    }
+                    int current = next;
+                    next = bits.nextSetBit(current + 1);
+                    return current;
+                }
+            };
+        }
+        int pos = Arrays.binarySearch(ordinals, 0, size, after);
+        int start = pos >= 0 ? pos + 1 : -pos - 1;
+        return new PrimitiveIterator.OfInt() {
+            private int i = start;
+
+            @Override
+            public boolean hasNext() {
+                return i < size;
+            }
+
+            @Override
+            public int nextInt() {
+                if (i >= size) {
+                    throw new NoSuchElementException();
+                }
+                return ordinals[i++];
+            }
+        };
+    }
+
+    private void ensureCapacity() {
+        if (size == ordinals.length) {
+            ordinals = Arrays.copyOf(ordinals, size * 2);
+        }
+    }
+
+    // El último ordinal es el mayor: el bitset cubriría [0, último]
+    private void densifyIfWorthIt() {
+        if (size < DENSE_MIN_SIZE || (long) size * DENSE_RATIO < ordinals[size - 1] + 1L) {
+            return;
+        }
+        BitSet bits = new BitSet(ordinals[size - 1] + 1);
+        for (int i = 0; i < size; i++) {
+            bits.set(ordinals[i]);
+        }
+        dense = bits;
+        ordinals = null;
+    }
+}
@@ -0,0 +1,399 @@
+package org.johan.storage;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.PrimitiveIterator;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.IntFunction;
+
+import org.johan.models.Item;
+
+/**
+ * Inverted index over the words of item names and descriptions, kept by
+ * {@link ItemIndex} next to the attribute indexes.
+ * <p>
+ * Text is split into words of letters and digits, lower-cased and folded to
+ * the base letter, so "Rosalía", "ROSALIA" and "rosalia" are the same word.
+ * Each word maps to the sorted ordinals of the items that contain it, and
+ * the words are kept sorted, so the words starting with a prefix are one
+ * contiguous range of the dictionary: the last word of a query is matched
+ * as a prefix while it is being typed ("guit" finds "guitarra").
+ * </p>
+ * <p>
+ * A query is answered by walking the shortest posting list and probing
+ * the others, so its cost depends on the rarest word, not on the size of
+ * the catalog. Posting lists are {@link OrdinalSet}s, which turn into
+ * bitsets for common words (articles, prepositions, popular artists), so
+ * indexing an item never shifts a huge array and probing a common word is
+ * a single bit test. Updating an item only touches the words that changed.
+ * Same locking rules as {@link ItemIndex}.
+ * </p>
+ */
+public final class TextIndex {
+
+    /** Longer words are cut to this length, in the index and in queries alike. */
+    static final int MAX_WORD_LENGTH = 40;
+
+    /**
+     * Above this many words sharing the typed prefix, candidates coming from
+     * another index are checked against their own text instead of probing
+     * every posting list of the prefix.
+     */
+    private static final int MAX_PREFIX_PROBES = 16;
+
+    /** Letra base en minúscula de cada carácter latino (Latin-1 y Latin Extended-A/B); 0 si no es letra ni dígito. */
+    private static final char[] FOLD = buildFoldTable();
+
+    private final TreeMap<String, OrdinalSet> words = new TreeMap<>();
+
+    /**
+     * Split a text into folded words, in order (repeated words included).
+     *
+     * @param text text to split (nullable)
+     * @return the words, empty when the text has none
+     */
+    public static List<String> words(CharSequence text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        char[] word = new char[MAX_WORD_LENGTH];
+        int length = 0;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            char c = text.charAt(i);
+            char folded = fold(c);
+            if (folded != 0) {
+                if (length < MAX_WORD_LENGTH) {
+                    word[length++] = folded;
+                }
+            } else if (length > 0 && Character.getType(c) != Character.NON_SPACING_MARK) {
+                // Los acentos ya separados (NFD) no cortan la palabra
+                words.add(new String(word, 0, length));
+                length = 0;
+            }
+        }
+        if (length > 0) {
+            words.add(new String(word, 0, length));
+        }
+        return words;
+    }
+
+    /** Letra o dígito plegado, o 0 si el carácter separa palabras. */
+    private static char fold(char c) {
+        if (c < FOLD.length) {
+            return FOLD[c];
+        }
+        return Character.isLetterOrDigit(c) ? Character.toLowerCase(c) : 0;
+    }
+
+    private static char[] buildFoldTable() {
+        char[] table = new char[0x250];
+        for (char c = 0; c < table.length; c++) {
+            if (Character.isLetterOrDigit(c)) {
+                // "Í" se descompone en "I" + acento combinado; se queda la base
+                char lower = Character.toLowerCase(c);
+                table[c] = Normalizer.normalize(String.valueOf(lower), Normalizer.Form.NFD).charAt(0);
+            }
+        }
+        return table;
+    }
+
+    // ------------------------------------------------------------------
+    // Mutations (caller holds the catalog write lock)
+    // ------------------------------------------------------------------
+
+    // Las palabras repetidas no molestan: el ordinal ya está en su lista
+    void add(int ordinal, Item item) {
+        for (String word : words(item.getName())) {
+            addWord(word, ordinal);
+        }
+        for (String word : words(item.getDescription())) {
+            addWord(word, ordinal);
+        }
+    }
+
+    void replace(int ordinal, Item old, Item updated) {
+        Set<String> before = wordsOf(old);
+        Set<String> after = wordsOf(updated);
+        for (String word : before) {
+            if (!after.contains(word)) {
+                removeWord(word, ordinal);
+            }
+        }
+        for (String word : after) {
+            if (!before.contains(word)) {
+                addWord(word, ordinal);
+            }
+        }
+    }
+
+    void remove(int ordinal, Item item) {
+        for (String word : words(item.getName())) {
+            removeWord(word, ordinal);
+        }
+        for (String word : words(item.getDescription())) {
+            removeWord(word, ordinal);
+        }
+    }
+
+    private void addWord(String word, int ordinal) {
+        words.computeIfAbsent(word, k -> new OrdinalSet(1)).add(ordinal);
+    }
+
+    private void removeWord(String word, int ordinal) {
+        OrdinalSet set = words.get(word);
+        if (set != null && set.remove(ordinal) && set.isEmpty()) {
+            words.remove(word);
+        }
+    }
+
+    private static Set<String> wordsOf(Item item) {
+        Set<String> set = new HashSet<>(words(item.getName()));
+        set.addAll(words(item.getDescription()));
+        return set;
+    }
+
+    // ------------------------------------------------------------------
+    // Reads (caller holds the catalog read lock)
+    // ------------------------------------------------------------------
+
+    /**
+     * @return number of distinct words indexed
+     */
+    public int wordCount() {
+        return words.size();
+    }
+
+    /**
+     * Compile a search. Every word of the text must appear in an item for
+     * it to match; the last word also matches longer words it starts,
+     * unless the text ends with a separator (the user finished typing it).
+     *
+     * @param text  search text
+     * @param items ordinal to item, used to check candidates against their text
+     * @return the compiled query (matching nothing when a word is unknown)
+     */
+    Query query(String text, IntFunction<Item> items) {
+        List<String> terms = words(text);
+        boolean lastIsPrefix = !terms.isEmpty() && !text.isEmpty()
+                && Character.isLetterOrDigit(text.charAt(text.length() - 1));
+        String prefix = lastIsPrefix ? terms.remove(terms.size() - 1) : null;
+
+        List<OrdinalSet> exact = new ArrayList<>(terms.size());
+        for (String term : terms) {
+            OrdinalSet set = words.get(term);
+            if (set == null) {
+                return new Query(new OrdinalSet[0], null, List.of(), items, true);
+            }
+            exact.add(set);
+        }
+        List<OrdinalSet> expansions = new ArrayList<>();
+        if (prefix != null) {
+            for (Map.Entry<String, OrdinalSet> entry : words.tailMap(prefix, true).entrySet()) {
+                if (!entry.getKey().startsWith(prefix)) {
+                    break;
+                }
+                expansions.add(entry.getValue());
+            }
+            if (expansions.isEmpty()) {
+                return new Query(new OrdinalSet[0], null, List.of(), items, true);
+            }
+        }
+        OrdinalSet[] sorted = exact.toArray(new OrdinalSet[0]);
+        // La palabra más rara guía la consulta
+        Arrays.sort(sorted, Comparator.comparingInt(OrdinalSet::size));
+        return new Query(sorted, prefix, expansions, items, false);
+    }
+
+    /**
+     * A compiled search over the index. Valid while the read lock it was
+     * built under is held.
+     */
+    public static final class Query {
+
+        private final OrdinalSet[] exact;
+        private final String prefix;
+        private final List<OrdinalSet> expansions;
+        private final IntFunction<Item> items;
+        private final boolean none;
+
+        private Query(OrdinalSet[] exact, String prefix, List<OrdinalSet> expansions, IntFunction<Item> items,
+                      boolean none) {
+            this.exact = exact;
+            this.prefix = prefix;
+            this.expansions = expansions;
+            this.items = items;
+            this.none = none;
+        }
+
+        /**
+         * @return true when the search has no word at all
+         */
+        public boolean isBlank() {
+            return !none && exact.length == 0 && prefix == null;
+        }
+
+        /**
+         * Upper bound of the candidates {@link #ordinals(int)} walks, to
+         * compare with the other indexes.
+         *
+         * @return estimated number of candidates
+         */
+        public int estimate() {
+            if (none) {
+                return 0;
+            }
+            if (exact.length > 0) {
+                return exact[0].size();
+            }
+            long total = 0;
+            for (OrdinalSet set : expansions) {
+                total += set.size();
+            }
+            return (int) Math.min(total, Integer.MAX_VALUE);
+        }
+
+        /**
+         * @param after exclusive lower bound ordinal (-1 for all)
+         * @return ascending ordinals of the matching items
+         */
+        public PrimitiveIterator.OfInt ordinals(int after) {
+            if (none || isBlank()) {
+                return new OrdinalSet().iteratorAfter(after);
+            }
+            if (exact.length == 0) {
+                return expansions.size() == 1 ? expansions.get(0).iteratorAfter(after) : merge(after);
+            }
+            PrimitiveIterator.OfInt driver = exact[0].iteratorAfter(after);
+            return new OrdinalStream() {
+                @Override
+                int advance() {
+                    while (driver.hasNext()) {
+                        int ordinal = driver.nextInt();
+                        if (matchesRest(ordinal, 1)) {
+                            return ordinal;
+                        }
+                    }
+                    return -1;
+                }
+            };
+        }
+
+        /**
+         * Check a candidate found through another index.
+         *
+         * @param ordinal item ordinal
+         * @return true when the item contains every word of the search
+         */
+        public boolean matches(int ordinal) {
+            return !none && matchesRest(ordinal, 0);
+        }
+
+        private boolean matchesRest(int ordinal, int from) {
+            for (int i = from; i < exact.length; i++) {
+                if (!exact[i].contains(ordinal)) {
+                    return false;
+                }
+            }
+            return prefix == null || matchesPrefix(ordinal);
+        }
+
+        private boolean matchesPrefix(int ordinal) {
+            if (expansions.size() <= MAX_PREFIX_PROBES) {
+                for (OrdinalSet set : expansions) {
+                    if (set.contains(ordinal)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            Item item = items.apply(ordinal);
+            return item != null && (startsWord(item.getName()) || startsWord(item.getDescription()));
+        }
+
+        private boolean startsWord(String text) {
+            for (String word : words(text)) {
+                if (word.startsWith(prefix)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // Unión ordenada de las listas de todas las palabras del prefijo
+        private PrimitiveIterator.OfInt merge(int after) {
+            PriorityQueue<Head> heads = new PriorityQueue<>(expansions.size(), Comparator.comparingInt(h -> h.ordinal));
+            for (OrdinalSet set : expansions) {
+                PrimitiveIterator.OfInt it = set.iteratorAfter(after);
+                if (it.hasNext()) {
+                    heads.add(new Head(it.nextInt(), it));
+                }
+            }
+            return new OrdinalStream() {
+                private int last = after;
+
+                @Override
+                int advance() {
+                    while (!heads.isEmpty()) {
+                        Head head = heads.poll();
+                        int ordinal = head.ordinal;
+                        if (head.rest.hasNext()) {
+                            head.ordinal = head.rest.nextInt();
+                            heads.add(head);
+                        }
+                        if (ordinal > last) {
+                            last = ordinal;
+                            return ordinal;
+                        }
+                    }
+                    return -1;
+                }
+            };
+        }
+    }
+
+    /** Posting list in the middle of a merge: its current ordinal and the rest. */
+    private static final class Head {
+        int ordinal;
+        final PrimitiveIterator.OfInt rest;
+
+        Head(int ordinal, PrimitiveIterator.OfInt rest) {
+            this.ordinal = ordinal;
+            this.rest = rest;
+        }
+    }
+
+    /** Lazy ordinal iterator: {@link #advance()} returns the next ordinal or -1. */
+    private abstract static class OrdinalStream implements PrimitiveIterator.OfInt {
+        private static final int UNKNOWN = -2;
+        private int next = UNKNOWN;
+
+        abstract int advance();
+
+        @Override
+        public boolean hasNext() {
+            if (next == UNKNOWN) {
+                next = advance();
+            }
+            return next >= 0;
+        }
+
+        @Override
+        public int nextInt() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            int current = next;
+            next = UNKNOWN;
+            return current;
+        }
+    }
+}
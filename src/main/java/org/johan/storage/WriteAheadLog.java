@@ -0,0 +1,526 @@
+package org.johan.storage;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only, segmented log of opaque records with group commit.
+ * <p>
+ * Callers append framed records ({@code length, crc32, payload}) to an
+ * in-memory batch and receive a ticket. A single flusher thread writes the
+ * whole batch with one {@code write} and makes it durable with one
+ * {@code fsync}, so N concurrent writers pay for one disk flush instead of N.
+ * In {@link SyncMode#GROUP} callers wait on their ticket until that flush
+ * completes; in {@link SyncMode#ASYNC} they return immediately and the log
+ * is flushed every {@code flushIntervalMs}.
+ * </p>
+ * <p>
+ * Files in the directory:
+ * </p>
+ * <ul>
+ *   <li>{@code wal-N.log} – segment {@code N}; a new one is opened on every
+ *       start and every {@link #rotate()},</li>
+ *   <li>{@code snapshot-N.snap} – compacted records equivalent to every
+ *       segment before {@code N}; once written, those segments are deleted.</li>
+ * </ul>
+ * <p>
+ * Replay reads the newest snapshot and then the segments from its
+ * generation on, so recovery time depends on the snapshot size plus the
+ * records written since, not on the whole history. A torn or corrupt frame
+ * (crash during a write) ends the replay of its segment.
+ * </p>
+ */
+public final class WriteAheadLog implements AutoCloseable {
+
+    /** When a caller considers its record written. */
+    public enum SyncMode {
+        /** Wait for the fsync of the batch holding the record. */
+        GROUP,
+        /** Return after queueing; fsync every flush interval. */
+        ASYNC
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(WriteAheadLog.class);
+
+    private static final Pattern SEGMENT = Pattern.compile("wal-(\\d+)\\.log");
+    private static final Pattern SNAPSHOT = Pattern.compile("snapshot-(\\d+)\\.snap");
+
+    /** Frame header: payload length and CRC32 of the payload. */
+    private static final int HEADER_BYTES = 8;
+
+    /** Upper bound accepted for a payload while reading (guards against garbage lengths). */
+    private static final int MAX_RECORD_BYTES = 64 * 1024 * 1024;
+
+    private final Path dir;
+    private final SyncMode mode;
+    private final long flushIntervalMs;
+
+    private final Object lock = new Object();
+    private List<byte[]> queue = new ArrayList<>();
+    private long appendedSeq;
+    private long durableSeq;
+    private boolean rotateRequested;
+    private long rotatedTo = -1;
+    private boolean closed;
+    private IOException failure;
+
+    // Solo los toca el hilo flusher (y open/close)
+    private FileChannel channel;
+    private long generation;
+    private volatile long segmentRecords;
+
+    private volatile long batches;
+
+    private final Thread flusher;
+
+    private WriteAheadLog(Path dir, SyncMode mode, long flushIntervalMs) throws IOException {
+        this.dir = dir;
+        this.mode = mode;
+        this.flushIntervalMs = flushIntervalMs;
+        Files.createDirectories(dir);
+        this.generation = Math.max(lastGeneration(SEGMENT), lastGeneration(SNAPSHOT)) + 1;
+        this.channel = openSegment(generation);
+        this.flusher = new Thread(this::flushLoop, "wal-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Open the log in {@code dir}, creating the directory when needed. A new
+     * segment is started; existing files are only read by {@link #replay}.
+     *
+     * @param dir             directory holding segments and snapshots
+     * @param mode            durability mode of {@link #append}
+     * @param flushIntervalMs fsync interval in {@link SyncMode#ASYNC}
+     * @return the open log
+     * @throws IOException when the directory or the segment cannot be created
+     */
+    public static WriteAheadLog open(Path dir, SyncMode mode, long flushIntervalMs) throws IOException {
+        return new WriteAheadLog(dir, mode, Math.max(1, flushIntervalMs));
+    }
+
+    // ------------------------------------------------------------------
+    // Writing
+    // ------------------------------------------------------------------
+
+    /**
+     * Queue a record for the next batch. The payload is framed (length and
+     * checksum) on the calling thread.
+     *
+     * @param payload record bytes
+     * @return ticket to pass to {@link #awaitDurable(long)}
+     * @throws UncheckedIOException when the log already failed
+     */
+    public long append(byte[] payload) {
+        byte[] frame = frame(payload);
+        synchronized (lock) {
+            checkUsable();
+            queue.add(frame);
+            long ticket = ++appendedSeq;
+            // En modo ASYNC el flusher se despierta solo, una vez por intervalo
+            if (mode == SyncMode.GROUP && queue.size() == 1) {
+                lock.notifyAll();
+            }
+            return ticket;
+        }
+    }
+
+    /**
+     * Block until the record with the given ticket has been written (and,
+     * in {@link SyncMode#GROUP}, fsynced).
+     *
+     * @param ticket value returned by {@link #append(byte[])}
+     * @throws UncheckedIOException when writing the batch failed
+     */
+    public void awaitDurable(long ticket) {
+        synchronized (lock) {
+            while (durableSeq < ticket) {
+                // Al cerrar, el flusher escribe lo pendiente antes de terminar: solo un fallo corta la espera
+                if (failure != null) {
+                    throw new UncheckedIOException("El write-ahead log no está disponible", failure);
+                }
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrumpido esperando el registro", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Close the current segment after the records queued so far and start a
+     * new one. Records appended before this call end up in older segments.
+     *
+     * @return generation of the new segment (the one a snapshot taken now covers up to)
+     */
+    public long rotate() {
+        synchronized (lock) {
+            checkUsable();
+            long before = rotatedTo;
+            rotateRequested = true;
+            lock.notifyAll();
+            while (rotatedTo == before) {
+                checkUsable();
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrumpido rotando el log", e);
+                }
+            }
+            return rotatedTo;
+        }
+    }
+
+    private void checkUsable() {
+        if (failure != null) {
+            throw new UncheckedIOException("El write-ahead log no está disponible", failure);
+        }
+        if (closed) {
+            throw new IllegalStateException("El write-ahead log está cerrado");
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            List<byte[]> batch;
+            boolean rotate;
+            long upTo;
+            synchronized (lock) {
+                try {
+                    if (mode == SyncMode.GROUP) {
+                        // Mientras se hace un fsync los nuevos registros se acumulan en la cola
+                        while (queue.isEmpty() && !rotateRequested && !closed) {
+                            lock.wait();
+                        }
+                    } else if (!rotateRequested && !closed) {
+                        // Acumula escrituras durante el intervalo: un fsync por ventana
+                        lock.wait(flushIntervalMs);
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                batch = queue;
+                queue = new ArrayList<>();
+                rotate = rotateRequested;
+                upTo = appendedSeq;
+                if (batch.isEmpty() && closed) {
+                    return;
+                }
+            }
+
+            try {
+                if (!batch.isEmpty()) {
+                    write(batch);
+                }
+                long newGeneration = -1;
+                if (rotate) {
+                    channel.close();
+                    generation++;
+                    channel = openSegment(generation);
+                    segmentRecords = 0;
+                    newGeneration = generation;
+                }
+                synchronized (lock) {
+                    durableSeq = upTo;
+                    if (rotate) {
+                        rotateRequested = false;
+                        rotatedTo = newGeneration;
+                    }
+                    lock.notifyAll();
+                }
+            } catch (IOException e) {
+                log.error("Fallo escribiendo el write-ahead log en {}", dir, e);
+                synchronized (lock) {
+                    failure = e;
+                    lock.notifyAll();
+                }
+                return;
+            }
+        }
+    }
+
+    private void write(List<byte[]> batch) throws IOException {
+        ByteBuffer[] buffers = new ByteBuffer[batch.size()];
+        long remaining = 0;
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = ByteBuffer.wrap(batch.get(i));
+            remaining += buffers[i].remaining();
+        }
+        while (remaining > 0) {
+            remaining -= channel.write(buffers);
+        }
+        channel.force(false);
+        segmentRecords += batch.size();
+        batches++;
+    }
+
+    private FileChannel openSegment(long gen) throws IOException {
+        FileChannel segment = FileChannel.open(segmentPath(gen), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        syncDirectory();
+        return segment;
+    }
+
+    /**
+     * @return records written to the current segment
+     */
+    public long segmentRecords() {
+        return segmentRecords;
+    }
+
+    /**
+     * @return batches written so far (each one is a single write + fsync)
+     */
+    public long batches() {
+        return batches;
+    }
+
+    /**
+     * @return records appended so far
+     */
+    public long appended() {
+        synchronized (lock) {
+            return appendedSeq;
+        }
+    }
+
+    /**
+     * @return durability mode of this log
+     */
+    public SyncMode mode() {
+        return mode;
+    }
+
+    // ------------------------------------------------------------------
+    // Snapshots
+    // ------------------------------------------------------------------
+
+    /**
+     * Write a snapshot holding {@code records} as the compacted form of every
+     * segment before {@code generation}, then delete those segments and any
+     * older snapshot. The file is written under a temporary name, fsynced
+     * and renamed, so a crash never leaves a partial snapshot behind.
+     *
+     * @param generation value returned by {@link #rotate()}
+     * @param records    payloads that rebuild the state
+     * @return number of records in the snapshot
+     * @throws IOException when the snapshot cannot be written
+     */
+    public long writeSnapshot(long generation, Iterator<byte[]> records) throws IOException {
+        Path target = snapshotPath(generation);
+        Path tmp = dir.resolve(target.getFileName() + ".tmp");
+        long count = 0;
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+            while (records.hasNext()) {
+                byte[] frame = frame(records.next());
+                if (frame.length > buffer.remaining()) {
+                    drain(out, buffer);
+                }
+                if (frame.length > buffer.capacity()) {
+                    out.write(ByteBuffer.wrap(frame));
+                } else {
+                    buffer.put(frame);
+                }
+                count++;
+            }
+            drain(out, buffer);
+            out.force(true);
+        }
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        syncDirectory();
+
+        for (Path old : list(SEGMENT)) {
+            if (generationOf(old, SEGMENT) < generation) {
+                Files.deleteIfExists(old);
+            }
+        }
+        for (Path old : list(SNAPSHOT)) {
+            if (generationOf(old, SNAPSHOT) < generation) {
+                Files.deleteIfExists(old);
+            }
+        }
+        return count;
+    }
+
+    private static void drain(FileChannel out, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    // ------------------------------------------------------------------
+    // Replay
+    // ------------------------------------------------------------------
+
+    /**
+     * @return true when a snapshot exists in the directory
+     * @throws IOException when the directory cannot be listed
+     */
+    public boolean hasSnapshot() throws IOException {
+        return !list(SNAPSHOT).isEmpty();
+    }
+
+    /**
+     * Feed every durable record to {@code consumer}: first the newest
+     * snapshot (if any), then the segments written after it, in order.
+     *
+     * @param consumer receives each payload
+     * @return true when a snapshot was found (the state it holds is complete)
+     * @throws IOException when a file cannot be read
+     */
+    public boolean replay(Consumer<byte[]> consumer) throws IOException {
+        long snapshotGen = -1;
+        for (Path snapshot : list(SNAPSHOT)) {
+            snapshotGen = Math.max(snapshotGen, generationOf(snapshot, SNAPSHOT));
+        }
+        if (snapshotGen >= 0) {
+            readFrames(snapshotPath(snapshotGen), consumer);
+        }
+        List<Path> segments = list(SEGMENT);
+        segments.sort((a, b) -> Long.compare(generationOf(a, SEGMENT), generationOf(b, SEGMENT)));
+        for (Path segment : segments) {
+            long gen = generationOf(segment, SEGMENT);
+            if (gen >= snapshotGen && gen != generation) {
+                readFrames(segment, consumer);
+            }
+        }
+        return snapshotGen >= 0;
+    }
+
+    private static void readFrames(Path file, Consumer<byte[]> consumer) throws IOException {
+        long records = 0;
+        try (InputStream raw = Files.newInputStream(file);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(raw, 1 << 16))) {
+            CRC32 crc = new CRC32();
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException end) {
+                    return;
+                }
+                if (length < 0 || length > MAX_RECORD_BYTES) {
+                    log.warn("Registro corrupto en {} tras {} registros: longitud {}", file, records, length);
+                    return;
+                }
+                byte[] payload = new byte[length];
+                int checksum;
+                try {
+                    checksum = in.readInt();
+                    in.readFully(payload);
+                } catch (EOFException torn) {
+                    log.warn("Registro incompleto al final de {} tras {} registros", file, records);
+                    return;
+                }
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    log.warn("Checksum inválido en {} tras {} registros", file, records);
+                    return;
+                }
+                consumer.accept(payload);
+                records++;
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // Files
+    // ------------------------------------------------------------------
+
+    private static byte[] frame(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+        frame.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+        return frame.array();
+    }
+
+    private Path segmentPath(long gen) {
+        return dir.resolve(String.format("wal-%010d.log", gen));
+    }
+
+    private Path snapshotPath(long gen) {
+        return dir.resolve(String.format("snapshot-%010d.snap", gen));
+    }
+
+    private List<Path> list(Pattern pattern) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> entries = Files.list(dir)) {
+            entries.filter(p -> pattern.matcher(p.getFileName().toString()).matches()).forEach(files::add);
+        }
+        return files;
+    }
+
+    private long lastGeneration(Pattern pattern) throws IOException {
+        long last = 0;
+        for (Path file : list(pattern)) {
+            last = Math.max(last, generationOf(file, pattern));
+        }
+        return last;
+    }
+
+    private static long generationOf(Path file, Pattern pattern) {
+        Matcher m = pattern.matcher(file.getFileName().toString());
+        return m.matches() ? Long.parseLong(m.group(1)) : -1;
+    }
+
+    // Un fichero recién creado o renombrado solo es durable si también lo es su directorio
+    private void syncDirectory() {
+        try (FileChannel d = FileChannel.open(dir, StandardOpenOption.READ)) {
+            d.force(true);
+        } catch (IOException e) {
+            // Algunos sistemas no permiten abrir directorios; el fsync del fichero sigue valiendo
+        }
+    }
+
+    /**
+     * Flush what is queued and close the current segment.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            flusher.join();
+            channel.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.warn("No se pudo cerrar el segmento del write-ahead log", e);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package org.johan.templates;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Size-bounded LRU cache of rendered HTML pages.
+ * <p>
+ * Each entry remembers the catalog version it was rendered from; a lookup
+ * with a different version is a miss, so any catalog change (new item,
+ * price update, ...) invalidates every cached page without having to
+ * notify the cache. Keys are built by the caller from the normalized
+ * request parameters.
+ * </p>
+ */
+public class PageCache {
+
+    /** Distinguishes ETags issued by different runs of the server. */
+    private static final String BOOT_ID = Long.toHexString(System.currentTimeMillis());
+
+    private final Map<String, Entry> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private record Entry(long version, String html) {
+    }
+
+    /**
+     * @param maxEntries maximum number of pages kept; the least recently
+     *                   used page is evicted beyond that
+     */
+    public PageCache(int maxEntries) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @param key     normalized request key
+     * @param version current catalog version
+     * @return the cached page, or {@code null} when absent or stale
+     */
+    public String get(String key, long version) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry != null && entry.version() == version) {
+            hits.increment();
+            return entry.html();
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * @param key     normalized request key
+     * @param version catalog version the page was rendered from
+     * @param html    rendered page
+     */
+    public void put(String key, long version, String html) {
+        synchronized (entries) {
+            entries.put(key, new Entry(version, html));
+        }
+    }
+
+    /**
+     * Entity tag for the page identified by {@code key} at {@code version}.
+     * It can be computed before rendering, so revalidations answered with
+     * 304 cost neither a render nor a cache lookup.
+     *
+     * @param key     normalized request key
+     * @param version current catalog version
+     * @return quoted ETag value
+     */
+    public String etag(String key, long version) {
+        return "\"" + BOOT_ID + "-" + version + "-" + Integer.toHexString(key.hashCode()) + "\"";
+    }
+
+    /**
+     * @param ifNoneMatch value of the {@code If-None-Match} header (nullable)
+     * @param etag        current ETag
+     * @return true when the client already holds the current version
+     */
+    public static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public long getHits() { return hits.sum(); }
+    public long getMisses() { return misses.sum(); }
+    public long getEvictions() { return evictions.sum(); }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+}
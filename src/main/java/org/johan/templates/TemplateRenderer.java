@@ -0,0 +1,177 @@
+package org.johan.templates;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+
+import com.github.mustachejava.DefaultMustacheFactory;
+import com.github.mustachejava.Mustache;
+import com.github.mustachejava.MustacheFactory;
+
+import spark.ModelAndView;
+import spark.TemplateEngine;
+
+/**
+ * Application-wide Mustache template engine.
+ * <p>
+ * A single instance is created in {@code Main} and shared by every
+ * controller. {@link #precompileAll()} compiles every {@code .mustache} file
+ * under {@code resources/templates} (partials included) at startup, and the
+ * compiled templates are cached, so rendering a page never re-parses a
+ * template. Render counts and timings are kept per template.
+ * </p>
+ */
+public class TemplateRenderer extends TemplateEngine {
+
+    private static final String ROOT = "templates";
+    private static final String EXTENSION = ".mustache";
+
+    private final MustacheFactory factory;
+    private final ConcurrentHashMap<String, Mustache> compiled = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, RenderStats> stats = new ConcurrentHashMap<>();
+
+    /**
+     * Render counters of a single template.
+     */
+    public static class RenderStats {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+        }
+
+        public long getCount() { return count.sum(); }
+        public long getTotalNanos() { return totalNanos.sum(); }
+        public long getMaxNanos() { return maxNanos.get(); }
+        public double getAvgMillis() {
+            long n = getCount();
+            return n == 0 ? 0.0 : getTotalNanos() / (double) n / 1_000_000.0;
+        }
+    }
+
+    public TemplateRenderer() {
+        this.factory = new DefaultMustacheFactory(ROOT);
+    }
+
+    /**
+     * Compile and cache every template found under {@code resources/templates}.
+     *
+     * @return names of the compiled templates
+     * @throws IllegalStateException when the templates cannot be listed
+     */
+    public List<String> precompileAll() {
+        List<String> names = listTemplates();
+        for (String name : names) {
+            template(name);
+        }
+        return names;
+    }
+
+    /**
+     * Render a view with its cached compiled template.
+     *
+     * @param modelAndView model and template name (e.g. {@code "tienda.mustache"})
+     * @return the rendered HTML
+     */
+    @Override
+    public String render(ModelAndView modelAndView) {
+        String name = modelAndView.getViewName();
+        Mustache mustache = template(name);
+
+        long start = System.nanoTime();
+        StringWriter out = new StringWriter(8 * 1024);
+        mustache.execute(out, modelAndView.getModel());
+        stats.computeIfAbsent(name, k -> new RenderStats()).record(System.nanoTime() - start);
+        return out.toString();
+    }
+
+    /**
+     * @return render counters per template name, sorted by name
+     */
+    public Map<String, RenderStats> renderStats() {
+        return Collections.unmodifiableMap(new TreeMap<>(stats));
+    }
+
+    /**
+     * Plain-value summary of {@link #renderStats()} (count, average and
+     * maximum render time in milliseconds), suitable for JSON output.
+     *
+     * @return summary per template name, sorted by name
+     */
+    public Map<String, Map<String, Object>> renderSummary() {
+        Map<String, Map<String, Object>> summary = new TreeMap<>();
+        stats.forEach((name, s) -> {
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("count", s.getCount());
+            values.put("avgMillis", s.getAvgMillis());
+            values.put("maxMillis", s.getMaxNanos() / 1_000_000.0);
+            summary.put(name, values);
+        });
+        return summary;
+    }
+
+    private Mustache template(String name) {
+        return compiled.computeIfAbsent(name, factory::compile);
+    }
+
+    private List<String> listTemplates() {
+        URL root = getClass().getClassLoader().getResource(ROOT);
+        if (root == null) {
+            return Collections.emptyList();
+        }
+        try {
+            if ("jar".equals(root.getProtocol())) {
+                return listJarTemplates(root);
+            }
+            Path dir = Paths.get(root.toURI());
+            try (Stream<Path> files = Files.walk(dir)) {
+                return files.filter(p -> p.toString().endsWith(EXTENSION))
+                        .map(p -> dir.relativize(p).toString().replace('\\', '/'))
+                        .sorted()
+                        .toList();
+            }
+        } catch (IOException | URISyntaxException e) {
+            throw new IllegalStateException("No se pudieron listar las plantillas", e);
+        }
+    }
+
+    private static List<String> listJarTemplates(URL root) throws IOException {
+        URLConnection connection = root.openConnection();
+        connection.setUseCaches(false);
+        List<String> names = new ArrayList<>();
+        try (JarFile jar = ((JarURLConnection) connection).getJarFile()) {
+            Enumeration<JarEntry> entries = jar.entries();
+            while (entries.hasMoreElements()) {
+                String entry = entries.nextElement().getName();
+                if (entry.startsWith(ROOT + "/") && entry.endsWith(EXTENSION)) {
+                    names.add(entry.substring(ROOT.length() + 1));
+                }
+            }
+        }
+        Collections.sort(names);
+        return names;
+    }
+}
@@ -0,0 +1,280 @@
+package org.johan.websocket;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.johan.metrics.LatencyHistogram;
+
+/**
+ * Asynchronous fan-out of messages to every connected client.
+ * <p>
+ * {@link #broadcast(String)}, {@link #publishPrice(String, String, String)} and
+ * {@link #publishPrices(List)} only
+ * append to each client's {@link SessionOutbox} and return; frames are
+ * written by a small pool of broadcast threads using non-blocking sends.
+ * The thread that publishes (for example an HTTP request updating a price)
+ * is never blocked by a slow client. Clients that cannot keep up are
+ * handled according to the configured {@link SlowConsumerPolicy}.
+ * </p>
+ * <p>
+ * Price updates only reach the sessions subscribed to the item, to its
+ * category or to everything (see {@link TopicRegistry}).
+ * </p>
+ */
+public class BroadcastEngine {
+
+    /** Close code sent to disconnected slow consumers (policy violation). */
+    static final int SLOW_CONSUMER_CLOSE_CODE = 1008;
+
+    private final ConcurrentHashMap<OutboundChannel, SessionOutbox> outboxes = new ConcurrentHashMap<>();
+    private final TopicRegistry topics = new TopicRegistry();
+    private final ExecutorService executor;
+    private final int queueCapacity;
+    private final SlowConsumerPolicy policy;
+    private final Stats stats = new Stats();
+    /** Time spent queueing one message or price update for all its recipients. */
+    private final LatencyHistogram fanoutTime = new LatencyHistogram();
+
+    /**
+     * One entry of a batch price frame.
+     *
+     * @param itemId   item whose price changed
+     * @param category category of the item (nullable), used for routing
+     * @param pair     {@code ITEM_ID:PRICE} text of the update
+     */
+    public record PriceUpdate(String itemId, String category, String pair) {
+    }
+
+    /**
+     * Delivery counters of the engine.
+     */
+    public static class Stats {
+        final LongAdder delivered = new LongAdder();
+        final LongAdder coalesced = new LongAdder();
+        final LongAdder dropped = new LongAdder();
+        final LongAdder disconnected = new LongAdder();
+        final LongAdder failed = new LongAdder();
+
+        /** @return frames written successfully */
+        public long getDelivered() { return delivered.sum(); }
+        /** @return price updates merged into a pending update of the same item */
+        public long getCoalesced() { return coalesced.sum(); }
+        /** @return messages discarded because a queue was full */
+        public long getDropped() { return dropped.sum(); }
+        /** @return clients closed as slow consumers */
+        public long getDisconnected() { return disconnected.sum(); }
+        /** @return frames whose write failed */
+        public long getFailed() { return failed.sum(); }
+    }
+
+    /**
+     * @param queueCapacity maximum pending frames per client
+     * @param policy        what to do when a client's queue is full
+     * @param threads       number of broadcast threads
+     */
+    public BroadcastEngine(int queueCapacity, SlowConsumerPolicy policy, int threads) {
+        if (queueCapacity < 1 || threads < 1) {
+            throw new IllegalArgumentException("queueCapacity y threads deben ser positivos");
+        }
+        this.queueCapacity = queueCapacity;
+        this.policy = policy;
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "ws-broadcast-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public void register(OutboundChannel channel) {
+        SessionOutbox outbox = new SessionOutbox(channel, this);
+        outboxes.put(channel, outbox);
+        topics.register(outbox);
+    }
+
+    public void unregister(OutboundChannel channel) {
+        SessionOutbox outbox = outboxes.remove(channel);
+        if (outbox != null) {
+            topics.unregister(outbox);
+            outbox.close();
+        }
+    }
+
+    /**
+     * Subscribe a client to a topic. The first specific subscription stops
+     * the client from receiving every update.
+     *
+     * @param channel registered client
+     * @param topic   normalized topic (see {@link TopicRegistry#parse})
+     * @return true when the subscription was added
+     */
+    public boolean subscribe(OutboundChannel channel, String topic) {
+        SessionOutbox outbox = outboxes.get(channel);
+        return outbox != null && topics.subscribe(outbox, topic);
+    }
+
+    /**
+     * @param channel registered client
+     * @param topic   normalized topic
+     * @return true when the client was subscribed to the topic
+     */
+    public boolean unsubscribe(OutboundChannel channel, String topic) {
+        SessionOutbox outbox = outboxes.get(channel);
+        return outbox != null && topics.unsubscribe(outbox, topic);
+    }
+
+    /**
+     * Queue a message for every client, in order, without coalescing.
+     */
+    public void broadcast(String message) {
+        long start = System.nanoTime();
+        for (SessionOutbox outbox : outboxes.values()) {
+            outbox.offer(message);
+        }
+        fanoutTime.record(System.nanoTime() - start);
+    }
+
+    /**
+     * Queue a message for a single client.
+     *
+     * @param channel registered client
+     * @param message frame to send
+     */
+    public void send(OutboundChannel channel, String message) {
+        SessionOutbox outbox = outboxes.get(channel);
+        if (outbox != null) {
+            outbox.offer(message);
+        }
+    }
+
+    /**
+     * Queue a price update for the clients interested in the item. Clients
+     * that still have an unsent update for the same item get that update
+     * replaced.
+     *
+     * @param itemId   item whose price changed (coalescing key)
+     * @param category category of the item (nullable)
+     * @param message  frame to send
+     */
+    public void publishPrice(String itemId, String category, String message) {
+        long start = System.nanoTime();
+        topics.forEachSubscriber(itemId, category, outbox -> outbox.offerPrice(itemId, message));
+        fanoutTime.record(System.nanoTime() - start);
+    }
+
+    /**
+     * Queue a message about an item (not a price) for the clients interested
+     * in it, in order and without coalescing.
+     *
+     * @param itemId   item the message is about
+     * @param category category of the item (nullable)
+     * @param message  frame to send
+     */
+    public void publishEvent(String itemId, String category, String message) {
+        long start = System.nanoTime();
+        topics.forEachSubscriber(itemId, category, outbox -> outbox.offer(message));
+        fanoutTime.record(System.nanoTime() - start);
+    }
+
+    /**
+     * Queue many price updates as a single frame per client, with the pairs
+     * separated by {@link PriceBatcher#PAIR_SEPARATOR}. Clients subscribed
+     * to everything share one frame; clients subscribed to items or
+     * categories get a frame with just their pairs, and nothing when none
+     * of the updates concerns them. Each pair is coalesced with the client's
+     * unsent prices like {@link #publishPrice(String, String, String)}.
+     *
+     * @param updates updates to send, at most one per item
+     */
+    public void publishPrices(List<PriceUpdate> updates) {
+        if (updates.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        Map<SessionOutbox, List<PriceUpdate>> perSession = new HashMap<>();
+        for (PriceUpdate update : updates) {
+            topics.forEachTopicSubscriber(update.itemId(), update.category(),
+                    outbox -> perSession.computeIfAbsent(outbox, k -> new ArrayList<>()).add(update));
+        }
+        PriceFrame all = new PriceFrame(updates);
+        topics.forEach(TopicRegistry.ALL, outbox -> outbox.offerPrices(all));
+        perSession.forEach((outbox, own) -> outbox.offerPrices(new PriceFrame(own)));
+        fanoutTime.record(System.nanoTime() - start);
+    }
+
+    /**
+     * @return number of registered clients
+     */
+    public int sessionCount() {
+        return outboxes.size();
+    }
+
+    /**
+     * @return total frames waiting in all client queues
+     */
+    public long pendingFrames() {
+        long total = 0;
+        for (SessionOutbox outbox : outboxes.values()) {
+            total += outbox.pending();
+        }
+        return total;
+    }
+
+    public Stats stats() {
+        return stats;
+    }
+
+    public TopicRegistry topics() {
+        return topics;
+    }
+
+    /**
+     * @return distribution of the time spent fanning a message out to its recipients
+     */
+    public LatencyHistogram fanoutTime() {
+        return fanoutTime;
+    }
+
+    /**
+     * Stop the broadcast threads, waiting briefly for queued sends.
+     */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    int queueCapacity() {
+        return queueCapacity;
+    }
+
+    SlowConsumerPolicy policy() {
+        return policy;
+    }
+
+    ExecutorService executor() {
+        return executor;
+    }
+
+    void disconnect(SessionOutbox outbox) {
+        if (outboxes.remove(outbox.channel(), outbox)) {
+            topics.unregister(outbox);
+        }
+        try {
+            outbox.channel().close(SLOW_CONSUMER_CLOSE_CODE, "Cliente demasiado lento");
+        } catch (RuntimeException e) {
+            stats.failed.increment();
+        }
+    }
+}
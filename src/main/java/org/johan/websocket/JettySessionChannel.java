@@ -0,0 +1,55 @@
+package org.johan.websocket;
+
+import java.util.function.Consumer;
+
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+
+/**
+ * {@link OutboundChannel} backed by a Jetty WebSocket {@link Session}, using
+ * the asynchronous {@code sendString(String, WriteCallback)}.
+ * Two channels are equal when they wrap the same session.
+ */
+final class JettySessionChannel implements OutboundChannel {
+
+    private final Session session;
+
+    JettySessionChannel(Session session) {
+        this.session = session;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return session.isOpen();
+    }
+
+    @Override
+    public void send(String message, Consumer<Throwable> onComplete) {
+        session.getRemote().sendString(message, new WriteCallback() {
+            @Override
+            public void writeFailed(Throwable error) {
+                onComplete.accept(error);
+            }
+
+            @Override
+            public void writeSuccess() {
+                onComplete.accept(null);
+            }
+        });
+    }
+
+    @Override
+    public void close(int statusCode, String reason) {
+        session.close(statusCode, reason);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof JettySessionChannel c && c.session == session;
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(session);
+    }
+}
@@ -0,0 +1,35 @@
+package org.johan.websocket;
+
+import java.util.function.Consumer;
+
+/**
+ * Destination of broadcast messages: one connected WebSocket client.
+ * <p>
+ * Kept as an interface so the {@link BroadcastEngine} does not depend on
+ * Jetty directly (and can be load-tested with simulated clients).
+ * </p>
+ */
+public interface OutboundChannel {
+
+    /**
+     * @return true while the client is connected
+     */
+    boolean isOpen();
+
+    /**
+     * Send a text frame without blocking the caller.
+     *
+     * @param message    text to send
+     * @param onComplete called once the frame was written ({@code null}) or
+     *                   the write failed (the error)
+     */
+    void send(String message, Consumer<Throwable> onComplete);
+
+    /**
+     * Close the connection.
+     *
+     * @param statusCode WebSocket close code
+     * @param reason     close reason sent to the client
+     */
+    void close(int statusCode, String reason);
+}
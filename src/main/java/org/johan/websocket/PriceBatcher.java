@@ -0,0 +1,139 @@
+package org.johan.websocket;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Micro-batching of price updates.
+ * <p>
+ * Updates published within one window (typically 20–50 ms) are merged,
+ * keeping only the latest price per item, and sent to every client as a
+ * single frame of {@code ITEM_ID:PRICE} pairs separated by {@code ;}:
+ * </p>
+ * <pre>item1:120.00;item7:89.50;item3:15.25</pre>
+ * <p>
+ * A window with a single update produces exactly the classic
+ * {@code ITEM_ID:PRICE} frame, so old clients keep working for the common case.
+ * </p>
+ * <p>
+ * Clients subscribed to everything share one frame; clients subscribed to
+ * items or categories get a frame with just their pairs.
+ * </p>
+ */
+public class PriceBatcher {
+
+    /** Separator between pairs of a batch frame. */
+    public static final char PAIR_SEPARATOR = ';';
+
+    /** Latest update of an item within the window. */
+    private record PendingPrice(String category, String pair) {
+    }
+
+    private final BroadcastEngine engine;
+    private final ConcurrentHashMap<String, PendingPrice> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final LongAdder published = new LongAdder();
+    private final LongAdder frames = new LongAdder();
+    private final LongAdder pairs = new LongAdder();
+
+    /**
+     * @param engine   engine used to send the batch frames
+     * @param windowMs batching window in milliseconds (must be positive)
+     */
+    public PriceBatcher(BroadcastEngine engine, long windowMs) {
+        if (windowMs <= 0) {
+            throw new IllegalArgumentException("La ventana de agrupación debe ser positiva");
+        }
+        this.engine = engine;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ws-price-batcher");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleAtFixedRate(this::flush, windowMs, windowMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Record a price update; it is sent with the next batch. A newer update
+     * of the same item within the window replaces this one.
+     *
+     * @param itemId   item whose price changed
+     * @param category category of the item (nullable), used for routing
+     * @param pair     {@code ITEM_ID:PRICE} text of the update
+     */
+    public void publish(String itemId, String category, String pair) {
+        pending.put(itemId, new PendingPrice(category, pair));
+        published.increment();
+    }
+
+    /**
+     * Record many price updates and send them, together with anything else
+     * pending, as one frame right away instead of waiting for the window.
+     *
+     * @param updates updates to send
+     */
+    public synchronized void publishAll(List<BroadcastEngine.PriceUpdate> updates) {
+        for (BroadcastEngine.PriceUpdate update : updates) {
+            publish(update.itemId(), update.category(), update.pair());
+        }
+        flush();
+    }
+
+    /**
+     * Send everything accumulated so far as one frame. Called by the
+     * scheduler every window; safe to call from other threads.
+     */
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<BroadcastEngine.PriceUpdate> batch = new ArrayList<>(pending.size());
+        for (Map.Entry<String, PendingPrice> entry : pending.entrySet()) {
+            PendingPrice update = entry.getValue();
+            // Si llegó un precio más nuevo mientras tanto se queda para el siguiente lote
+            if (pending.remove(entry.getKey(), update)) {
+                batch.add(new BroadcastEngine.PriceUpdate(entry.getKey(), update.category(), update.pair()));
+            }
+        }
+        if (!batch.isEmpty()) {
+            engine.publishPrices(batch);
+            frames.increment();
+            pairs.add(batch.size());
+        }
+    }
+
+    /**
+     * @return updates received by {@link #publish}
+     */
+    public long getPublished() {
+        return published.sum();
+    }
+
+    /**
+     * @return batches sent (one per window with updates)
+     */
+    public long getFrames() {
+        return frames.sum();
+    }
+
+    /**
+     * @return item/price pairs sent (updates minus the ones merged in a window)
+     */
+    public long getPairs() {
+        return pairs.sum();
+    }
+
+    /**
+     * Stop the window timer after sending what is pending.
+     */
+    public void shutdown() {
+        scheduler.shutdown();
+        flush();
+    }
+}
@@ -0,0 +1,80 @@
+package org.johan.websocket;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Batch of price updates sent as one {@code ID:PRICE;ID:PRICE} frame. The
+ * text is built once and shared by every session that receives the batch
+ * unchanged; a session that still has an unsent price of one of its items
+ * merges the batch pair by pair instead (see {@link SessionOutbox}).
+ */
+final class PriceFrame {
+
+    private final Map<String, String> pairs;
+    private final String text;
+    /** Last answer of {@link #sameItems}; a race only recomputes it. */
+    private volatile Comparison lastComparison;
+
+    private record Comparison(PriceFrame other, boolean same) {
+    }
+
+    /**
+     * @param updates updates of the frame (a later update of the same item wins)
+     */
+    PriceFrame(List<BroadcastEngine.PriceUpdate> updates) {
+        pairs = new LinkedHashMap<>(Math.max(4, updates.size() * 2));
+        for (BroadcastEngine.PriceUpdate update : updates) {
+            pairs.put(update.itemId(), update.pair());
+        }
+        text = join(pairs.values());
+    }
+
+    /**
+     * @param pairs {@code ITEM_ID:PRICE} texts
+     * @return the frame text; a single pair is the classic {@code ITEM_ID:PRICE} frame
+     */
+    static String join(Iterable<String> pairs) {
+        StringBuilder frame = new StringBuilder(64);
+        for (String pair : pairs) {
+            if (frame.length() > 0) {
+                frame.append(PriceBatcher.PAIR_SEPARATOR);
+            }
+            frame.append(pair);
+        }
+        return frame.toString();
+    }
+
+    /**
+     * Whether both frames carry the same items. Every session compares the
+     * same pair of frames, so the answer is remembered for the last one.
+     */
+    boolean sameItems(PriceFrame other) {
+        Comparison comparison = lastComparison;
+        if (comparison == null || comparison.other() != other) {
+            boolean same = pairs.size() == other.pairs.size() && pairs.keySet().containsAll(other.pairs.keySet());
+            comparison = new Comparison(other, same);
+            lastComparison = comparison;
+        }
+        return comparison.same();
+    }
+
+    boolean contains(String itemId) {
+        return pairs.containsKey(itemId);
+    }
+
+    /** @return item id to {@code ITEM_ID:PRICE} text, in frame order (read-only) */
+    Map<String, String> pairs() {
+        return pairs;
+    }
+
+    /** @return the frame as sent */
+    String text() {
+        return text;
+    }
+
+    boolean isEmpty() {
+        return pairs.isEmpty();
+    }
+}
@@ -1,55 +1,252 @@
 package org.johan.websocket;
 
-import java.io.IOException;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.List;
 
 import org.eclipse.jetty.websocket.api.Session;
 import org.eclipse.jetty.websocket.api.annotations.OnWebSocketClose;
 import org.eclipse.jetty.websocket.api.annotations.OnWebSocketConnect;
 import org.eclipse.jetty.websocket.api.annotations.OnWebSocketMessage;
 import org.eclipse.jetty.websocket.api.annotations.WebSocket;
+import org.johan.auction.BidRateLimiter;
+import org.johan.config.AppConfig;
+import org.johan.exceptions.ConflictException;
+import org.johan.exceptions.NotFoundException;
+import org.johan.exceptions.ValidationException;
+import org.johan.logging.LogSampler;
+import org.johan.models.Money;
+import org.johan.services.OfferService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 @WebSocket
 public class PriceWebSocket {
 
-    // (C2) Usamos una cola "thread-safe" para guardar las sesiones
-    private static final Queue<Session> sessions = new ConcurrentLinkedQueue<>();
+    private static final Logger log = LoggerFactory.getLogger(PriceWebSocket.class);
+
+    // Las pujas pueden ser miles por segundo: solo se registra una de cada N
+    private static final LogSampler bidSampler = LogSampler.fromConfig("collectors.log.bidSampleEvery", 100);
+
+    // (C2) El envío es asíncrono: cada sesión tiene su propia cola acotada
+    // y un cliente lento nunca bloquea a quien publica el precio
+    private static final BroadcastEngine engine = new BroadcastEngine(
+            AppConfig.getInt("collectors.ws.queueCapacity", 1024),
+            AppConfig.getEnum("collectors.ws.slowConsumerPolicy", SlowConsumerPolicy.class,
+                    SlowConsumerPolicy.DROP_OLDEST),
+            AppConfig.getInt("collectors.ws.senderThreads", 2));
+
+    // Ventana de agrupación de precios en ms (0 = un mensaje por actualización)
+    private static final long batchWindowMs = AppConfig.getLong("collectors.ws.batchWindowMs", 0);
+    private static final PriceBatcher batcher = batchWindowMs > 0 ? new PriceBatcher(engine, batchWindowMs) : null;
+
+    // Las pujas recibidas por el socket pasan por el motor de pujas (configurado en Main)
+    private static volatile OfferService offerService;
+    // Límite de pujas por sesión e item (null = sin límite)
+    private static volatile BidRateLimiter rateLimiter;
 
     @OnWebSocketConnect
     public void onConnect(Session user) throws Exception {
-        System.out.println("Cliente conectado al WebSocket: " + user.getRemoteAddress());
-        sessions.add(user); // Añade al nuevo usuario a la lista
+        log.atInfo().addKeyValue("session", user.getRemoteAddress()).log("Cliente conectado al WebSocket");
+        engine.register(new JettySessionChannel(user)); // Añade al nuevo usuario a la lista
     }
 
     @OnWebSocketClose
     public void onClose(Session user, int statusCode, String reason) {
-        System.out.println("Cliente desconectado: " + reason);
-        sessions.remove(user); // Lo quita de la lista
+        log.atInfo().addKeyValue("session", user.getRemoteAddress()).addKeyValue("status", statusCode)
+                .addKeyValue("reason", reason).log("Cliente desconectado");
+        engine.unregister(new JettySessionChannel(user)); // Lo quita de la lista
     }
 
+    /**
+     * Mensajes del cliente:
+     * <ul>
+     *   <li>{@code SUB item:ID,cat:CATEGORIA,...} se suscribe a items o categorías
+     *       ({@code SUB *} vuelve a recibir todo),</li>
+     *   <li>{@code UNSUB item:ID,...} cancela suscripciones,</li>
+     *   <li>cualquier otro mensaje es una puja {@code ITEM_ID:NUEVO_PRECIO}.</li>
+     * </ul>
+     * Un cliente que nunca se suscribe recibe todas las actualizaciones.
+     * Una puja aceptada se difunde como nuevo precio; si se rechaza, solo
+     * el cliente que la envió recibe {@code ERR:ITEM_ID:MOTIVO}.
+     */
     @OnWebSocketMessage
     public void onMessage(Session user, String message) {
+        if (message.startsWith("SUB ") || message.startsWith("UNSUB ")) {
+            boolean subscribe = message.startsWith("SUB ");
+            JettySessionChannel channel = new JettySessionChannel(user);
+            for (String raw : message.substring(message.indexOf(' ') + 1).split(",")) {
+                String topic = TopicRegistry.parse(raw);
+                if (topic == null) {
+                    log.atWarn().addKeyValue("session", user.getRemoteAddress()).addKeyValue("topic", raw)
+                            .log("Tema inválido");
+                } else if (subscribe) {
+                    engine.subscribe(channel, topic);
+                } else {
+                    engine.unsubscribe(channel, topic);
+                }
+            }
+            return;
+        }
+
         // Asumimos que el mensaje es una puja: "ITEM_ID:NUEVO_PRECIO"
         // Ej: "uuid-1234-abcd:150.99"
-        System.out.println("Puja recibida: " + message);
 
-        // (C2) Estrategia: Re-transmitir (broadcast) el mensaje
-        // a TODOS los clientes conectados (incluido el que lo envió)
-        PriceWebSocket.broadcast(message);
+        // (C2) Estrategia: la puja pasa por el motor de pujas, que solo la acepta
+        // si supera a la actual y difunde el nuevo precio a los clientes suscritos
+        JettySessionChannel channel = new JettySessionChannel(user);
+        int separator = message.lastIndexOf(':');
+        if (offerService == null) {
+            engine.send(channel, "ERR::Las pujas no están disponibles");
+            return;
+        }
+        if (separator <= 0) {
+            engine.send(channel, "ERR::Formato de puja inválido, se espera ITEM_ID:PRECIO");
+            return;
+        }
+        String itemId = message.substring(0, separator);
+        String bidder = "ws:" + user.getRemoteAddress();
+        long start = System.nanoTime();
+        String outcome = "accepted";
+        BidRateLimiter limiter = rateLimiter;
+        // Sin el puerto: reconectar no da un cubo nuevo
+        if (limiter != null && limiter.tryAcquire(BidRateLimiter.clientKey(user.getRemoteAddress().getHostString()),
+                itemId) > 0) {
+            // Se descarta antes de leer el importe: un script insistente no llega al motor de pujas
+            engine.send(channel, "ERR:" + itemId + ":Demasiadas pujas, espera un momento");
+            return;
+        }
+        try {
+            // El importe se lee directamente del mensaje, sin subcadenas ni double
+            Money amount = Money.ofMinor(Money.parseMinor(message, separator + 1, message.length()));
+            offerService.placeBid(itemId, bidder, amount);
+        } catch (NumberFormatException e) {
+            outcome = "invalid";
+            engine.send(channel, "ERR:" + itemId + ":El precio debe ser un número válido");
+        } catch (ValidationException | NotFoundException | ConflictException e) {
+            outcome = "rejected";
+            engine.send(channel, "ERR:" + itemId + ":" + e.getMessage());
+        }
+        if (bidSampler.sample() && log.isInfoEnabled()) {
+            log.atInfo().addKeyValue("itemId", itemId).addKeyValue("session", user.getRemoteAddress())
+                    .addKeyValue("outcome", outcome)
+                    .addKeyValue("latencyUs", (System.nanoTime() - start) / 1_000)
+                    .addKeyValue("sampleEvery", bidSampler.every())
+                    .log("Puja recibida");
+        }
+    }
+
+    /**
+     * Servicio que recibe las pujas enviadas por el socket (configurado en Main).
+     */
+    public static void setOfferService(OfferService service) {
+        offerService = service;
+    }
+
+    /**
+     * Límite de pujas aplicado a cada sesión y item (configurado en Main).
+     */
+    public static void setBidRateLimiter(BidRateLimiter limiter) {
+        rateLimiter = limiter;
     }
 
     // Método estático para enviar el mensaje a todos los clientes conectados
     // Esto permite que PriceUpdateService pueda llamarlo sin necesidad de una instancia
     public static void broadcast(String message) {
-        for (Session session : sessions) {
-            if (session.isOpen()) {
-                try {
-                    session.getRemote().sendString(message);
-                } catch (IOException e) {
-                    System.err.println("Error enviando mensaje: " + e.getMessage());
-                }
-            }
+        engine.broadcast(message);
+    }
+
+    /**
+     * Publica el nuevo precio de un item. Si un cliente todavía no recibió
+     * el precio anterior de ese mismo item, solo recibirá el más reciente.
+     * Con {@code collectors.ws.batchWindowMs} activo, las actualizaciones se
+     * agrupan en un único mensaje "ID:PRECIO;ID:PRECIO" por ventana.
+     *
+     * Solo lo reciben los clientes suscritos al item, a su categoría o a todo.
+     *
+     * @param itemId   ID del item
+     * @param category categoría del item (puede ser null)
+     * @param message  mensaje "ITEM_ID:PRECIO"
+     */
+    public static void broadcastPrice(String itemId, String category, String message) {
+        if (batcher != null) {
+            batcher.publish(itemId, category, message);
+        } else {
+            engine.publishPrice(itemId, category, message);
+        }
+    }
+
+    /**
+     * Publica los nuevos precios de muchos items (actualización masiva) en
+     * un único mensaje "ID:PRECIO;ID:PRECIO" por cliente, aunque el
+     * agrupado por ventana esté desactivado. Con el agrupador activo se
+     * envía en ese momento junto con lo que tenga pendiente.
+     *
+     * @param updates precios a publicar, uno por item
+     */
+    public static void broadcastPrices(List<BroadcastEngine.PriceUpdate> updates) {
+        if (batcher != null) {
+            batcher.publishAll(updates);
+        } else {
+            engine.publishPrices(updates);
+        }
+    }
+
+    /**
+     * Publica un evento de un item (por ejemplo el cierre de su subasta) a
+     * los clientes suscritos al item, a su categoría o a todo. No se
+     * agrupa ni se sustituye: antes se envían los precios pendientes del
+     * agrupador, para que el evento llegue después del último precio.
+     *
+     * @param itemId   ID del item
+     * @param category categoría del item (puede ser null)
+     * @param message  mensaje del evento
+     */
+    public static void broadcastEvent(String itemId, String category, String message) {
+        if (batcher != null) {
+            batcher.flush();
         }
+        engine.publishEvent(itemId, category, message);
+    }
+
+    /**
+     * Mensaje de cierre de subasta: "CLOSED:ITEM_ID:PRECIO" con la puja
+     * ganadora, o "CLOSED:ITEM_ID" si nadie pujó.
+     *
+     * @param itemId     ID del item
+     * @param finalPrice puja ganadora, o {@code null} si no hubo pujas
+     * @return el mensaje
+     */
+    public static String closedMessage(String itemId, Money finalPrice) {
+        StringBuilder message = new StringBuilder(itemId.length() + 24).append("CLOSED:").append(itemId);
+        if (finalPrice != null) {
+            finalPrice.appendTo(message.append(':'));
+        }
+        return message.toString();
+    }
+
+    /**
+     * Mensaje de precio "ITEM_ID:PRECIO" (siempre con punto y dos decimales,
+     * sin {@link String#format}).
+     *
+     * @param itemId ID del item
+     * @param price  nuevo precio
+     * @return el mensaje
+     */
+    public static String priceMessage(String itemId, Money price) {
+        StringBuilder message = new StringBuilder(itemId.length() + 16).append(itemId).append(':');
+        return price.appendTo(message).toString();
+    }
+
+    /**
+     * @return el motor de difusión (estadísticas de entrega)
+     */
+    public static BroadcastEngine engine() {
+        return engine;
+    }
+
+    /**
+     * @return el agrupador de precios, o {@code null} si está desactivado
+     */
+    public static PriceBatcher batcher() {
+        return batcher;
     }
-}
\ No newline at end of file
+}
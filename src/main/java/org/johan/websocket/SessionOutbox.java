@@ -0,0 +1,358 @@
+package org.johan.websocket;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bounded outbound queue of a single client, drained asynchronously with at
+ * most one frame in flight.
+ * <p>
+ * Price updates are coalesced: while an update for an item is still waiting
+ * in the queue, a newer price for the same item replaces its text in place
+ * instead of taking another slot. A price of an item with nothing pending
+ * joins the price slot at the tail of the queue, or opens one there, so it
+ * never overtakes a message queued before it. Batch frames
+ * ({@link #offerPrices}) follow the same rules pair by pair: each item has
+ * at most one unsent price, wherever it came from, and a client that falls
+ * behind therefore only receives the latest price of each item. Other
+ * messages keep FIFO order. When the queue is full the engine's
+ * {@link SlowConsumerPolicy} decides what happens; the drop policies only
+ * discard other messages, never a pending price (see {@link #makeRoom()}).
+ * </p>
+ */
+final class SessionOutbox {
+
+    /**
+     * Queued price frame: the prices of this session, plus optionally a
+     * batch frame shared with other sessions, whose pairs the session's own
+     * prices override.
+     */
+    private static final class PriceSlot {
+        PriceFrame shared;
+        final Map<String, String> pairs = new LinkedHashMap<>(4);
+
+        PriceSlot(PriceFrame shared) {
+            this.shared = shared;
+        }
+    }
+
+    private final OutboundChannel channel;
+    private final BroadcastEngine engine;
+
+    /** Topics this session is subscribed to (see {@link TopicRegistry}). */
+    private final Set<String> topics = ConcurrentHashMap.newKeySet();
+    private volatile boolean explicitAll;
+
+    // Guarded by "this"
+    private final ArrayDeque<Object> queue = new ArrayDeque<>();
+    /** Slot holding the session's own unsent price of each item. */
+    private final Map<String, PriceSlot> slotOf = new HashMap<>();
+    /** Queued slots carrying a shared frame, oldest first (usually none or one). */
+    private final ArrayDeque<PriceSlot> sharedSlots = new ArrayDeque<>();
+    private boolean sending;
+    private boolean closed;
+
+    SessionOutbox(OutboundChannel channel, BroadcastEngine engine) {
+        this.channel = channel;
+        this.engine = engine;
+    }
+
+    OutboundChannel channel() {
+        return channel;
+    }
+
+    Set<String> topics() {
+        return topics;
+    }
+
+    /** @return true when the client asked for every update with {@code SUB *} */
+    boolean explicitAll() {
+        return explicitAll;
+    }
+
+    void explicitAll(boolean value) {
+        explicitAll = value;
+    }
+
+    /**
+     * Queue a message that must not be coalesced.
+     */
+    void offer(String message) {
+        boolean startDrain;
+        synchronized (this) {
+            if (closed || (queue.size() >= engine.queueCapacity() && !makeRoom())) {
+                return;
+            }
+            queue.add(message);
+            startDrain = markSending();
+        }
+        drainIf(startDrain);
+    }
+
+    /**
+     * Queue a price update; replaces a pending update of the same item.
+     */
+    void offerPrice(String itemId, String message) {
+        boolean startDrain;
+        synchronized (this) {
+            if (closed || !addPrice(itemId, message)) {
+                return;
+            }
+            startDrain = markSending();
+        }
+        drainIf(startDrain);
+    }
+
+    /**
+     * Queue a batch of price updates. With nothing pending the shared frame
+     * is queued as it is, and it replaces a pending frame of the same items;
+     * otherwise each pair is coalesced like a single update, so a newer
+     * price queued earlier is never overwritten by the batch arriving later.
+     */
+    void offerPrices(PriceFrame frame) {
+        if (frame.isEmpty()) {
+            return;
+        }
+        boolean startDrain;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            if (slotOf.isEmpty() && sharedSlots.isEmpty()) {
+                if (queue.size() >= engine.queueCapacity() && !makeRoom()) {
+                    return;
+                }
+                PriceSlot slot = new PriceSlot(frame);
+                queue.add(slot);
+                sharedSlots.add(slot);
+            } else if (slotOf.isEmpty() && sharedSlots.size() == 1
+                    && sharedSlots.peek().shared.sameItems(frame)) {
+                // Caso habitual de un cliente que va un lote por detrás: se
+                // sustituye el lote entero sin recorrer sus pares
+                sharedSlots.peek().shared = frame;
+                engine.stats().coalesced.add(frame.pairs().size());
+            } else {
+                for (Map.Entry<String, String> pair : frame.pairs().entrySet()) {
+                    if (!addPrice(pair.getKey(), pair.getValue()) && closed) {
+                        return;
+                    }
+                }
+            }
+            startDrain = markSending();
+        }
+        drainIf(startDrain);
+    }
+
+    /**
+     * @return number of frames waiting to be sent
+     */
+    synchronized int pending() {
+        return queue.size();
+    }
+
+    synchronized void close() {
+        closed = true;
+        queue.clear();
+        slotOf.clear();
+        sharedSlots.clear();
+    }
+
+    /**
+     * Record the price of an item (caller holds the lock): replace its
+     * pending price, join the price slot at the tail or queue a new slot.
+     * With a full queue and a drop policy the price joins the newest price
+     * slot instead, if there is one.
+     *
+     * @return true when the price is queued, false when the policy refused it
+     */
+    private boolean addPrice(String itemId, String message) {
+        PriceSlot slot = pendingSlot(itemId);
+        if (slot != null) {
+            engine.stats().coalesced.increment();
+        } else if (queue.peekLast() instanceof PriceSlot tail) {
+            slot = tail;
+        } else {
+            boolean full = queue.size() >= engine.queueCapacity();
+            if (full && engine.policy() != SlowConsumerPolicy.DISCONNECT) {
+                // Cola llena: el precio se adelanta al hueco de precios más
+                // reciente en lugar de descartar nada
+                slot = newestPriceSlot();
+            }
+            if (slot == null) {
+                if (full && !makeRoom()) {
+                    return false;
+                }
+                slot = new PriceSlot(null);
+                queue.add(slot);
+            }
+        }
+        slot.pairs.put(itemId, message);
+        slotOf.put(itemId, slot);
+        return true;
+    }
+
+    // Hueco donde espera el precio del item, propio o dentro de un lote compartido
+    private PriceSlot pendingSlot(String itemId) {
+        PriceSlot slot = slotOf.get(itemId);
+        if (slot == null) {
+            for (PriceSlot candidate : sharedSlots) {
+                if (candidate.shared.contains(itemId)) {
+                    return candidate;
+                }
+            }
+        }
+        return slot;
+    }
+
+    private PriceSlot newestPriceSlot() {
+        Iterator<Object> it = queue.descendingIterator();
+        while (it.hasNext()) {
+            if (it.next() instanceof PriceSlot slot) {
+                return slot;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Move the prices of a slot into a later one (caller holds the lock).
+     * An item is pending in one slot at most, so nothing is overwritten.
+     */
+    private void fold(PriceSlot older, PriceSlot newer) {
+        Map<String, String> pairs = pairsOf(older);
+        queue.remove(older);
+        forget(older);
+        for (Map.Entry<String, String> pair : pairs.entrySet()) {
+            newer.pairs.put(pair.getKey(), pair.getValue());
+            slotOf.put(pair.getKey(), newer);
+        }
+    }
+
+    private boolean markSending() {
+        boolean startDrain = !sending;
+        sending = true;
+        return startDrain;
+    }
+
+    private void drainIf(boolean startDrain) {
+        if (startDrain) {
+            engine.executor().execute(this::sendNext);
+        }
+    }
+
+    /** Take a price slot out of the bookkeeping (caller holds the lock and removed it from the queue). */
+    private void forget(PriceSlot slot) {
+        for (String itemId : slot.pairs.keySet()) {
+            slotOf.remove(itemId);
+        }
+        if (slot.shared != null) {
+            sharedSlots.remove(slot);
+        }
+    }
+
+    /** Frame text of a price slot; the shared text as is when nothing overrides it. */
+    private static String render(PriceSlot slot) {
+        if (slot.shared != null && slot.pairs.isEmpty()) {
+            return slot.shared.text();
+        }
+        return PriceFrame.join(pairsOf(slot).values());
+    }
+
+    /** @return item id to pair of the prices in a slot, own prices overriding the shared frame */
+    private static Map<String, String> pairsOf(PriceSlot slot) {
+        if (slot.shared == null) {
+            return slot.pairs;
+        }
+        Map<String, String> pairs = new LinkedHashMap<>(slot.shared.pairs());
+        pairs.putAll(slot.pairs);
+        return pairs;
+    }
+
+    /**
+     * Apply the slow consumer policy to a full queue (caller holds the lock).
+     * {@link SlowConsumerPolicy#DROP_OLDEST} discards the oldest message that
+     * is not a price; when the queue holds only prices, the two oldest price
+     * slots are merged, which frees a slot without losing any price. A price
+     * is only refused when no price slot can take it (see {@code addPrice}).
+     *
+     * @return true when the new message may be queued
+     */
+    private boolean makeRoom() {
+        switch (engine.policy()) {
+            case DROP_OLDEST:
+                Iterator<Object> it = queue.iterator();
+                PriceSlot oldestPrices = null;
+                while (it.hasNext()) {
+                    Object queued = it.next();
+                    if (!(queued instanceof PriceSlot slot)) {
+                        it.remove();
+                        engine.stats().dropped.increment();
+                        return true;
+                    }
+                    if (oldestPrices == null) {
+                        oldestPrices = slot;
+                    } else {
+                        fold(oldestPrices, slot);
+                        return true;
+                    }
+                }
+                // Un único hueco de precios y capacidad 1: se descarta lo nuevo
+                engine.stats().dropped.increment();
+                return false;
+            case DROP_NEWEST:
+                engine.stats().dropped.increment();
+                return false;
+            default:
+                closed = true;
+                engine.stats().disconnected.increment();
+                engine.executor().execute(() -> engine.disconnect(this));
+                return false;
+        }
+    }
+
+    private void sendNext() {
+        String message;
+        synchronized (this) {
+            Object head = queue.poll();
+            if (head == null || closed) {
+                sending = false;
+                return;
+            }
+            if (head instanceof PriceSlot slot) {
+                forget(slot);
+                message = render(slot);
+            } else {
+                message = (String) head;
+            }
+        }
+        if (!channel.isOpen()) {
+            engine.unregister(channel);
+            return;
+        }
+        try {
+            channel.send(message, error -> {
+                if (error == null) {
+                    engine.stats().delivered.increment();
+                } else {
+                    engine.stats().failed.increment();
+                }
+                // Schedule the next frame instead of recursing from the callback
+                engine.executor().execute(this::sendNext);
+            });
+        } catch (RuntimeException e) {
+            // La sesión puede cerrarse entre isOpen() y send(): sin callback,
+            // "sending" se quedaría en true y la cola no volvería a vaciarse
+            engine.stats().failed.increment();
+            if (channel.isOpen()) {
+                engine.executor().execute(this::sendNext);
+            } else {
+                engine.unregister(channel);
+            }
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package org.johan.websocket;
+
+/**
+ * What the {@link BroadcastEngine} does when a client's outbound queue is
+ * full, i.e. the client reads slower than prices change.
+ * Configured with {@code collectors.ws.slowConsumerPolicy}.
+ */
+public enum SlowConsumerPolicy {
+    /** Discard the oldest pending message to make room for the new one. */
+    DROP_OLDEST,
+    /** Discard the new message. */
+    DROP_NEWEST,
+    /** Close the connection (code 1008); the client may reconnect. */
+    DISCONNECT
+}
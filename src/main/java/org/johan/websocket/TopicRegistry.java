@@ -0,0 +1,176 @@
+package org.johan.websocket;
+
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Topic to sessions registry behind the subscription protocol of
+ * {@code /precios}.
+ * <p>
+ * Topics are {@code item:<id>}, {@code cat:<category>} (case-insensitive)
+ * and {@link #ALL}. A client that never subscribed is in {@link #ALL}, so
+ * clients unaware of the protocol keep receiving every update; its first
+ * specific subscription takes it out of {@link #ALL}. Publishing a price
+ * only visits the subscribers of the item, of its category and of
+ * {@link #ALL}: the cost grows with the interested sessions, not with the
+ * number of connections.
+ * </p>
+ */
+public final class TopicRegistry {
+
+    /** Topic of the clients that want every update. */
+    public static final String ALL = "*";
+
+    private static final String ITEM_PREFIX = "item:";
+    private static final String CATEGORY_PREFIX = "cat:";
+
+    private final ConcurrentHashMap<String, Set<SessionOutbox>> subscribers = new ConcurrentHashMap<>();
+
+    /**
+     * @param itemId item id
+     * @return topic of the updates of that item
+     */
+    public static String itemTopic(String itemId) {
+        return ITEM_PREFIX + itemId;
+    }
+
+    /**
+     * @param category category name (matched case-insensitively)
+     * @return topic of the updates of the items in that category
+     */
+    public static String categoryTopic(String category) {
+        return CATEGORY_PREFIX + category.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Validate and normalize a topic sent by a client.
+     *
+     * @param raw topic text, e.g. {@code item:abc}, {@code cat:Ropa} or {@code *}
+     * @return the normalized topic, or {@code null} when it is not valid
+     */
+    public static String parse(String raw) {
+        String topic = raw.trim();
+        if (topic.equals(ALL)) {
+            return ALL;
+        }
+        if (topic.startsWith(ITEM_PREFIX) && topic.length() > ITEM_PREFIX.length()) {
+            return itemTopic(topic.substring(ITEM_PREFIX.length()).trim());
+        }
+        if (topic.startsWith(CATEGORY_PREFIX) && topic.length() > CATEGORY_PREFIX.length()) {
+            return categoryTopic(topic.substring(CATEGORY_PREFIX.length()));
+        }
+        return null;
+    }
+
+    void register(SessionOutbox outbox) {
+        add(ALL, outbox);
+    }
+
+    boolean subscribe(SessionOutbox outbox, String topic) {
+        if (!topic.equals(ALL) && outbox.topics().contains(ALL) && !outbox.explicitAll()) {
+            // Primera suscripción concreta: deja de recibir todo
+            remove(ALL, outbox);
+        }
+        if (topic.equals(ALL)) {
+            outbox.explicitAll(true);
+        }
+        return add(topic, outbox);
+    }
+
+    boolean unsubscribe(SessionOutbox outbox, String topic) {
+        if (topic.equals(ALL)) {
+            outbox.explicitAll(false);
+        }
+        return remove(topic, outbox);
+    }
+
+    void unregister(SessionOutbox outbox) {
+        for (String topic : outbox.topics()) {
+            remove(topic, outbox);
+        }
+    }
+
+    /**
+     * Visit every session interested in a price update exactly once.
+     *
+     * @param itemId   item whose price changed
+     * @param category category of the item (nullable)
+     * @param action   called once per interested session
+     */
+    void forEachSubscriber(String itemId, String category, Consumer<SessionOutbox> action) {
+        forEach(ALL, action);
+        forEachTopicSubscriber(itemId, category, action);
+    }
+
+    /**
+     * Like {@link #forEachSubscriber} but skipping the {@link #ALL} sessions,
+     * i.e. only the sessions that asked for this item or its category.
+     */
+    void forEachTopicSubscriber(String itemId, String category, Consumer<SessionOutbox> action) {
+        String itemTopic = itemTopic(itemId);
+        for (SessionOutbox outbox : subscribers(itemTopic)) {
+            if (!outbox.topics().contains(ALL)) {
+                action.accept(outbox);
+            }
+        }
+        if (category != null) {
+            for (SessionOutbox outbox : subscribers(categoryTopic(category))) {
+                Set<String> topics = outbox.topics();
+                if (!topics.contains(ALL) && !topics.contains(itemTopic)) {
+                    action.accept(outbox);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param topic normalized topic
+     * @return number of sessions subscribed to it
+     */
+    public int subscriberCount(String topic) {
+        return subscribers(topic).size();
+    }
+
+    /**
+     * @return number of topics with at least one subscriber
+     */
+    public int topicCount() {
+        return subscribers.size();
+    }
+
+    void forEach(String topic, Consumer<SessionOutbox> action) {
+        for (SessionOutbox outbox : subscribers(topic)) {
+            action.accept(outbox);
+        }
+    }
+
+    private Set<SessionOutbox> subscribers(String topic) {
+        Set<SessionOutbox> set = subscribers.get(topic);
+        return set != null ? set : Set.of();
+    }
+
+    private boolean add(String topic, SessionOutbox outbox) {
+        boolean[] added = new boolean[1];
+        subscribers.compute(topic, (t, set) -> {
+            if (set == null) {
+                set = ConcurrentHashMap.newKeySet();
+            }
+            added[0] = set.add(outbox);
+            return set;
+        });
+        outbox.topics().add(topic);
+        return added[0];
+    }
+
+    private boolean remove(String topic, SessionOutbox outbox) {
+        boolean[] removed = new boolean[1];
+        subscribers.computeIfPresent(topic, (t, set) -> {
+            removed[0] = set.remove(outbox);
+            return set.isEmpty() ? null : set;
+        });
+        outbox.topics().remove(topic);
+        return removed[0];
+    }
+}
@@ -4,43 +4,49 @@ let ws = null;
 // Initialize WebSocket connection when page loads
 document.addEventListener('DOMContentLoaded', function() {
     console.log("Inicializando conexión WebSocket...");
-    
-    // Connect to WebSocket
+    conectar();
+});
+
+// Connect to the WebSocket (also used to reconnect)
+function conectar() {
     ws = new WebSocket("ws://localhost:4567/precios");
     
     // Handle connection open
     ws.onopen = function(event) {
         console.log("✅ WebSocket conectado exitosamente");
+        
+        // Subscribe only to the items shown on this page
+        // (without a subscription the server sends every update)
+        const temas = Array.from(document.querySelectorAll('[id^="precio-"]'))
+            .map(el => 'item:' + el.id.substring('precio-'.length));
+        if (temas.length > 0) {
+            ws.send('SUB ' + temas.join(','));
+        }
     };
     
     // Handle incoming messages (price updates)
     ws.onmessage = function(event) {
         console.log("📨 Mensaje recibido:", event.data);
         
-        // Parse message format: "ITEM_ID:NEW_PRICE"
-        const parts = event.data.split(':');
-        if (parts.length === 2) {
-            const itemId = parts[0];
-            const newPrice = parseFloat(parts[1]);
-            
-            // Update the price display for this item
-            const priceElement = document.getElementById('precio-' + itemId);
-            if (priceElement) {
-                // Format price with $ symbol
-                priceElement.textContent = '$' + newPrice.toFixed(2);
-                
-                // Add visual feedback with animation
-                priceElement.classList.add('updated');
-                setTimeout(() => {
-                    priceElement.classList.remove('updated');
-                }, 500);
-                
-                console.log(`💰 Precio actualizado para item ${itemId}: $${newPrice.toFixed(2)}`);
-            } else {
-                console.warn(`⚠️ No se encontró elemento con ID: precio-${itemId}`);
-            }
-        } else {
-            console.warn("⚠️ Formato de mensaje inválido:", event.data);
+        // Rejected bid (only sent to the bidder): "ERR:ITEM_ID:REASON"
+        if (event.data.startsWith('ERR:')) {
+            const reason = event.data.substring(event.data.indexOf(':', 4) + 1);
+            console.warn("⚠️ Puja rechazada:", reason);
+            alert("Puja rechazada: " + reason);
+            return;
+        }
+        
+        // Auction closed: "CLOSED:ITEM_ID:FINAL_PRICE" ("CLOSED:ITEM_ID" without bids)
+        if (event.data.startsWith('CLOSED:')) {
+            cerrarSubasta(event.data.substring('CLOSED:'.length));
+            return;
+        }
+        
+        // Message format: "ITEM_ID:NEW_PRICE", or a batch of pairs
+        // separated by ';' ("ID1:PRICE1;ID2:PRICE2;...")
+        const pairs = event.data.split(';');
+        for (const pair of pairs) {
+            aplicarPrecio(pair);
         }
     };
     
@@ -56,10 +62,57 @@ document.addEventListener('DOMContentLoaded', function() {
         // Try to reconnect after 3 seconds
         setTimeout(function() {
             console.log("🔄 Intentando reconectar...");
-            ws = new WebSocket("ws://localhost:4567/precios");
+            conectar();
         }, 3000);
     };
-});
+}
+
+// Apply a single "ITEM_ID:NEW_PRICE" update to the page
+function aplicarPrecio(pair) {
+    const parts = pair.split(':');
+    if (parts.length !== 2) {
+        console.warn("⚠️ Formato de mensaje inválido:", pair);
+        return;
+    }
+    const itemId = parts[0];
+    const newPrice = parseFloat(parts[1]);
+    
+    // Update the price display for this item
+    const priceElement = document.getElementById('precio-' + itemId);
+    if (priceElement) {
+        // Format price with $ symbol
+        priceElement.textContent = '$' + newPrice.toFixed(2);
+        
+        // Add visual feedback with animation
+        priceElement.classList.add('updated');
+        setTimeout(() => {
+            priceElement.classList.remove('updated');
+        }, 500);
+        
+        console.log(`💰 Precio actualizado para item ${itemId}: $${newPrice.toFixed(2)}`);
+    } else {
+        console.warn(`⚠️ No se encontró elemento con ID: precio-${itemId}`);
+    }
+}
+
+// Show the final price of a closed auction and disable its bid form
+function cerrarSubasta(data) {
+    const parts = data.split(':');
+    const itemId = parts[0];
+    if (parts.length === 2) {
+        aplicarPrecio(data);
+    }
+    const inputPuja = document.getElementById('puja-' + itemId);
+    if (inputPuja) {
+        inputPuja.disabled = true;
+        inputPuja.placeholder = "Auction closed";
+        const boton = inputPuja.form ? inputPuja.form.querySelector('button') : null;
+        if (boton) {
+            boton.disabled = true;
+        }
+    }
+    console.log(`🔨 Subasta cerrada para item ${itemId}`);
+}
 
 // Function to send a bid (price update request)
 function enviarPuja(event, itemId) {
@@ -85,34 +138,10 @@ function enviarPuja(event, itemId) {
         return;
     }
     
-    // Send bid message to server
+    // Send bid message to server: the bid engine accepts it only if it beats
+    // the current bid, then every subscribed client receives the new price
     const mensaje = `${itemId}:${nuevoPrecio.toFixed(2)}`;
     console.log("📤 Enviando puja:", mensaje);
     ws.send(mensaje);
-    
-    // Also send to API endpoint to update the price in the database
-    fetch(`/api/items/${itemId}/price`, {
-        method: 'POST',
-        headers: {
-            'Content-Type': 'application/json',
-        },
-        body: nuevoPrecio.toString()
-    })
-    .then(response => {
-        if (!response.ok) {
-            return response.json().then(err => {
-                throw new Error(err.message || 'Error al actualizar el precio');
-            });
-        }
-        return response.json();
-    })
-    .then(data => {
-        console.log("✅ Precio actualizado en el servidor:", data);
-        inputPuja.value = "";
-    })
-    .catch(error => {
-        console.error("❌ Error al actualizar precio:", error);
-        alert("Error al actualizar el precio: " + error.message);
-    });
+    inputPuja.value = "";
 }
-